@@ -0,0 +1,188 @@
+package oracle.goldengate.binary;
+
+import oracle.goldengate.common.data.ConnectSchema;
+import oracle.goldengate.common.data.Date;
+import oracle.goldengate.common.data.Decimal;
+import oracle.goldengate.common.data.Field;
+import oracle.goldengate.common.data.PrimitiveStruct;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaAndValue;
+import oracle.goldengate.common.data.Struct;
+import oracle.goldengate.common.data.Time;
+import oracle.goldengate.common.data.Timestamp;
+import oracle.goldengate.storage.Converter;
+import org.apache.kafka.connect.errors.DataException;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *     A compact binary converter for record keys. A key with a single field is written as the bare value: integers as
+ *     a big-endian long, floating point values as the big-endian bits of a double, booleans as one byte, strings as
+ *     UTF-8 and bytes as they are. A key without fields, or a single field key whose value is null, is written as null.
+ * </p>
+ * <p>
+ *     A key with several fields is written in a fixed layout. Each field in schema order starts with one byte which is
+ *     0 for a null value and 1 otherwise, followed by a non null value in its single field encoding, with a 4 byte
+ *     big-endian length before strings and bytes. Numeric values stored unboxed in a {@link PrimitiveStruct} are
+ *     written without boxing them. Keys are encoded on every call rather than cached: looking up a composite key
+ *     costs about as much as encoding it.
+ * </p>
+ * <p>
+ *     The encoding does not carry the schema, {@link #toConnectData(String, byte[])} returns the raw bytes.
+ * </p>
+ */
+public class BinaryKeyConverter implements Converter {
+    private static final byte NULL_MARKER = 0;
+    private static final byte VALUE_MARKER = 1;
+    private static final int FIXED_WIDTH = 8;
+    private static final int LENGTH_WIDTH = 4;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public byte[] fromConnectData(String topic, Schema schema, Object value) {
+        if (value == null)
+            return null;
+        if (!(value instanceof Struct))
+            return encodeValue(schema, value);
+
+        Struct struct = (Struct) value;
+        List<Field> fields = struct.schema().fields();
+        if (fields.isEmpty())
+            return null;
+        if (fields.size() == 1) {
+            // Numeric values stored unboxed are encoded without boxing them
+            if (struct instanceof PrimitiveStruct) {
+                PrimitiveStruct primitives = (PrimitiveStruct) struct;
+                if (primitives.hasLong(0))
+                    return longBytes(primitives.getLong(0));
+                if (primitives.hasDouble(0))
+                    return longBytes(Double.doubleToLongBits(primitives.getDouble(0)));
+            }
+            Object fieldValue = struct.get(0);
+            return fieldValue == null ? null : encodeValue(fields.get(0).schema(), fieldValue);
+        }
+        return encodeComposite(struct, fields);
+    }
+
+    @Override
+    public SchemaAndValue toConnectData(String topic, byte[] value) {
+        if (value == null)
+            return SchemaAndValue.NULL;
+        return new SchemaAndValue(Schema.BYTES_SCHEMA, value);
+    }
+
+    private static byte[] encodeComposite(Struct struct, List<Field> fields) {
+        PrimitiveStruct primitives = struct instanceof PrimitiveStruct ? (PrimitiveStruct) struct : null;
+        // Fixed width values are written in the second pass, only strings, bytes and logical values are encoded here
+        byte[][] encoded = new byte[fields.size()][];
+        int size = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            size++;
+            if (primitives != null && (primitives.hasLong(i) || primitives.hasDouble(i))) {
+                size += FIXED_WIDTH;
+                continue;
+            }
+            Object fieldValue = struct.get(i);
+            if (fieldValue == null)
+                continue;
+            Schema schema = fields.get(i).schema();
+            encoded[i] = encodeValue(schema, fieldValue);
+            size += isVariableWidth(schema) ? LENGTH_WIDTH + encoded[i].length : encoded[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < fields.size(); i++) {
+            if (primitives != null && primitives.hasLong(i)) {
+                buffer.put(VALUE_MARKER).putLong(primitives.getLong(i));
+            } else if (primitives != null && primitives.hasDouble(i)) {
+                buffer.put(VALUE_MARKER).putLong(Double.doubleToLongBits(primitives.getDouble(i)));
+            } else if (encoded[i] == null) {
+                buffer.put(NULL_MARKER);
+            } else {
+                buffer.put(VALUE_MARKER);
+                if (isVariableWidth(fields.get(i).schema()))
+                    buffer.putInt(encoded[i].length);
+                buffer.put(encoded[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static boolean isVariableWidth(Schema schema) {
+        return schema.type() == Schema.Type.STRING || schema.type() == Schema.Type.BYTES;
+    }
+
+    private static byte[] encodeValue(Schema schema, Object logicalValue) {
+        Object value = toUnderlying(schema, logicalValue);
+        final Schema.Type type;
+        if (schema == null) {
+            type = ConnectSchema.schemaType(value.getClass());
+            if (type == null)
+                throw new DataException("Java class " + value.getClass() + " does not have corresponding schema type.");
+        } else {
+            type = schema.type();
+        }
+        try {
+            switch (type) {
+                case INT8:
+                case INT16:
+                case INT32:
+                case INT64:
+                    return longBytes(((Number) value).longValue());
+                case FLOAT32:
+                case FLOAT64:
+                    return longBytes(Double.doubleToLongBits(((Number) value).doubleValue()));
+                case BOOLEAN:
+                    return new byte[]{(Boolean) value ? VALUE_MARKER : NULL_MARKER};
+                case STRING:
+                    return ((CharSequence) value).toString().getBytes(StandardCharsets.UTF_8);
+                case BYTES:
+                    if (value instanceof ByteBuffer) {
+                        ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+                        byte[] bytes = new byte[buffer.remaining()];
+                        buffer.get(bytes);
+                        return bytes;
+                    }
+                    return (byte[]) value;
+                default:
+                    throw new DataException("BinaryKeyConverter does not support " + type + " key values.");
+            }
+        } catch (ClassCastException e) {
+            throw new DataException("Invalid type for " + type + ": " + value.getClass());
+        }
+    }
+
+    // Logical values are encoded as their underlying values
+    private static Object toUnderlying(Schema schema, Object value) {
+        if (schema == null || schema.name() == null)
+            return value;
+        switch (schema.name()) {
+            case Decimal.LOGICAL_NAME:
+                return Decimal.fromLogical(schema, (BigDecimal) value);
+            case Date.LOGICAL_NAME:
+                return Date.fromLogical(schema, (java.util.Date) value);
+            case Time.LOGICAL_NAME:
+                return Time.fromLogical(schema, (java.util.Date) value);
+            case Timestamp.LOGICAL_NAME:
+                return Timestamp.fromLogical(schema, (java.util.Date) value);
+            default:
+                return value;
+        }
+    }
+
+    private static byte[] longBytes(long value) {
+        byte[] bytes = new byte[FIXED_WIDTH];
+        for (int i = FIXED_WIDTH - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+}
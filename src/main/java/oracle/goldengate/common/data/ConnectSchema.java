@@ -22,10 +22,34 @@ public class ConnectSchema implements Schema {
     private static final Map<String, List<Class>> LOGICAL_TYPE_CLASSES = new HashMap<>();
 
     /**
-     * Maps the Java classes to the corresponding Schema.Type.
+     * Maps the Java classes to the corresponding Schema.Type. Only written during class initialization.
      */
     private static final Map<Class<?>, Type> JAVA_CLASS_SCHEMA_TYPES = new HashMap<>();
 
+    /**
+     * Per-class cache of {@link #schemaType(Class)}, including subclasses of the mapped classes. ClassValue lookups do
+     * not lock, so concurrent schemaless conversions do not contend.
+     */
+    private static final ClassValue<Type> SCHEMA_TYPES = new ClassValue<Type>() {
+        @Override
+        protected Type computeValue(Class<?> klass) {
+            Type schemaType = JAVA_CLASS_SCHEMA_TYPES.get(klass);
+            if (schemaType != null)
+                return schemaType;
+            // Since the lookup only checks the class, we need to also try the superclasses and interfaces
+            for (Map.Entry<Class<?>, Type> entry : JAVA_CLASS_SCHEMA_TYPES.entrySet()) {
+                if (entry.getKey().isAssignableFrom(klass))
+                    return entry.getValue();
+            }
+            return null;
+        }
+    };
+
+    /**
+     * The initial value of schema fingerprints.
+     */
+    private static final long FINGERPRINT_SEED = 0xcbf29ce484222325L;
+
     static {
         SCHEMA_TYPE_CLASSES.put(Type.INT8, Arrays.asList((Class) Byte.class));
         SCHEMA_TYPE_CLASSES.put(Type.INT16, Arrays.asList((Class) Short.class));
@@ -62,8 +86,8 @@ public class ConnectSchema implements Schema {
     private final boolean optional;
     private final Object defaultValue;
 
-    private final List<Field> fields;
-    private final Map<String, Field> fieldsByName;
+    // The fields of a struct schema and their lookup table, shared by struct schemas with the same fields
+    private final StructLayout layout;
 
     private final Schema keySchema;
     private final Schema valueSchema;
@@ -77,11 +101,24 @@ public class ConnectSchema implements Schema {
     // Optional human readable documentation describing this schema.
     private final String doc;
     private final Map<String, String> parameters;
+    // 64-bit structural fingerprint, computed once since the schema is immutable. Only built from names, values and
+    // nested fingerprints, never identity hash codes, so it is stable across JVMs.
+    private final long fingerprint;
+    // Compiled validator, created on first use. A race only compiles it twice.
+    private volatile SchemaValidator validator;
 
     /**
      * Construct a Schema. Most users should not construct schemas manually, preferring {@link SchemaBuilder} instead.
      */
     public ConnectSchema(Type type, boolean optional, Object defaultValue, String name, Integer version, String doc, Map<String, String> parameters, List<Field> fields, Schema keySchema, Schema valueSchema) {
+        this(type, optional, defaultValue, name, version, doc, parameters,
+                type == Type.STRUCT ? new StructLayout(fields) : null, keySchema, valueSchema);
+    }
+
+    /**
+     * Construct a Schema with the given struct layout, which may be shared with other struct schemas.
+     */
+    ConnectSchema(Type type, boolean optional, Object defaultValue, String name, Integer version, String doc, Map<String, String> parameters, StructLayout layout, Schema keySchema, Schema valueSchema) {
         this.type = type;
         this.optional = optional;
         this.defaultValue = defaultValue;
@@ -90,25 +127,18 @@ public class ConnectSchema implements Schema {
         this.doc = doc;
         this.parameters = parameters;
 
-        if (this.type == Type.STRUCT) {
-            this.fields = fields == null ? Collections.<Field>emptyList() : fields;
-            this.fieldsByName = new HashMap<>(this.fields.size());
-            for (Field field : this.fields)
-                fieldsByName.put(field.name(), field);
-        } else {
-            this.fields = null;
-            this.fieldsByName = null;
-        }
+        this.layout = this.type == Type.STRUCT ? layout : null;
 
         this.keySchema = keySchema;
         this.valueSchema = valueSchema;
+        this.fingerprint = computeFingerprint(this);
     }
 
     /**
      * Construct a Schema for a primitive type, setting schema parameters, struct fields, and key and value schemas to null.
      */
     public ConnectSchema(Type type, boolean optional, Object defaultValue, String name, Integer version, String doc) {
-        this(type, optional, defaultValue, name, version, doc, null, null, null, null);
+        this(type, optional, defaultValue, name, version, doc, null, (List<Field>) null, null, null);
     }
 
     /**
@@ -158,13 +188,38 @@ public class ConnectSchema implements Schema {
     public List<Field> fields() {
         if (type != Type.STRUCT)
             throw new DataException("Cannot list fields on non-struct type");
-        return fields;
+        return layout.fields();
     }
 
     public Field field(String fieldName) {
         if (type != Type.STRUCT)
             throw new DataException("Cannot look up fields on non-struct type");
-        return fieldsByName.get(fieldName);
+        return lookupField(fieldName);
+    }
+
+    /**
+     * Get the index of a field, to address the field positionally, for example with {@link Struct#put(int, Object)}.
+     * Throws a DataException if this schema is not a struct.
+     * @param fieldName the name of the field
+     * @return the index of the field, or -1 if there is no field with this name
+     */
+    public int fieldIndex(String fieldName) {
+        if (type != Type.STRUCT)
+            throw new DataException("Cannot look up fields on non-struct type");
+        Field field = lookupField(fieldName);
+        return field == null ? -1 : field.index();
+    }
+
+    private Field lookupField(String fieldName) {
+        return layout.field(fieldName);
+    }
+
+    /**
+     * Get the fields of this struct schema with their lookup table and validators.
+     * @return the layout, or null if this schema is not a struct
+     */
+    StructLayout layout() {
+        return layout;
     }
 
     @Override
@@ -194,56 +249,28 @@ public class ConnectSchema implements Schema {
     }
 
     public static void validateValue(String name, Schema schema, Object value) {
-        if (value == null) {
-            if (!schema.isOptional())
-                throw new DataException("Invalid value: null used for required field: \"" + name
-                        + "\", schema type: " + schema.type());
-            else
-                return;
-        }
+        SchemaValidator.of(schema).validate(name, value);
+    }
 
+    /**
+     * Get the Java classes that can be used to represent values of a schema, taking logical types into account.
+     * @param schema the schema
+     * @return the classes, or null if the schema type has no representation
+     */
+    static List<Class> expectedClasses(Schema schema) {
         List<Class> expectedClasses = LOGICAL_TYPE_CLASSES.get(schema.name());
-
         if (expectedClasses == null)
-                expectedClasses = SCHEMA_TYPE_CLASSES.get(schema.type());
+            expectedClasses = SCHEMA_TYPE_CLASSES.get(schema.type());
+        return expectedClasses;
+    }
 
-        if (expectedClasses == null)
-            throw new DataException("Invalid Java object for schema type " + schema.type()
-                    + ": " + value.getClass()
-                    + " for field: \"" + name + "\"");
-
-        boolean foundMatch = false;
-        for (Class<?> expectedClass : expectedClasses) {
-            if (expectedClass.isInstance(value)) {
-                foundMatch = true;
-                break;
-            }
-        }
-        if (!foundMatch)
-            throw new DataException("Invalid Java object for schema type " + schema.type()
-                    + ": " + value.getClass()
-                    + " for field: \"" + name + "\"");
-
-        switch (schema.type()) {
-            case STRUCT:
-                Struct struct = (Struct) value;
-                if (!struct.schema().equals(schema))
-                    throw new DataException("Struct schemas do not match.");
-                struct.validate();
-                break;
-            case ARRAY:
-                List<?> array = (List<?>) value;
-                for (Object entry : array)
-                    validateValue(schema.valueSchema(), entry);
-                break;
-            case MAP:
-                Map<?, ?> map = (Map<?, ?>) value;
-                for (Map.Entry<?, ?> entry : map.entrySet()) {
-                    validateValue(schema.keySchema(), entry.getKey());
-                    validateValue(schema.valueSchema(), entry.getValue());
-                }
-                break;
+    SchemaValidator validator() {
+        SchemaValidator result = validator;
+        if (result == null) {
+            result = new SchemaValidator(this);
+            validator = result;
         }
+        return result;
     }
 
     /**
@@ -261,15 +288,85 @@ public class ConnectSchema implements Schema {
     }
 
 
+    /**
+     * Get the 64-bit structural fingerprint of this schema. Equal schemas have equal fingerprints, and the fingerprint
+     * of a schema is the same in every JVM.
+     * @return the fingerprint
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Get the 64-bit structural fingerprint of any schema. For a {@link ConnectSchema} this is the fingerprint computed
+     * when it was built, for other implementations such as {@link SchemaBuilder} it is computed on each call.
+     * @param schema the schema, may be null
+     * @return the fingerprint
+     */
+    public static long fingerprint(Schema schema) {
+        if (schema == null)
+            return 0L;
+        if (schema instanceof ConnectSchema)
+            return ((ConnectSchema) schema).fingerprint;
+        return computeFingerprint(schema);
+    }
+
+    private static long computeFingerprint(Schema schema) {
+        long h = FINGERPRINT_SEED;
+        h = mix(h, schema.type().name().hashCode());
+        h = mix(h, schema.isOptional() ? 1 : 2);
+        h = mix(h, valueHash(schema.defaultValue()));
+        h = mix(h, Objects.hashCode(schema.name()));
+        h = mix(h, Objects.hashCode(schema.version()));
+        h = mix(h, Objects.hashCode(schema.doc()));
+        // String keys and values, so the map hash is stable and independent of the iteration order
+        h = mix(h, Objects.hashCode(schema.parameters()));
+        switch (schema.type()) {
+            case STRUCT:
+                List<Field> schemaFields = schema.fields();
+                h = mix(h, schemaFields.size());
+                for (Field field : schemaFields) {
+                    h = mix(h, field.name().hashCode());
+                    h = mix(h, field.index());
+                    h = mix(h, fingerprint(field.schema()));
+                }
+                break;
+            case MAP:
+                h = mix(h, fingerprint(schema.keySchema()));
+                h = mix(h, fingerprint(schema.valueSchema()));
+                break;
+            case ARRAY:
+                h = mix(h, fingerprint(schema.valueSchema()));
+                break;
+        }
+        // Final avalanche so that similar schemas spread over all 64 bits
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        return (h ^ value) * 0x100000001b3L;
+    }
+
+    private static int valueHash(Object value) {
+        if (value instanceof byte[])
+            return Arrays.hashCode((byte[]) value);
+        return Objects.hashCode(value);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ConnectSchema schema = (ConnectSchema) o;
+        // Different fingerprints are never equal, equal fingerprints still need the full comparison
+        if (fingerprint != schema.fingerprint) return false;
         return Objects.equals(optional, schema.optional) &&
                 Objects.equals(type, schema.type) &&
                 Objects.equals(defaultValue, schema.defaultValue) &&
-                Objects.equals(fields, schema.fields) &&
+                Objects.equals(layout, schema.layout) &&
                 Objects.equals(keySchema, schema.keySchema) &&
                 Objects.equals(valueSchema, schema.valueSchema) &&
                 Objects.equals(name, schema.name) &&
@@ -280,7 +377,7 @@ public class ConnectSchema implements Schema {
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, optional, defaultValue, fields, keySchema, valueSchema, name, version, doc, parameters);
+        return (int) (fingerprint ^ (fingerprint >>> 32));
     }
 
     @Override
@@ -299,23 +396,6 @@ public class ConnectSchema implements Schema {
      * @return the corresponding type, nor null if there is no matching type
      */
     public static Type schemaType(Class<?> klass) {
-        synchronized (JAVA_CLASS_SCHEMA_TYPES) {
-            Type schemaType = JAVA_CLASS_SCHEMA_TYPES.get(klass);
-            if (schemaType != null)
-                return schemaType;
-
-            // Since the lookup only checks the class, we need to also try
-            for (Map.Entry<Class<?>, Type> entry : JAVA_CLASS_SCHEMA_TYPES.entrySet()) {
-                try {
-                    klass.asSubclass(entry.getKey());
-                    // Cache this for subsequent lookups
-                    JAVA_CLASS_SCHEMA_TYPES.put(klass, entry.getValue());
-                    return entry.getValue();
-                } catch (ClassCastException e) {
-                    // Expected, ignore
-                }
-            }
-        }
-        return null;
+        return SCHEMA_TYPES.get(klass);
     }
 }
@@ -11,11 +11,16 @@ public class Field {
     private final String name;
     private final int index;
     private final Schema schema;
+    // The hash is cached if the schema is immutable
+    private final int hash;
+    private final boolean hashCached;
 
     public Field(String name, int index, Schema schema) {
         this.name = name;
         this.index = index;
         this.schema = schema;
+        this.hashCached = schema instanceof ConnectSchema;
+        this.hash = hashCached ? computeHash() : 0;
     }
 
     /**
@@ -48,6 +53,7 @@ public class Field {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Field field = (Field) o;
+        if (hashCached && field.hashCached && hash != field.hash) return false;
         return Objects.equals(index, field.index) &&
                 Objects.equals(name, field.name) &&
                 Objects.equals(schema, field.schema);
@@ -55,6 +61,10 @@ public class Field {
 
     @Override
     public int hashCode() {
+        return hashCached ? hash : computeHash();
+    }
+
+    private int computeHash() {
         return Objects.hash(name, index, schema);
     }
 }
\ No newline at end of file
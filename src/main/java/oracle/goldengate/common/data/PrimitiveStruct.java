@@ -0,0 +1,203 @@
+package oracle.goldengate.common.data;
+
+import org.apache.kafka.connect.errors.DataException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ *     A {@link Struct} which stores the values of fixed width fields unboxed. INT8, INT16, INT32, INT64, FLOAT32,
+ *     FLOAT64 and BOOLEAN fields without a logical type are kept in a long[], floating point values as their raw bits,
+ *     with a bitmap marking which of them are set. All other fields are stored as in {@link Struct}.
+ * </p>
+ * <p>
+ *     The full {@link Struct} API is supported, values read through it are boxed on demand. The typed accessors
+ *     {@link #putLong(int, long)}, {@link #putDouble(int, double)}, {@link #getLong(int)} and {@link #getDouble(int)}
+ *     avoid boxing entirely, so converters which check {@link #hasLong(int)} and {@link #hasDouble(int)} can write
+ *     numeric rows without allocating a wrapper per value.
+ * </p>
+ */
+public class PrimitiveStruct extends Struct {
+
+    private final List<Field> fields;
+    private final long[] primitives;
+    private final long[] present;
+
+    /**
+     * Create a new PrimitiveStruct for this {@link Schema}
+     * @param schema the {@link Schema} for the Struct
+     */
+    public PrimitiveStruct(Schema schema) {
+        super(schema);
+        this.fields = schema.fields();
+        this.primitives = new long[fields.size()];
+        this.present = new long[(fields.size() + 63) >>> 6];
+    }
+
+    /**
+     * Set the value of an INT64 field without boxing.
+     * @param index the index of the field
+     * @param value the value
+     * @return the Struct
+     */
+    public PrimitiveStruct putLong(int index, long value) {
+        checkPrimitive(index, Schema.Type.INT64);
+        primitives[index] = value;
+        present[index >>> 6] |= 1L << index;
+        return this;
+    }
+
+    /**
+     * Set the value of a FLOAT64 field without boxing.
+     * @param index the index of the field
+     * @param value the value
+     * @return the Struct
+     */
+    public PrimitiveStruct putDouble(int index, double value) {
+        checkPrimitive(index, Schema.Type.FLOAT64);
+        primitives[index] = Double.doubleToRawLongBits(value);
+        present[index >>> 6] |= 1L << index;
+        return this;
+    }
+
+    /**
+     * Check if an INT64 field has a value stored unboxed, so it can be read with {@link #getLong(int)}.
+     * @param index the index of the field
+     * @return true if the field is an unboxed INT64 field with a value
+     */
+    public boolean hasLong(int index) {
+        return isSet(index) && fields.get(index).schema().type() == Schema.Type.INT64;
+    }
+
+    /**
+     * Check if a FLOAT64 field has a value stored unboxed, so it can be read with {@link #getDouble(int)}.
+     * @param index the index of the field
+     * @return true if the field is an unboxed FLOAT64 field with a value
+     */
+    public boolean hasDouble(int index) {
+        return isSet(index) && fields.get(index).schema().type() == Schema.Type.FLOAT64;
+    }
+
+    /**
+     * Get the value of an INT64 field without boxing. Throws a DataException if the field has no value.
+     * @param index the index of the field
+     * @return the value
+     */
+    public long getLong(int index) {
+        checkPrimitive(index, Schema.Type.INT64);
+        if (!isSet(index))
+            return ((Number) checkDefault(index)).longValue();
+        return primitives[index];
+    }
+
+    /**
+     * Get the value of a FLOAT64 field without boxing. Throws a DataException if the field has no value.
+     * @param index the index of the field
+     * @return the value
+     */
+    public double getDouble(int index) {
+        checkPrimitive(index, Schema.Type.FLOAT64);
+        if (!isSet(index))
+            return ((Number) checkDefault(index)).doubleValue();
+        return Double.longBitsToDouble(primitives[index]);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        Arrays.fill(present, 0L);
+    }
+
+    @Override
+    protected Object rawValue(int index) {
+        Schema schema = fields.get(index).schema();
+        if (!isPrimitive(schema))
+            return super.rawValue(index);
+        if (!isSet(index))
+            return null;
+        long bits = primitives[index];
+        switch (schema.type()) {
+            case INT8:
+                return (byte) bits;
+            case INT16:
+                return (short) bits;
+            case INT32:
+                return (int) bits;
+            case INT64:
+                return bits;
+            case FLOAT32:
+                return Float.intBitsToFloat((int) bits);
+            case FLOAT64:
+                return Double.longBitsToDouble(bits);
+            default:
+                return bits != 0;
+        }
+    }
+
+    @Override
+    protected void setRawValue(Field field, Object value) {
+        if (!isPrimitive(field.schema())) {
+            super.setRawValue(field, value);
+            return;
+        }
+        int index = field.index();
+        if (value == null) {
+            present[index >>> 6] &= ~(1L << index);
+            return;
+        }
+        switch (field.schema().type()) {
+            case FLOAT32:
+                primitives[index] = Float.floatToRawIntBits((Float) value);
+                break;
+            case FLOAT64:
+                primitives[index] = Double.doubleToRawLongBits((Double) value);
+                break;
+            case BOOLEAN:
+                primitives[index] = ((Boolean) value) ? 1L : 0L;
+                break;
+            default:
+                primitives[index] = ((Number) value).longValue();
+                break;
+        }
+        present[index >>> 6] |= 1L << index;
+    }
+
+    private boolean isSet(int index) {
+        return (present[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private Object checkDefault(int index) {
+        Object defaultValue = fields.get(index).schema().defaultValue();
+        if (defaultValue == null)
+            throw new DataException("Field '" + fields.get(index).name() + "' has no value");
+        return defaultValue;
+    }
+
+    private void checkPrimitive(int index, Schema.Type type) {
+        checkLive();
+        if (index < 0 || index >= primitives.length)
+            throw new DataException(index + " is not a valid field index");
+        Schema schema = fields.get(index).schema();
+        if (schema.type() != type || !isPrimitive(schema))
+            throw new DataException("Field '" + fields.get(index).name() + "' is not of type " + type);
+    }
+
+    // Logical types such as Timestamp share the fixed width types but their values are objects
+    private static boolean isPrimitive(Schema schema) {
+        if (schema.name() != null)
+            return false;
+        switch (schema.type()) {
+            case INT8:
+            case INT16:
+            case INT32:
+            case INT64:
+            case FLOAT32:
+            case FLOAT64:
+            case BOOLEAN:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
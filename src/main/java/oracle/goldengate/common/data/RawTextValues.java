@@ -0,0 +1,16 @@
+package oracle.goldengate.common.data;
+
+/**
+ * Implemented by {@link Struct}s which hold some STRING values as the original source text, so that converters can
+ * write the text directly instead of reading it through {@link Struct#get(Field)}.
+ */
+public interface RawTextValues {
+
+    /**
+     * Get the text of a STRING field if it is held as source text.
+     * @param index the index of the field
+     * @return the text, or null if the field has no value or is not held as source text, in which case the value must
+     *         be read with {@link Struct#get(int)}
+     */
+    String rawText(int index);
+}
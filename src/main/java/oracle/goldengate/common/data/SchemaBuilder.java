@@ -49,6 +49,8 @@ public class SchemaBuilder implements Schema {
     private Object defaultValue = null;
 
     private Map<String, Field> fields = null;
+    // Unmodifiable snapshot of the fields returned by fields(), rebuilt only after a field is added
+    private List<Field> fieldList = null;
     private Schema keySchema = null;
     private Schema valueSchema = null;
 
@@ -307,6 +309,7 @@ public class SchemaBuilder implements Schema {
         if (fields.containsKey(fieldName))
             throw new SchemaBuilderException("Cannot create field because of field name duplication " + fieldName);
         fields.put(fieldName, new Field(fieldName, fieldIndex, fieldSchema));
+        fieldList = null;
         return this;
     }
 
@@ -317,7 +320,9 @@ public class SchemaBuilder implements Schema {
     public List<Field> fields() {
         if (type != Type.STRUCT)
             throw new DataException("Cannot list fields on non-struct type");
-        return new ArrayList<>(fields.values());
+        if (fieldList == null)
+            fieldList = Collections.unmodifiableList(new ArrayList<>(fields.values()));
+        return fieldList;
     }
 
     public Field field(String fieldName) {
@@ -368,9 +373,11 @@ public class SchemaBuilder implements Schema {
      * @return the {@link Schema}
      */
     public Schema build() {
-        return new ConnectSchema(type, isOptional(), defaultValue, name, version, doc,
-                parameters == null ? null : Collections.unmodifiableMap(parameters),
-                fields == null ? null : Collections.unmodifiableList(new ArrayList<Field>(fields.values())), keySchema, valueSchema);
+        // Identical schemas share one instance, and struct schemas with the same fields share their layout, see
+        // SchemaInterner. The parameters are copied so that later changes to this builder cannot change a shared schema.
+        return SchemaInterner.intern(new ConnectSchema(type, isOptional(), defaultValue, name, version, doc,
+                parameters == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(parameters)),
+                fields == null ? null : SchemaInterner.internLayout(new ArrayList<Field>(fields.values())), keySchema, valueSchema));
     }
 
     /**
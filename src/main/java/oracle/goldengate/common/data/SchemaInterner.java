@@ -0,0 +1,94 @@
+package oracle.goldengate.common.data;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>
+ *     Canonicalizing pool for immutable {@link ConnectSchema}, {@link StructLayout} and {@link Field} instances, used
+ *     by {@link SchemaBuilder#build()}.
+ * </p>
+ * <p>
+ *     A struct schema is split into its nameless {@link StructLayout}, the fields with their lookup table and compiled
+ *     validators, and the name, version, doc and parameters attached by the {@link ConnectSchema}. The generated
+ *     schemas carry the table name, so the schemas of two tables are never the same instance, but tables with the
+ *     same column layout share one layout and therefore all of their fields and field validators. Rebuilding an
+ *     unchanged schema, for example after a metadata event, returns the existing schema instance so caches keyed by
+ *     schema get identity hits.
+ * </p>
+ * <p>
+ *     Entries are weakly referenced and disappear once no schema uses them. Only schemas and layouts whose nested
+ *     schemas are themselves immutable {@link ConnectSchema} instances are interned, since a nested
+ *     {@link SchemaBuilder} could still change.
+ * </p>
+ */
+final class SchemaInterner {
+    private static final Map<Object, WeakReference<Object>> POOL = new WeakHashMap<>();
+
+    private SchemaInterner() {
+    }
+
+    /**
+     * Create the layout of a struct schema, sharing an existing layout with the same fields.
+     * @param fields the fields in index order
+     * @return the canonical layout, or a new layout if a field schema cannot be interned
+     */
+    static StructLayout internLayout(List<Field> fields) {
+        List<Field> interned = new ArrayList<>(fields.size());
+        boolean immutable = true;
+        for (Field field : fields) {
+            if (field.schema() instanceof ConnectSchema)
+                interned.add(canonical(field));
+            else {
+                interned.add(field);
+                immutable = false;
+            }
+        }
+        StructLayout layout = new StructLayout(Collections.unmodifiableList(interned));
+        return immutable ? canonical(layout) : layout;
+    }
+
+    /**
+     * Intern a schema if it is immutable.
+     * @param schema the schema
+     * @return the canonical instance, or the schema itself if it cannot be interned
+     */
+    static ConnectSchema intern(ConnectSchema schema) {
+        if (!isImmutable(schema))
+            return schema;
+        return canonical(schema);
+    }
+
+    private static boolean isImmutable(ConnectSchema schema) {
+        switch (schema.type()) {
+            case STRUCT:
+                for (Field field : schema.fields()) {
+                    if (!(field.schema() instanceof ConnectSchema))
+                        return false;
+                }
+                return true;
+            case MAP:
+                return schema.keySchema() instanceof ConnectSchema && schema.valueSchema() instanceof ConnectSchema;
+            case ARRAY:
+                return schema.valueSchema() instanceof ConnectSchema;
+            default:
+                return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T canonical(T value) {
+        synchronized (POOL) {
+            WeakReference<Object> ref = POOL.get(value);
+            Object canonical = ref == null ? null : ref.get();
+            if (canonical != null)
+                return (T) canonical;
+            POOL.put(value, new WeakReference<Object>(value));
+            return value;
+        }
+    }
+}
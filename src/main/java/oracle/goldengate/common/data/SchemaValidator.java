@@ -0,0 +1,122 @@
+package oracle.goldengate.common.data;
+
+import org.apache.kafka.connect.errors.DataException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *     The validation of values against one schema, compiled once. The classes a value may have are resolved up front
+ *     instead of looking up the logical type and schema type maps for every value, and the validators of the fields
+ *     of a struct schema, or of the elements of an array or map schema, are held in place. The field validators of a
+ *     {@link ConnectSchema} come from its {@link StructLayout}, so schemas with the same fields share them.
+ * </p>
+ * <p>
+ *     Validators of {@link ConnectSchema}s are cached on the schema. A {@link SchemaBuilder} may still change, so its
+ *     validator is compiled on every use.
+ * </p>
+ */
+final class SchemaValidator {
+    private final Schema schema;
+    private final Class<?>[] expectedClasses;
+    private final SchemaValidator[] fieldValidators;
+    private final String[] fieldNames;
+    private final SchemaValidator keyValidator;
+    private final SchemaValidator valueValidator;
+
+    SchemaValidator(Schema schema) {
+        this.schema = schema;
+        List<Class> expected = ConnectSchema.expectedClasses(schema);
+        this.expectedClasses = expected == null ? null : expected.toArray(new Class<?>[expected.size()]);
+        if (schema.type() == Schema.Type.STRUCT) {
+            List<Field> fields = schema.fields();
+            this.fieldNames = new String[fields.size()];
+            for (int i = 0; i < fieldNames.length; i++)
+                fieldNames[i] = fields.get(i).name();
+            if (schema instanceof ConnectSchema) {
+                // Shared by all struct schemas with the same fields
+                this.fieldValidators = ((ConnectSchema) schema).layout().fieldValidators();
+            } else {
+                this.fieldValidators = new SchemaValidator[fields.size()];
+                for (int i = 0; i < fieldValidators.length; i++)
+                    fieldValidators[i] = of(fields.get(i).schema());
+            }
+        } else {
+            this.fieldValidators = null;
+            this.fieldNames = null;
+        }
+        this.keyValidator = schema.type() == Schema.Type.MAP ? of(schema.keySchema()) : null;
+        this.valueValidator = schema.type() == Schema.Type.MAP || schema.type() == Schema.Type.ARRAY
+                ? of(schema.valueSchema()) : null;
+    }
+
+    /**
+     * Get the validator of a schema.
+     * @param schema the schema
+     * @return the cached validator of a {@link ConnectSchema}, or a newly compiled validator for any other schema
+     */
+    static SchemaValidator of(Schema schema) {
+        if (schema instanceof ConnectSchema)
+            return ((ConnectSchema) schema).validator();
+        return new SchemaValidator(schema);
+    }
+
+    /**
+     * Validate a value, throwing a DataException if it is invalid.
+     * @param name the field name used in error messages, may be null
+     * @param value the value
+     */
+    void validate(String name, Object value) {
+        if (value == null) {
+            if (!schema.isOptional())
+                throw new DataException("Invalid value: null used for required field: \"" + name
+                        + "\", schema type: " + schema.type());
+            return;
+        }
+        if (!isExpectedClass(value))
+            throw new DataException("Invalid Java object for schema type " + schema.type()
+                    + ": " + value.getClass()
+                    + " for field: \"" + name + "\"");
+
+        switch (schema.type()) {
+            case STRUCT:
+                Struct struct = (Struct) value;
+                if (struct.schema() != schema && !struct.schema().equals(schema))
+                    throw new DataException("Struct schemas do not match.");
+                struct.validate();
+                break;
+            case ARRAY:
+                List<?> array = (List<?>) value;
+                for (Object entry : array)
+                    valueValidator.validate(null, entry);
+                break;
+            case MAP:
+                Map<?, ?> map = (Map<?, ?>) value;
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    keyValidator.validate(null, entry.getKey());
+                    valueValidator.validate(null, entry.getValue());
+                }
+                break;
+        }
+    }
+
+    /**
+     * Validate the value of a field of this struct schema, throwing a DataException if it is invalid.
+     * @param index the index of the field
+     * @param value the value
+     */
+    void validateField(int index, Object value) {
+        fieldValidators[index].validate(fieldNames[index], value);
+    }
+
+    private boolean isExpectedClass(Object value) {
+        if (expectedClasses == null)
+            return false;
+        for (Class<?> expectedClass : expectedClasses) {
+            if (expectedClass.isInstance(value))
+                return true;
+        }
+        return false;
+    }
+}
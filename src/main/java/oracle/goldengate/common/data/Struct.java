@@ -27,6 +27,9 @@ public class Struct {
 
     private final Schema schema;
     private final Object[] values;
+    // Pooling state, see StructPool. The generation is incremented every time the struct is released to a pool.
+    private int generation;
+    private boolean released;
 
     /**
      * Create a new Struct for this {@link Schema}
@@ -67,21 +70,33 @@ public class Struct {
      * @return the value for the field
      */
     public Object get(Field field) {
-        Object val = values[field.index()];
+        checkLive();
+        Object val = rawValue(field.index());
         if (val == null && field.schema().defaultValue() != null) {
             val = field.schema().defaultValue();
         }
         return val;
     }
 
+    /**
+     * Get the value of a field by its index in the schema, returning the default value if no value has been set yet
+     * and a default value is specified in the field's schema.
+     * @param index the index of the field
+     * @return the value for the field
+     */
+    public Object get(int index) {
+        return get(lookupField(index));
+    }
+
     /**
      * Get the underlying raw value for the field without accounting for default values.
      * @param fieldName the field to get the value of
      * @return the raw value
      */
     public Object getWithoutDefault(String fieldName) {
+        checkLive();
         Field field = lookupField(fieldName);
-        return values[field.index()];
+        return rawValue(field.index());
     }
 
     // Note that all getters have to have boxed return types since the fields might be optional
@@ -195,11 +210,110 @@ public class Struct {
      * @return the Struct, to allow chaining of {@link #put(String, Object)} calls
      */
     public Struct put(Field field, Object value) {
-        ConnectSchema.validateValue(field.schema(), value);
-        values[field.index()] = value;
+        checkLive();
+        SchemaValidator.of(field.schema()).validate(field.name(), value);
+        setRawValue(field, value);
+        return this;
+    }
+
+
+    /**
+     * Set the value of a field by its index in the schema. Validates the value, throwing a {@link DataException} if it
+     * does not match the field's {@link Schema}.
+     * @param index the index of the field to set
+     * @param value the value of the field
+     * @return the Struct, to allow chaining of {@link #put(int, Object)} calls
+     */
+    public Struct put(int index, Object value) {
+        return put(lookupField(index), value);
+    }
+
+    /**
+     * Set the value of a field by its index in the schema without validating it. Only for values known to match the
+     * field's {@link Schema}, for example values produced by code compiled against the schema. An invalid value is
+     * only detected by {@link #validate()} or when the struct is converted.
+     * @param index the index of the field to set
+     * @param value the value of the field
+     * @return the Struct
+     */
+    public Struct putTrusted(int index, Object value) {
+        checkLive();
+        setRawValue(schema.fields().get(index), value);
+        return this;
+    }
+
+    /**
+     * Set the values of all fields in schema order. Every value is validated before any is set, so if a
+     * {@link DataException} is thrown the Struct is unchanged.
+     * @param values the values, one per field of the schema
+     * @return the Struct
+     */
+    public Struct fill(Object... values) {
+        if (values.length != this.values.length)
+            throw new DataException("Expected " + this.values.length + " values but got " + values.length);
+        checkLive();
+        List<Field> fields = schema.fields();
+        SchemaValidator validator = SchemaValidator.of(schema);
+        for (int i = 0; i < values.length; i++)
+            validator.validateField(i, values[i]);
+        for (int i = 0; i < values.length; i++)
+            setRawValue(fields.get(i), values[i]);
         return this;
     }
 
+    /**
+     * Clear the values of all fields, so the struct can be filled again.
+     */
+    public void reset() {
+        Arrays.fill(values, null);
+    }
+
+    /**
+     * Get the pool generation of this struct. Holders of a pooled struct record the generation when they receive the
+     * struct and pass it to {@link #checkGeneration(int)} before using it.
+     * @return the number of times this struct has been released to a {@link StructPool}
+     */
+    public int generation() {
+        return generation;
+    }
+
+    /**
+     * Check that this struct has not been released to its pool since the generation was read, throwing a
+     * {@link DataException} if it has, since its values may now belong to another record.
+     * @param generation the generation returned by {@link #generation()}
+     */
+    public void checkGeneration(int generation) {
+        if (released || this.generation != generation)
+            throw new DataException("Struct has been released to its pool and may have been reused");
+    }
+
+    /**
+     * Mark the struct as released to a pool and clear its values. Throws an IllegalStateException if the struct is
+     * already released.
+     */
+    void release() {
+        if (released)
+            throw new IllegalStateException("Struct has already been released to its pool");
+        released = true;
+        generation++;
+        reset();
+    }
+
+    /**
+     * Mark a released struct as in use again.
+     */
+    void reuse() {
+        released = false;
+    }
+
+    /**
+     * Throw a {@link DataException} if the struct has been released to its pool. Released structs must not be read or
+     * written, they may be handed out again at any time.
+     */
+    protected void checkLive() {
+        if (released)
+            throw new DataException("Struct has been released to its pool");
+    }
 
     /**
      * Validates that this struct has filled in all the necessary data with valid values. For required fields
@@ -207,27 +321,57 @@ public class Struct {
      * fails, throws a DataException.
      */
     public void validate() {
+        SchemaValidator validator = SchemaValidator.of(schema);
         for (Field field : schema.fields()) {
             Schema fieldSchema = field.schema();
-            Object value = values[field.index()];
+            Object value = rawValue(field.index());
             if (value == null && (fieldSchema.isOptional() || fieldSchema.defaultValue() != null))
                 continue;
-            ConnectSchema.validateValue(field.name(), fieldSchema, value);
+            validator.validateField(field.index(), value);
         }
     }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        // Subclasses only change how values are stored, so any two structs with equal values are equal
+        if (!(o instanceof Struct)) return false;
         Struct struct = (Struct) o;
-        return Objects.equals(schema, struct.schema) &&
-                Arrays.equals(values, struct.values);
+        if (!Objects.equals(schema, struct.schema))
+            return false;
+        for (int i = 0; i < values.length; i++) {
+            if (!Objects.equals(rawValue(i), struct.rawValue(i)))
+                return false;
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(schema, Arrays.hashCode(values));
+        // Same as Arrays.hashCode of the values
+        int valuesHash = 1;
+        for (int i = 0; i < values.length; i++)
+            valuesHash = 31 * valuesHash + Objects.hashCode(rawValue(i));
+        return Objects.hash(schema, valuesHash);
+    }
+
+    /**
+     * Get the stored value of a field, without accounting for default values. Subclasses which store some values
+     * elsewhere override this along with {@link #setRawValue(Field, Object)}.
+     * @param index the index of the field
+     * @return the value, or null if not set
+     */
+    protected Object rawValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Store the value of a field which has already been validated.
+     * @param field the field
+     * @param value the value, may be null
+     */
+    protected void setRawValue(Field field, Object value) {
+        values[field.index()] = value;
     }
 
     private Field lookupField(String fieldName) {
@@ -237,13 +381,20 @@ public class Struct {
         return field;
     }
 
+    private Field lookupField(int index) {
+        if (index < 0 || index >= values.length)
+            throw new DataException(index + " is not a valid field index");
+        return schema.fields().get(index);
+    }
+
     // Get the field's value, but also check that the field matches the specified type, throwing an exception if it doesn't.
     // Used to implement the get*() methods that return typed data instead of Object
     private Object getCheckType(String fieldName, Schema.Type type) {
+        checkLive();
         Field field = lookupField(fieldName);
         if (field.schema().type() != type)
             throw new DataException("Field '" + fieldName + "' is not of type " + type);
-        return values[field.index()];
+        return rawValue(field.index());
     }
 
     @Override
@@ -251,7 +402,7 @@ public class Struct {
         final StringBuilder sb = new StringBuilder("Struct{");
         boolean first = true;
         for (int i = 0; i < values.length; i++) {
-            final Object value = values[i];
+            final Object value = rawValue(i);
             if (value != null) {
                 final Field field = schema.fields().get(i);
                 if (first) {
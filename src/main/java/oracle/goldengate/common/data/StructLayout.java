@@ -0,0 +1,81 @@
+package oracle.goldengate.common.data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *     The nameless structure of a struct schema: its fields, the lookup table of the fields by name and the compiled
+ *     validators of the fields. The name, version, doc, parameters, optionality and default value are attached
+ *     separately by {@link ConnectSchema}, so the schemas of tables with the same column layout, which only differ in
+ *     name, share one layout when built by {@link SchemaBuilder}, see {@link SchemaInterner}.
+ * </p>
+ * <p>
+ *     Two layouts are equal if their fields are equal.
+ * </p>
+ */
+final class StructLayout {
+    private final List<Field> fields;
+    // Open addressed table of the fields by name, at least twice the number of fields so that there is always an
+    // empty slot. String caches its hash code, so a lookup is a mask and usually a single equals.
+    private final Field[] fieldTable;
+    private final int hash;
+    // Compiled validators of the fields, created on first use. A race only compiles them twice.
+    private volatile SchemaValidator[] fieldValidators;
+
+    StructLayout(List<Field> fields) {
+        this.fields = fields == null ? Collections.<Field>emptyList() : fields;
+        this.fieldTable = new Field[Integer.highestOneBit(Math.max(1, this.fields.size()) * 2 - 1) << 1];
+        int mask = fieldTable.length - 1;
+        for (Field field : this.fields) {
+            int slot = spread(field.name().hashCode()) & mask;
+            while (fieldTable[slot] != null && !fieldTable[slot].name().equals(field.name()))
+                slot = (slot + 1) & mask;
+            fieldTable[slot] = field;
+        }
+        this.hash = this.fields.hashCode();
+    }
+
+    List<Field> fields() {
+        return fields;
+    }
+
+    Field field(String fieldName) {
+        if (fieldName == null)
+            return null;
+        int mask = fieldTable.length - 1;
+        for (int slot = spread(fieldName.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            Field field = fieldTable[slot];
+            if (field == null || field.name().equals(fieldName))
+                return field;
+        }
+    }
+
+    SchemaValidator[] fieldValidators() {
+        SchemaValidator[] result = fieldValidators;
+        if (result == null) {
+            result = new SchemaValidator[fields.size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = SchemaValidator.of(fields.get(i).schema());
+            fieldValidators = result;
+        }
+        return result;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StructLayout layout = (StructLayout) o;
+        return hash == layout.hash && fields.equals(layout.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
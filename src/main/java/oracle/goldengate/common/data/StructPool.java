@@ -0,0 +1,93 @@
+package oracle.goldengate.common.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *     A per-schema pool of {@link PrimitiveStruct} instances, used as an arena: structs are acquired while formatting
+ *     records and all of them are released together once the records have been serialized, so steady state
+ *     formatting does not allocate row containers. A pool is not thread safe and is meant to be used by one thread.
+ * </p>
+ * <p>
+ *     Released structs are cleared and refuse reads and writes until they are acquired again, and every release
+ *     increments the struct's {@link Struct#generation()}. A holder which records the generation when it receives a
+ *     struct can detect with {@link Struct#checkGeneration(int)} that the struct was released while still referenced.
+ * </p>
+ */
+public class StructPool {
+    // Bound on the schemas with free structs, schemas of dropped tables are otherwise never reclaimed
+    private static final int MAX_SCHEMAS = 1024;
+
+    private final int maxFreePerSchema;
+    private final Map<Schema, ArrayDeque<PrimitiveStruct>> free = new IdentityHashMap<>();
+    private final List<PrimitiveStruct> leased = new ArrayList<>();
+    private long numAllocated;
+    private long numReused;
+
+    /**
+     * Create a pool.
+     * @param maxFreePerSchema the maximum number of released structs kept for each schema
+     */
+    public StructPool(int maxFreePerSchema) {
+        this.maxFreePerSchema = maxFreePerSchema;
+    }
+
+    /**
+     * Get an empty struct for the schema, reusing a released one if available.
+     * @param schema the struct schema
+     * @return the struct, valid until the next call to {@link #releaseAll()}
+     */
+    public PrimitiveStruct acquire(Schema schema) {
+        ArrayDeque<PrimitiveStruct> structs = free.get(schema);
+        PrimitiveStruct struct = structs == null ? null : structs.pollFirst();
+        if (struct == null) {
+            struct = new PrimitiveStruct(schema);
+            numAllocated++;
+        } else {
+            struct.reuse();
+            numReused++;
+        }
+        leased.add(struct);
+        return struct;
+    }
+
+    /**
+     * Release every struct acquired since the last call. The caller must no longer reference any of them.
+     */
+    public void releaseAll() {
+        for (int i = 0; i < leased.size(); i++) {
+            PrimitiveStruct struct = leased.get(i);
+            struct.release();
+            ArrayDeque<PrimitiveStruct> structs = free.get(struct.schema());
+            if (structs == null) {
+                if (free.size() >= MAX_SCHEMAS)
+                    free.clear();
+                structs = new ArrayDeque<>();
+                free.put(struct.schema(), structs);
+            }
+            if (structs.size() < maxFreePerSchema)
+                structs.addFirst(struct);
+        }
+        leased.clear();
+    }
+
+    /**
+     * Get the number of structs allocated by the pool.
+     * @return the number of allocated structs
+     */
+    public long numAllocated() {
+        return numAllocated;
+    }
+
+    /**
+     * Get the number of times a released struct was reused.
+     * @return the number of reuses
+     */
+    public long numReused() {
+        return numReused;
+    }
+}
@@ -0,0 +1,197 @@
+package oracle.goldengate.json;
+
+import org.apache.kafka.common.cache.Cache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ *     A bounded cache for schema lookups which is read without locking. A lookup first checks a small direct mapped
+ *     table by key identity, since converters are passed the same schema instance for every record of a table, and
+ *     only falls back to an equality lookup in a ConcurrentHashMap when the instance is not found there.
+ * </p>
+ * <p>
+ *     When the cache is full a new entry is only admitted if it has been requested at least as often as the entry it
+ *     would replace, the least frequently requested of a few sampled entries. Otherwise the new entry is dropped again
+ *     and its value is rebuilt on its next use. Request frequencies are approximated by a count-min sketch with
+ *     counters capped at 15 which is halved periodically. Every miss counts, so a schema that keeps being requested
+ *     reaches the frequency of the busiest entries after a few uses and is admitted, while a burst of schemas used
+ *     once does not evict the schemas of busy tables.
+ * </p>
+ */
+final class ConcurrentSchemaCache<K, V> implements Cache<K, V> {
+    private static final int MAX_IDENTITY_TABLE_SIZE = 1024;
+    private static final int SAMPLE_SIZE = 8;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int[] SKETCH_SEEDS = {0x97cb3127, 0xb8d3a7c5, 0x4f1bbcdd, 0xe3b37a91};
+
+    private final int maxSize;
+    private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<IdentityEntry<K, V>> identityTable;
+    private final int identityMask;
+    // Counters are updated without synchronization, lost updates only make the frequencies less precise
+    private final byte[] sketch;
+    private final int sketchMask;
+    private final int sketchResetAt;
+    private int sketchAdditions;
+    private final Object evictionLock = new Object();
+
+    /**
+     * Create a cache.
+     * @param maxSize the maximum number of entries
+     */
+    ConcurrentSchemaCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        int identitySize = tableSize(Math.min(this.maxSize, MAX_IDENTITY_TABLE_SIZE));
+        this.identityTable = new AtomicReferenceArray<>(identitySize);
+        this.identityMask = identitySize - 1;
+        int sketchSize = tableSize(Math.max(64, this.maxSize * 16));
+        this.sketch = new byte[sketchSize];
+        this.sketchMask = sketchSize - 1;
+        this.sketchResetAt = this.maxSize * 10;
+    }
+
+    @Override
+    public V get(K key) {
+        int slot = spread(System.identityHashCode(key)) & identityMask;
+        IdentityEntry<K, V> entry = identityTable.get(slot);
+        if (entry != null && entry.key == key && !entry.node.removed) {
+            increment(entry.node.hash);
+            return entry.node.value;
+        }
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            increment(spread(key.hashCode()));
+            return null;
+        }
+        increment(node.hash);
+        identityTable.set(slot, new IdentityEntry<>(key, node));
+        return node.value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Node<K, V> node = new Node<>(key, value, spread(key.hashCode()));
+        increment(node.hash);
+        Node<K, V> old = map.put(key, node);
+        if (old != null)
+            old.removed = true;
+        else if (map.size() > maxSize)
+            evict(node);
+        if (!node.removed)
+            identityTable.set(spread(System.identityHashCode(key)) & identityMask, new IdentityEntry<>(key, node));
+    }
+
+    @Override
+    public boolean remove(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node == null)
+            return false;
+        node.removed = true;
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return map.size();
+    }
+
+    private void evict(Node<K, V> candidate) {
+        synchronized (evictionLock) {
+            while (map.size() > maxSize && !candidate.removed) {
+                Node<K, V> victim = sampleVictim(candidate);
+                // Ties admit the candidate, so a new schema used as often as the cached ones replaces one of them
+                if (victim == null || frequency(candidate.hash) < frequency(victim.hash))
+                    victim = candidate;
+                if (map.remove(victim.key, victim))
+                    victim.removed = true;
+            }
+        }
+    }
+
+    // The least frequently requested of a few entries following a random position
+    private Node<K, V> sampleVictim(Node<K, V> candidate) {
+        int size = map.size();
+        int skip = size > SAMPLE_SIZE ? ThreadLocalRandom.current().nextInt(size - SAMPLE_SIZE) : 0;
+        Node<K, V> victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        int sampled = 0;
+        Iterator<Node<K, V>> nodes = map.values().iterator();
+        while (nodes.hasNext() && sampled < SAMPLE_SIZE) {
+            Node<K, V> node = nodes.next();
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            if (node == candidate)
+                continue;
+            sampled++;
+            int nodeFrequency = frequency(node.hash);
+            if (nodeFrequency < victimFrequency) {
+                victim = node;
+                victimFrequency = nodeFrequency;
+            }
+        }
+        return victim;
+    }
+
+    private void increment(int hash) {
+        for (int seed : SKETCH_SEEDS) {
+            int index = sketchIndex(hash, seed);
+            if (sketch[index] < MAX_FREQUENCY)
+                sketch[index]++;
+        }
+        if (++sketchAdditions >= sketchResetAt) {
+            sketchAdditions = 0;
+            for (int i = 0; i < sketch.length; i++)
+                sketch[i] = (byte) (sketch[i] >>> 1);
+        }
+    }
+
+    private int frequency(int hash) {
+        int frequency = MAX_FREQUENCY;
+        for (int seed : SKETCH_SEEDS)
+            frequency = Math.min(frequency, sketch[sketchIndex(hash, seed)]);
+        return frequency;
+    }
+
+    private int sketchIndex(int hash, int seed) {
+        return spread(hash * seed) & sketchMask;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+    private static int tableSize(int minSize) {
+        return Integer.highestOneBit(Math.max(1, minSize - 1)) << 1;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int hash;
+        volatile boolean removed;
+
+        Node(K key, V value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+    }
+
+    private static final class IdentityEntry<K, V> {
+        final K key;
+        final Node<K, V> node;
+
+        IdentityEntry(K key, Node<K, V> node) {
+            this.key = key;
+            this.node = node;
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package oracle.goldengate.json;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.kafka.common.cache.Cache;
-import org.apache.kafka.common.cache.LRUCache;
-import org.apache.kafka.common.cache.SynchronizedCache;
 import org.apache.kafka.common.errors.SerializationException;
 import oracle.goldengate.common.data.SchemaBuilder;
 import oracle.goldengate.common.data.Schema;
 import oracle.goldengate.common.data.Struct;
+import oracle.goldengate.common.data.PrimitiveStruct;
+import oracle.goldengate.common.data.RawTextValues;
 import oracle.goldengate.common.data.Field;
 import oracle.goldengate.common.data.ConnectSchema;
 import oracle.goldengate.common.data.SchemaAndValue;
@@ -19,25 +27,64 @@ import oracle.goldengate.common.data.Time;
 import oracle.goldengate.common.data.Decimal;
 import oracle.goldengate.common.data.Date;
 import org.apache.kafka.connect.errors.DataException;
-import oracle.goldengate.storage.Converter;
+import oracle.goldengate.storage.BatchConverter;
+import oracle.goldengate.storage.BufferedConverter;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of Converter that uses JSON to store schemas and objects.
  */
-public class JsonConverter implements Converter {
+public class JsonConverter implements BufferedConverter, BatchConverter {
     private static final String SCHEMAS_ENABLE_CONFIG = "schemas.enable";
     private static final boolean SCHEMAS_ENABLE_DEFAULT = true;
     private static final String SCHEMAS_CACHE_SIZE_CONFIG = "schemas.cache.size";
     private static final int SCHEMAS_CACHE_SIZE_DEFAULT = 1000;
+    private static final String SCHEMAS_REFERENCE_ENABLE_CONFIG = "schemas.reference.enable";
+    private static final boolean SCHEMAS_REFERENCE_ENABLE_DEFAULT = false;
+    private static final String SCHEMAS_REFERENCE_TOPIC_CONFIG = "schemas.reference.topic";
+    private static final String SCHEMAS_REFERENCE_TOPIC_DEFAULT = "gg_schemas";
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // Strings up to this length are checked for the ASCII fast path, longer strings are written by the generator
+    private static final int ASCII_FAST_PATH_MAX_LENGTH = 4096;
+    // Size estimates of values which have no fixed size, and of values without a schema
+    private static final int STRING_SIZE_ESTIMATE = 32;
+    private static final int BYTES_SIZE_ESTIMATE = 64;
+    private static final int COLLECTION_SIZE_ESTIMATE = 128;
+    // The batch output buffer of a thread is kept for reuse up to this size
+    private static final int INITIAL_BATCH_BUFFER_SIZE = 8192;
+    private static final int MAX_BATCH_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    // The envelope around the serialized schema and payload, the field names are plain ASCII
+    private static final byte[] ENVELOPE_START = ("{\"" + JsonSchema.ENVELOPE_SCHEMA_FIELD_NAME + "\":").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ENVELOPE_SCHEMA_ID_START = ("{\"" + JsonSchema.ENVELOPE_SCHEMA_ID_FIELD_NAME + "\":").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ENVELOPE_PAYLOAD = (",\"" + JsonSchema.ENVELOPE_PAYLOAD_FIELD_NAME + "\":").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NULL_SCHEMA_ID = "null".getBytes(StandardCharsets.UTF_8);
+    private static final int ENVELOPE_END = '}';
+
+    private static final ThreadLocal<WriteBuffer> WRITE_BUFFERS = new ThreadLocal<WriteBuffer>() {
+        @Override
+        protected WriteBuffer initialValue() {
+            return new WriteBuffer();
+        }
+    };
 
     private static final HashMap<Schema.Type, JsonToConnectTypeConverter> TO_CONNECT_CONVERTERS = new HashMap<>();
 
@@ -156,8 +203,11 @@ public class JsonConverter implements Converter {
                 // translation of schemas to JSON; during the more common translation of data to JSON, the call to schema.schema()
                 // just returns the schema Object and has no overhead.
                 Struct result = new Struct(schema.schema());
-                for (Field field : schema.fields())
-                    result.put(field, convertToConnect(field.schema(), value.get(field.name())));
+                List<Field> fields = schema.fields();
+                for (int i = 0; i < fields.size(); i++) {
+                    Field field = fields.get(i);
+                    result.put(i, convertToConnect(field.schema(), value.get(field.name())));
+                }
 
                 return result;
             }
@@ -246,11 +296,22 @@ public class JsonConverter implements Converter {
 
 
     private boolean enableSchemas = SCHEMAS_ENABLE_DEFAULT;
+    private boolean referenceSchemas = SCHEMAS_REFERENCE_ENABLE_DEFAULT;
+    private String schemaTopic = SCHEMAS_REFERENCE_TOPIC_DEFAULT;
+    private volatile SchemaPublisher schemaPublisher;
+    // Fingerprints of the schemas published by this converter. Never evicted, unlike the envelope prefix cache, so a
+    // schema is published once even if its prefix is rebuilt.
+    private final Set<String> publishedFingerprints = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private int cacheSize = SCHEMAS_CACHE_SIZE_DEFAULT;
     private Cache<Schema, ObjectNode> fromConnectSchemaCache;
-    private Cache<JsonNode, Schema> toConnectSchemaCache;
+    // Keyed by the serialized schema, hashing the bytes is much cheaper than hashing a deserialized tree
+    private Cache<ByteBuffer, Schema> toConnectSchemaCache;
+    private Cache<Schema, SerializedString[]> fieldNamesCache;
+    private Cache<Schema, byte[]> envelopePrefixCache;
+    private Cache<Schema, Integer> sizeEstimateCache;
+    private Cache<Schema, SharedKey> sharedKeyCache;
 
-    private final JsonSerializer serializer = new JsonSerializer();
+    private final ObjectMapper objectMapper = new ObjectMapper();
     private final JsonDeserializer deserializer = new JsonDeserializer();
 
     @Override
@@ -259,28 +320,300 @@ public class JsonConverter implements Converter {
         if (enableConfigsVal != null)
             enableSchemas = enableConfigsVal.toString().equals("true");
 
-        serializer.configure(configs, isKey);
         deserializer.configure(configs, isKey);
 
+        Object referenceEnableVal = configs.get(SCHEMAS_REFERENCE_ENABLE_CONFIG);
+        if (referenceEnableVal != null)
+            referenceSchemas = referenceEnableVal.toString().equals("true");
+        Object referenceTopicVal = configs.get(SCHEMAS_REFERENCE_TOPIC_CONFIG);
+        if (referenceTopicVal != null)
+            schemaTopic = referenceTopicVal.toString();
+
         Object cacheSizeVal = configs.get(SCHEMAS_CACHE_SIZE_CONFIG);
         if (cacheSizeVal != null)
             cacheSize = Integer.parseInt((String) cacheSizeVal);
-        fromConnectSchemaCache = new SynchronizedCache<>(new LRUCache<Schema, ObjectNode>(cacheSize));
-        toConnectSchemaCache = new SynchronizedCache<>(new LRUCache<JsonNode, Schema>(cacheSize));
+        fromConnectSchemaCache = new ConcurrentSchemaCache<>(cacheSize);
+        toConnectSchemaCache = new ConcurrentSchemaCache<>(cacheSize);
+        fieldNamesCache = new ConcurrentSchemaCache<>(cacheSize);
+        envelopePrefixCache = new ConcurrentSchemaCache<>(cacheSize);
+        sizeEstimateCache = new ConcurrentSchemaCache<>(cacheSize);
+        sharedKeyCache = new ConcurrentSchemaCache<>(cacheSize);
     }
 
     @Override
     public byte[] fromConnectData(String topic, Schema schema, Object value) {
-        JsonNode jsonValue = enableSchemas ? convertToJsonWithEnvelope(schema, value) : convertToJsonWithoutEnvelope(schema, value);
+        if (schema == null && value == null) {
+            // A tombstone, a null value must be written as null rather than an envelope
+            return null;
+        }
+        WriteBuffer buffer = WRITE_BUFFERS.get();
+        buffer.out.reset();
         try {
-            return serializer.serialize(topic, jsonValue);
-        } catch (SerializationException e) {
+            writeJson(buffer.out, buffer, schema, value);
+        } catch (IOException e) {
+            throw new DataException("Converting Kafka Connect data to byte[] failed due to serialization error: ", e);
+        }
+        return buffer.out.toByteArray();
+    }
+
+    @Override
+    public ByteBuffer fromConnectData(String topic, Schema schema, Object value, ByteBuffer buffer) {
+        if (schema == null && value == null)
+            return null;
+        buffer.clear();
+        ByteBufferOutput out = new ByteBufferOutput(buffer);
+        try {
+            writeJson(out, WRITE_BUFFERS.get(), schema, value);
+        } catch (IOException e) {
             throw new DataException("Converting Kafka Connect data to byte[] failed due to serialization error: ", e);
         }
+        out.buffer.flip();
+        return out.buffer;
+    }
+
+    @Override
+    public byte[][] fromConnectData(String topic, Schema schema, Object[] values, int offset, int length) {
+        byte[][] results = new byte[length][];
+        // End offset of each value in the batch buffer, -1 for null values
+        int[] ends = new int[length];
+        WriteBuffer buffer = WRITE_BUFFERS.get();
+        buffer.batch.clear();
+        ByteBufferOutput out = new ByteBufferOutput(buffer.batch);
+        try {
+            byte[] prefix = enableSchemas ? envelopePrefix(schema) : null;
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                // The values are written back to back as separate root values
+                generator.setRootValueSeparator(null);
+                for (int i = 0; i < length; i++) {
+                    Object value = values[offset + i];
+                    if (schema == null && value == null) {
+                        // A tombstone, a null value must be written as null rather than an envelope
+                        ends[i] = -1;
+                        continue;
+                    }
+                    if (prefix != null)
+                        out.write(prefix);
+                    writeJson(generator, buffer, schema, value);
+                    generator.flush();
+                    if (prefix != null)
+                        out.write(ENVELOPE_END);
+                    ends[i] = out.buffer.position();
+                }
+            }
+        } catch (IOException e) {
+            throw new DataException("Converting Kafka Connect data to byte[] failed due to serialization error: ", e);
+        }
+        byte[] array = out.buffer.array();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (ends[i] < 0)
+                continue;
+            results[i] = Arrays.copyOfRange(array, start, ends[i]);
+            start = ends[i];
+        }
+        if (out.buffer.capacity() <= MAX_BATCH_BUFFER_SIZE)
+            buffer.batch = out.buffer;
+        return results;
+    }
+
+    /**
+     * <p>
+     * Convert the key and the value of a record in one pass. The payload of a row holds its primary key columns, so
+     * the serialized values of the value fields which are also key fields are captured while the value is written,
+     * and the key is assembled from them rather than serialized a second time.
+     * </p>
+     * <p>
+     * The key is written in the envelope of the key converter and is identical to its own output. If the key is not a
+     * struct, a key field has no field of the same name and schema in the value, or a key field value differs from
+     * the value field, as for masked columns, the key is converted by the key converter instead.
+     * </p>
+     * @param topic the topic
+     * @param keyConverter the converter of the record keys
+     * @param keySchema the key schema
+     * @param key the key
+     * @param valueSchema the value schema
+     * @param value the value
+     * @return the serialized key and value, in that order
+     */
+    public byte[][] fromConnectData(String topic, JsonConverter keyConverter, Schema keySchema, Object key,
+                                    Schema valueSchema, Object value) {
+        SharedKey shared = sharedKey(keySchema, key, valueSchema, value);
+        if (shared == null)
+            return new byte[][]{keyConverter.fromConnectData(topic, keySchema, key),
+                    fromConnectData(topic, valueSchema, value)};
+
+        byte[][] results = new byte[2][];
+        int[] bounds = new int[2 * valueSchema.fields().size()];
+        WriteBuffer buffer = WRITE_BUFFERS.get();
+        buffer.batch.clear();
+        ByteBufferOutput out = new ByteBufferOutput(buffer.batch);
+        try {
+            if (enableSchemas)
+                out.write(envelopePrefix(valueSchema));
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                writeStruct(generator, buffer, valueSchema, (Struct) value, new KeyFragments(shared.captured, bounds, out));
+            }
+            if (enableSchemas)
+                out.write(ENVELOPE_END);
+            results[1] = Arrays.copyOf(out.buffer.array(), out.buffer.position());
+            results[0] = keyConverter.writeSharedKey(keySchema, shared.valueIndexes, out.buffer.array(), bounds);
+        } catch (IOException e) {
+            throw new DataException("Converting Kafka Connect data to byte[] failed due to serialization error: ", e);
+        }
+        if (out.buffer.capacity() <= MAX_BATCH_BUFFER_SIZE)
+            buffer.batch = out.buffer;
+        return results;
+    }
+
+    /**
+     * Get how the key of a record can be assembled from its value, or null if it must be converted on its own.
+     */
+    private SharedKey sharedKey(Schema keySchema, Object key, Schema valueSchema, Object value) {
+        if (!(key instanceof Struct) || !(value instanceof Struct) || keySchema == null || valueSchema == null)
+            return null;
+        Struct keyStruct = (Struct) key;
+        Struct valueStruct = (Struct) value;
+        if (keyStruct.schema() != keySchema || valueStruct.schema() != valueSchema)
+            return null;
+        SharedKey shared = sharedKeyCache.get(valueSchema);
+        if (shared == null || shared.keySchema != keySchema) {
+            shared = new SharedKey(keySchema, valueSchema);
+            sharedKeyCache.put(valueSchema, shared);
+        }
+        if (shared.valueIndexes == null)
+            return null;
+        for (int i = 0; i < shared.valueIndexes.length; i++) {
+            if (!sameValue(keyStruct, i, valueStruct, shared.valueIndexes[i]))
+                return null;
+        }
+        return shared;
+    }
+
+    /**
+     * Check if a key field holds the same value as a value field, comparing unboxed and raw text values as stored.
+     */
+    private static boolean sameValue(Struct key, int keyIndex, Struct value, int valueIndex) {
+        if (key instanceof PrimitiveStruct && value instanceof PrimitiveStruct) {
+            PrimitiveStruct keyPrimitives = (PrimitiveStruct) key;
+            PrimitiveStruct valuePrimitives = (PrimitiveStruct) value;
+            if (keyPrimitives.hasLong(keyIndex) || valuePrimitives.hasLong(valueIndex))
+                return keyPrimitives.hasLong(keyIndex) && valuePrimitives.hasLong(valueIndex)
+                        && keyPrimitives.getLong(keyIndex) == valuePrimitives.getLong(valueIndex);
+            if (keyPrimitives.hasDouble(keyIndex) || valuePrimitives.hasDouble(valueIndex))
+                return keyPrimitives.hasDouble(keyIndex) && valuePrimitives.hasDouble(valueIndex)
+                        && Double.doubleToLongBits(keyPrimitives.getDouble(keyIndex))
+                        == Double.doubleToLongBits(valuePrimitives.getDouble(valueIndex));
+        }
+        if (key instanceof RawTextValues && value instanceof RawTextValues) {
+            String keyText = ((RawTextValues) key).rawText(keyIndex);
+            String valueText = ((RawTextValues) value).rawText(valueIndex);
+            if (keyText != null || valueText != null)
+                return keyText != null && keyText.equals(valueText);
+        }
+        Object keyValue = key.get(keyIndex);
+        return keyValue == null ? value.get(valueIndex) == null : keyValue.equals(value.get(valueIndex));
+    }
+
+    /**
+     * Write a key struct in the envelope of this converter from the serialized values of its fields captured while
+     * writing the value.
+     */
+    private byte[] writeSharedKey(Schema keySchema, int[] valueIndexes, byte[] fragments, int[] bounds) throws IOException {
+        byte[] prefix = enableSchemas ? envelopePrefix(keySchema) : null;
+        SerializedString[] names = fieldNames(keySchema);
+        int size = (prefix == null ? 0 : prefix.length + 1) + 2;
+        for (int i = 0; i < names.length; i++) {
+            int valueIndex = valueIndexes[i];
+            size += (i > 0 ? 1 : 0) + names[i].asQuotedUTF8().length + 2
+                    + bounds[2 * valueIndex + 1] - bounds[2 * valueIndex];
+        }
+        byte[] bytes = new byte[size];
+        int position = 0;
+        if (prefix != null) {
+            System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+            position = prefix.length;
+        }
+        bytes[position++] = '{';
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0)
+                bytes[position++] = ',';
+            byte[] name = names[i].asQuotedUTF8();
+            bytes[position++] = '"';
+            System.arraycopy(name, 0, bytes, position, name.length);
+            position += name.length;
+            bytes[position++] = '"';
+            // The captured value starts with the colon the generator writes before it
+            int start = bounds[2 * valueIndexes[i]];
+            int length = bounds[2 * valueIndexes[i] + 1] - start;
+            System.arraycopy(fragments, start, bytes, position, length);
+            position += length;
+        }
+        bytes[position++] = '}';
+        if (prefix != null)
+            bytes[position] = ENVELOPE_END;
+        return bytes;
+    }
+
+    @Override
+    public int estimateSize(Schema schema) {
+        if (schema == null)
+            return COLLECTION_SIZE_ESTIMATE;
+        Integer cached = sizeEstimateCache.get(schema);
+        if (cached != null)
+            return cached;
+        int estimate = estimateValueSize(schema);
+        if (enableSchemas) {
+            try {
+                estimate += envelopePrefix(schema).length + 1;
+            } catch (IOException e) {
+                throw new DataException("Converting Kafka Connect schema to byte[] failed due to serialization error: ", e);
+            }
+        }
+        sizeEstimateCache.put(schema, estimate);
+        return estimate;
+    }
+
+    private static int estimateValueSize(Schema schema) {
+        switch (schema.type()) {
+            case INT8:
+                return 4;
+            case INT16:
+                return 6;
+            case INT32:
+                return 11;
+            case INT64:
+                return 20;
+            case FLOAT32:
+                return 16;
+            case FLOAT64:
+                return 24;
+            case BOOLEAN:
+                return 5;
+            case STRING:
+                return STRING_SIZE_ESTIMATE;
+            case BYTES:
+                return BYTES_SIZE_ESTIMATE;
+            case STRUCT:
+                // Braces, and per field the quoted name, the colon and the comma
+                int estimate = 2;
+                for (Field field : schema.fields())
+                    estimate += field.name().length() + 4 + estimateValueSize(field.schema());
+                return estimate;
+            default:
+                return COLLECTION_SIZE_ESTIMATE;
+        }
     }
 
     @Override
     public SchemaAndValue toConnectData(String topic, byte[] value) {
+        if (enableSchemas && value != null) {
+            try {
+                return envelopeToConnect(value);
+            } catch (IOException e) {
+                throw new DataException("Converting byte[] to Kafka Connect data failed due to serialization error: ", e);
+            }
+        }
+
         JsonNode jsonValue;
         try {
             jsonValue = deserializer.deserialize(topic, value);
@@ -288,6 +621,9 @@ public class JsonConverter implements Converter {
             throw new DataException("Converting byte[] to Kafka Connect data failed due to serialization error: ", e);
         }
 
+        if (jsonValue == null)
+            return SchemaAndValue.NULL;
+
         if (enableSchemas && (jsonValue == null || !jsonValue.isObject() || jsonValue.size() != 2 || !jsonValue.has("schema") || !jsonValue.has("payload")))
             throw new DataException("JsonConverter with schemas.enable requires \"schema\" and \"payload\" fields and may not contain additional fields." +
                     " If you are trying to deserialize plain JSON data, set schemas.enable=false in your converter configuration.");
@@ -304,6 +640,70 @@ public class JsonConverter implements Converter {
         return jsonToConnect(jsonValue);
     }
 
+    /**
+     * Convert an envelope by streaming over it. The schema is looked up by its serialized bytes and is only parsed
+     * when it is not cached, only the payload is deserialized into a tree for every record.
+     */
+    private SchemaAndValue envelopeToConnect(byte[] value) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(value)) {
+            JsonToken first = parser.nextToken();
+            if (first == null)
+                return SchemaAndValue.NULL;
+            if (first != JsonToken.START_OBJECT)
+                throw invalidEnvelope();
+            boolean hasSchema = false;
+            boolean hasPayload = false;
+            Schema schema = null;
+            JsonNode payload = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (!hasSchema && JsonSchema.ENVELOPE_SCHEMA_FIELD_NAME.equals(fieldName)) {
+                    hasSchema = true;
+                    if (token == JsonToken.START_OBJECT) {
+                        // The parser has just consumed the opening brace. The token location is not used, since
+                        // older Jackson versions report the location of the field name for the value of a field.
+                        int start = (int) parser.getCurrentLocation().getByteOffset() - 1;
+                        parser.skipChildren();
+                        int end = (int) parser.getCurrentLocation().getByteOffset();
+                        schema = asConnectSchema(value, start, end - start);
+                    } else {
+                        schema = asConnectSchema((JsonNode) parser.readValueAsTree());
+                    }
+                } else if (!hasPayload && JsonSchema.ENVELOPE_PAYLOAD_FIELD_NAME.equals(fieldName)) {
+                    hasPayload = true;
+                    payload = parser.readValueAsTree();
+                } else {
+                    throw invalidEnvelope();
+                }
+            }
+            if (!hasSchema || !hasPayload)
+                throw invalidEnvelope();
+            if (payload == null)
+                payload = NullNode.getInstance();
+            return new SchemaAndValue(schema, convertToConnect(schema, payload));
+        }
+    }
+
+    private static DataException invalidEnvelope() {
+        return new DataException("JsonConverter with schemas.enable requires \"schema\" and \"payload\" fields and may not contain additional fields." +
+                " If you are trying to deserialize plain JSON data, set schemas.enable=false in your converter configuration.");
+    }
+
+    /**
+     * Get the Connect schema of a serialized JSON schema, cached by its bytes.
+     */
+    private Schema asConnectSchema(byte[] value, int offset, int length) throws IOException {
+        ByteBuffer key = ByteBuffer.wrap(Arrays.copyOfRange(value, offset, offset + length));
+        Schema cached = toConnectSchemaCache.get(key);
+        if (cached != null)
+            return cached;
+        Schema result = asConnectSchema(objectMapper.readValue(value, offset, length, JsonNode.class));
+        if (result != null)
+            toConnectSchemaCache.put(key, result);
+        return result;
+    }
+
     private SchemaAndValue jsonToConnect(JsonNode jsonValue) {
         if (jsonValue == null)
             return SchemaAndValue.NULL;
@@ -315,6 +715,33 @@ public class JsonConverter implements Converter {
         return new SchemaAndValue(schema, convertToConnect(schema, jsonValue.get(JsonSchema.ENVELOPE_PAYLOAD_FIELD_NAME)));
     }
 
+    /**
+     * Set the publisher of schemas used in schema reference mode, enabled with schemas.reference.enable. In this mode
+     * the envelope of a record holds the fingerprint of its schema in a schemaId field instead of the schema, and each
+     * schema is published once to the compacted topic set with schemas.reference.topic, keyed by its fingerprint.
+     * Such records are decoded with a {@link SchemaReferenceDecoder}.
+     * @param schemaPublisher the schema publisher
+     */
+    public void setSchemaPublisher(SchemaPublisher schemaPublisher) {
+        this.schemaPublisher = schemaPublisher;
+    }
+
+    /**
+     * Build and cache everything needed to convert values of this schema, so the first records of a table are not
+     * slower than the following ones.
+     * @param schema the schema
+     */
+    public void prewarm(Schema schema) {
+        asJsonSchema(schema);
+        if (enableSchemas) {
+            try {
+                envelopePrefix(schema);
+            } catch (IOException e) {
+                throw new DataException("Converting Kafka Connect schema to byte[] failed due to serialization error: ", e);
+            }
+        }
+    }
+
     public ObjectNode asJsonSchema(Schema schema) {
         if (schema == null)
             return null;
@@ -395,15 +822,17 @@ public class JsonConverter implements Converter {
         return jsonSchema;
     }
 
-
+    /**
+     * Convert a JSON schema to a Connect schema. The result is not cached here, records are converted through a cache
+     * keyed by the serialized schema instead. The built schema is interned, so converting an equal JSON schema again
+     * returns the same instance.
+     * @param jsonSchema the JSON schema
+     * @return the Connect schema, or null for a JSON null
+     */
     public Schema asConnectSchema(JsonNode jsonSchema) {
         if (jsonSchema.isNull())
             return null;
 
-        Schema cached = toConnectSchemaCache.get(jsonSchema);
-        if (cached != null)
-            return cached;
-
         JsonNode schemaTypeNode = jsonSchema.get(JsonSchema.SCHEMA_TYPE_FIELD_NAME);
         if (schemaTypeNode == null || !schemaTypeNode.isTextual())
             throw new DataException("Schema must contain 'type' field");
@@ -504,32 +933,276 @@ public class JsonConverter implements Converter {
         if (schemaDefaultNode != null)
             builder.defaultValue(convertToConnect(builder, schemaDefaultNode));
 
-        Schema result = builder.build();
-        toConnectSchemaCache.put(jsonSchema, result);
-        return result;
+        return builder.build();
     }
 
 
     /**
-     * Convert this object, in org.apache.kafka.connect.data format, into a JSON object with an envelope object
-     * containing schema and payload fields.
+     * Write this object, in org.apache.kafka.connect.data format, as UTF-8 JSON, in an envelope object containing
+     * schema and payload fields if schemas are enabled.
+     * <p>
+     * The value is streamed to the output instead of building a JsonNode tree first. The output is identical to
+     * serializing the tree built by {@link #convertToJson(Schema, Object)} with a default ObjectMapper.
+     * </p>
+     * <p>
+     * The schema is serialized once per schema, only the payload is serialized for each record. In schema reference
+     * mode the schema is replaced by its fingerprint.
+     * </p>
+     * @param out the output
+     * @param buffer the scratch space of this thread
      * @param schema the schema for the data
      * @param value the value
-     * @return JsonNode-encoded version
      */
-    private JsonNode convertToJsonWithEnvelope(Schema schema, Object value) {
-        return new JsonSchema.Envelope(asJsonSchema(schema), convertToJson(schema, value)).toJsonNode();
+    private void writeJson(OutputStream out, WriteBuffer buffer, Schema schema, Object value) throws IOException {
+        if (enableSchemas)
+            out.write(envelopePrefix(schema));
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            writeJson(generator, buffer, schema, value);
+        }
+        if (enableSchemas)
+            out.write(ENVELOPE_END);
+    }
+
+    /**
+     * Get the start of the envelope up to the payload value, containing the serialized schema or, in schema reference
+     * mode, the fingerprint of the schema. A schema is published the first time its prefix is built.
+     */
+    private byte[] envelopePrefix(Schema schema) throws IOException {
+        byte[] prefix = schema == null ? null : envelopePrefixCache.get(schema);
+        if (prefix != null)
+            return prefix;
+        byte[] jsonSchema = objectMapper.writeValueAsBytes(asJsonSchema(schema));
+        byte[] start = ENVELOPE_START;
+        byte[] schemaValue = jsonSchema;
+        if (referenceSchemas) {
+            start = ENVELOPE_SCHEMA_ID_START;
+            schemaValue = NULL_SCHEMA_ID;
+            if (schema != null) {
+                String fingerprint = fingerprint(jsonSchema);
+                publishSchema(fingerprint, jsonSchema);
+                schemaValue = ("\"" + fingerprint + "\"").getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        prefix = new byte[start.length + schemaValue.length + ENVELOPE_PAYLOAD.length];
+        System.arraycopy(start, 0, prefix, 0, start.length);
+        System.arraycopy(schemaValue, 0, prefix, start.length, schemaValue.length);
+        System.arraycopy(ENVELOPE_PAYLOAD, 0, prefix, start.length + schemaValue.length, ENVELOPE_PAYLOAD.length);
+        if (schema != null)
+            envelopePrefixCache.put(schema, prefix);
+        return prefix;
+    }
+
+    /**
+     * Publish a schema unless this converter has published it before. A fingerprint is only recorded once the publisher
+     * has returned, and other threads needing the same schema wait for that, so no record referencing a schema is
+     * written before the schema.
+     */
+    private void publishSchema(String fingerprint, byte[] jsonSchema) {
+        if (publishedFingerprints.contains(fingerprint))
+            return;
+        SchemaPublisher publisher = schemaPublisher;
+        if (publisher == null)
+            throw new DataException("JsonConverter with " + SCHEMAS_REFERENCE_ENABLE_CONFIG + " requires a schema publisher.");
+        synchronized (publishedFingerprints) {
+            if (publishedFingerprints.contains(fingerprint))
+                return;
+            publisher.publish(schemaTopic, fingerprint, jsonSchema);
+            publishedFingerprints.add(fingerprint);
+        }
+    }
+
+    /**
+     * Compute the fingerprint of a serialized schema, the hex encoded SHA-256 digest of its bytes.
+     */
+    static String fingerprint(byte[] jsonSchema) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM).digest(jsonSchema);
+        } catch (NoSuchAlgorithmException e) {
+            throw new DataException("Schema fingerprint algorithm " + FINGERPRINT_ALGORITHM + " is not available.", e);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Write this object, in the org.apache.kafka.connect.data format, to the generator. Mirrors
+     * {@link #convertToJson(Schema, Object)}, maps are still converted through a tree since their keys may collide
+     * once converted to JSON field names.
+     */
+    private void writeJson(JsonGenerator generator, WriteBuffer buffer, Schema schema, Object logicalValue) throws IOException {
+        if (logicalValue == null) {
+            if (schema == null) { // Any schema is valid and we don't have a default, so treat this as an optional schema
+                generator.writeNull();
+                return;
+            }
+            if (schema.defaultValue() != null) {
+                writeJson(generator, buffer, schema, schema.defaultValue());
+                return;
+            }
+            if (schema.isOptional()) {
+                generator.writeNull();
+                return;
+            }
+            throw new DataException("Conversion error: null value for field that is required and has no default value");
+        }
+
+        Object value = logicalValue;
+        if (schema != null && schema.name() != null) {
+            LogicalTypeConverter logicalConverter = TO_JSON_LOGICAL_CONVERTERS.get(schema.name());
+            if (logicalConverter != null)
+                value = logicalConverter.convert(schema, logicalValue);
+        }
+
+        try {
+            final Schema.Type schemaType;
+            if (schema == null) {
+                schemaType = ConnectSchema.schemaType(value.getClass());
+                if (schemaType == null)
+                    throw new DataException("Java class " + value.getClass() + " does not have corresponding schema type.");
+            } else {
+                schemaType = schema.type();
+            }
+            switch (schemaType) {
+                case INT8:
+                    generator.writeNumber((Byte) value);
+                    return;
+                case INT16:
+                    generator.writeNumber((Short) value);
+                    return;
+                case INT32:
+                    generator.writeNumber((Integer) value);
+                    return;
+                case INT64:
+                    generator.writeNumber((Long) value);
+                    return;
+                case FLOAT32:
+                    generator.writeNumber((Float) value);
+                    return;
+                case FLOAT64:
+                    generator.writeNumber((Double) value);
+                    return;
+                case BOOLEAN:
+                    generator.writeBoolean((Boolean) value);
+                    return;
+                case STRING:
+                    writeString(generator, buffer, ((CharSequence) value).toString());
+                    return;
+                case BYTES:
+                    if (value instanceof byte[])
+                        generator.writeBinary((byte[]) value);
+                    else if (value instanceof ByteBuffer)
+                        generator.writeBinary(((ByteBuffer) value).array());
+                    else
+                        throw new DataException("Invalid type for bytes type: " + value.getClass());
+                    return;
+                case ARRAY: {
+                    Collection collection = (Collection) value;
+                    Schema valueSchema = schema == null ? null : schema.valueSchema();
+                    generator.writeStartArray();
+                    for (Object elem : collection)
+                        writeJson(generator, buffer, valueSchema, elem);
+                    generator.writeEndArray();
+                    return;
+                }
+                case MAP:
+                    objectMapper.writeTree(generator, convertToJson(schema, logicalValue));
+                    return;
+                case STRUCT:
+                    writeStruct(generator, buffer, schema, (Struct) value, null);
+                    return;
+            }
+
+            throw new DataException("Couldn't convert " + value + " to JSON.");
+        } catch (ClassCastException e) {
+            String schemaTypeStr = (schema != null) ? schema.type().toString() : "unknown schema";
+            throw new DataException("Invalid type for " + schemaTypeStr + ": " + value.getClass());
+        }
+    }
+
+    /**
+     * Write a struct. If fragments are given, the start and end offsets of the serialized values of the captured
+     * fields are recorded, the generator is flushed around them so the offsets are those of the output.
+     */
+    private void writeStruct(JsonGenerator generator, WriteBuffer buffer, Schema schema, Struct struct,
+                             KeyFragments fragments) throws IOException {
+        if (struct.schema() != schema)
+            throw new DataException("Mismatching schema.");
+        List<Field> fields = schema.fields();
+        SerializedString[] names = fieldNames(schema);
+        PrimitiveStruct primitives = struct instanceof PrimitiveStruct ? (PrimitiveStruct) struct : null;
+        RawTextValues texts = struct instanceof RawTextValues ? (RawTextValues) struct : null;
+        generator.writeStartObject();
+        for (int i = 0; i < names.length; i++) {
+            generator.writeFieldName(names[i]);
+            boolean captured = fragments != null && fragments.captured[i];
+            if (captured) {
+                generator.flush();
+                fragments.bounds[2 * i] = fragments.out.buffer.position();
+            }
+            String text = texts == null ? null : texts.rawText(i);
+            if (text != null)
+                writeString(generator, buffer, text);
+            else if (primitives != null && primitives.hasLong(i))
+                generator.writeNumber(primitives.getLong(i));
+            else if (primitives != null && primitives.hasDouble(i))
+                generator.writeNumber(primitives.getDouble(i));
+            else
+                writeJson(generator, buffer, fields.get(i).schema(), struct.get(i));
+            if (captured) {
+                generator.flush();
+                fragments.bounds[2 * i + 1] = fragments.out.buffer.position();
+            }
+        }
+        generator.writeEndObject();
     }
 
-    private JsonNode convertToJsonWithoutEnvelope(Schema schema, Object value) {
-        return convertToJson(schema, value);
+    /**
+     * Write a string value. Printable ASCII strings without quotes or backslashes need no escaping and no UTF-8
+     * encoding, so their chars are copied as bytes and written raw, other strings are escaped by the generator.
+     */
+    private static void writeString(JsonGenerator generator, WriteBuffer buffer, String text) throws IOException {
+        int length = text.length();
+        if (length > ASCII_FAST_PATH_MAX_LENGTH) {
+            generator.writeString(text);
+            return;
+        }
+        byte[] ascii = buffer.ascii;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 || c > 0x7E || c == '"' || c == '\\') {
+                generator.writeString(text);
+                return;
+            }
+            ascii[i] = (byte) c;
+        }
+        generator.writeRawUTF8String(ascii, 0, length);
+    }
+
+    /**
+     * Get the field names of a struct schema, quoted and encoded once per schema.
+     */
+    private SerializedString[] fieldNames(Schema schema) {
+        SerializedString[] names = fieldNamesCache.get(schema);
+        if (names != null)
+            return names;
+        List<Field> fields = schema.fields();
+        names = new SerializedString[fields.size()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = new SerializedString(fields.get(i).name());
+        fieldNamesCache.put(schema, names);
+        return names;
     }
 
     /**
      * Convert this object, in the org.apache.kafka.connect.data format, into a JSON object, returning both the schema
      * and the converted object.
      */
-    private static JsonNode convertToJson(Schema schema, Object logicalValue) {
+    static JsonNode convertToJson(Schema schema, Object logicalValue) {
         if (logicalValue == null) {
             if (schema == null) // Any schema is valid and we don't have a default, so treat this as an optional schema
                 return null;
@@ -630,8 +1303,22 @@ public class JsonConverter implements Converter {
                     if (struct.schema() != schema)
                         throw new DataException("Mismatching schema.");
                     ObjectNode obj = JsonNodeFactory.instance.objectNode();
-                    for (Field field : schema.fields()) {
-                        obj.set(field.name(), convertToJson(field.schema(), struct.get(field)));
+                    List<Field> fields = schema.fields();
+                    // Numeric values stored unboxed are written without boxing them
+                    PrimitiveStruct primitives = struct instanceof PrimitiveStruct ? (PrimitiveStruct) struct : null;
+                    // String values held as source text are written without reading them through the struct
+                    RawTextValues texts = struct instanceof RawTextValues ? (RawTextValues) struct : null;
+                    for (int i = 0; i < fields.size(); i++) {
+                        Field field = fields.get(i);
+                        String text = texts == null ? null : texts.rawText(i);
+                        if (text != null)
+                            obj.set(field.name(), JsonNodeFactory.instance.textNode(text));
+                        else if (primitives != null && primitives.hasLong(i))
+                            obj.set(field.name(), JsonNodeFactory.instance.numberNode(primitives.getLong(i)));
+                        else if (primitives != null && primitives.hasDouble(i))
+                            obj.set(field.name(), JsonNodeFactory.instance.numberNode(primitives.getDouble(i)));
+                        else
+                            obj.set(field.name(), convertToJson(field.schema(), struct.get(i)));
                     }
                     return obj;
                 }
@@ -645,7 +1332,7 @@ public class JsonConverter implements Converter {
     }
 
 
-    private static Object convertToConnect(Schema schema, JsonNode jsonValue) {
+    static Object convertToConnect(Schema schema, JsonNode jsonValue) {
         final Schema.Type schemaType;
         if (schema != null) {
             schemaType = schema.type();
@@ -709,4 +1396,91 @@ public class JsonConverter implements Converter {
     private interface LogicalTypeConverter {
         Object convert(Schema schema, Object value);
     }
+
+    /**
+     * The output buffers and the scratch space for ASCII strings of one thread, reused for every record.
+     */
+    private static final class WriteBuffer {
+        private final ByteArrayBuilder out = new ByteArrayBuilder();
+        private ByteBuffer batch = ByteBuffer.allocate(INITIAL_BATCH_BUFFER_SIZE);
+        private final byte[] ascii = new byte[ASCII_FAST_PATH_MAX_LENGTH];
+    }
+
+    /**
+     * An output stream writing to a heap ByteBuffer, replacing the buffer with one twice as large when it is full.
+     */
+    private static final class ByteBufferOutput extends OutputStream {
+        private ByteBuffer buffer;
+
+        ByteBufferOutput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureRemaining(1);
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureRemaining(len);
+            buffer.put(b, off, len);
+        }
+
+        private void ensureRemaining(int length) {
+            if (buffer.remaining() >= length)
+                return;
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+            ByteBuffer larger = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    /**
+     * The value fields holding the fields of a key schema, built once per value schema. The value indexes are null if
+     * a key field has no value field of the same name and schema.
+     */
+    private static final class SharedKey {
+        private final Schema keySchema;
+        private final int[] valueIndexes;
+        private final boolean[] captured;
+
+        SharedKey(Schema keySchema, Schema valueSchema) {
+            this.keySchema = keySchema;
+            this.captured = new boolean[valueSchema.fields().size()];
+            int[] indexes = null;
+            if (keySchema.type() == Schema.Type.STRUCT && valueSchema.type() == Schema.Type.STRUCT) {
+                List<Field> keyFields = keySchema.fields();
+                indexes = new int[keyFields.size()];
+                for (int i = 0; indexes != null && i < indexes.length; i++) {
+                    Field valueField = valueSchema.field(keyFields.get(i).name());
+                    if (valueField == null || !valueField.schema().equals(keyFields.get(i).schema())) {
+                        indexes = null;
+                    } else {
+                        indexes[i] = valueField.index();
+                        captured[valueField.index()] = true;
+                    }
+                }
+            }
+            this.valueIndexes = indexes;
+        }
+    }
+
+    /**
+     * The value fields to capture while writing a struct and the offsets of their serialized values in the output.
+     */
+    private static final class KeyFragments {
+        private final boolean[] captured;
+        private final int[] bounds;
+        private final ByteBufferOutput out;
+
+        KeyFragments(boolean[] captured, int[] bounds, ByteBufferOutput out) {
+            this.captured = captured;
+            this.bounds = bounds;
+            this.out = out;
+        }
+    }
 }
@@ -8,6 +8,7 @@ public class JsonSchema {
 
     static final String ENVELOPE_SCHEMA_FIELD_NAME = "schema";
     static final String ENVELOPE_PAYLOAD_FIELD_NAME = "payload";
+    static final String ENVELOPE_SCHEMA_ID_FIELD_NAME = "schemaId";
     static final String SCHEMA_TYPE_FIELD_NAME = "type";
     static final String SCHEMA_OPTIONAL_FIELD_NAME = "optional";
     static final String SCHEMA_NAME_FIELD_NAME = "name";
@@ -0,0 +1,17 @@
+package oracle.goldengate.json;
+
+/**
+ * Publishes the schemas of a {@link JsonConverter} in schema reference mode. Records only carry the fingerprint of
+ * their schema, the schema itself is published once to a compacted schema topic keyed by that fingerprint.
+ */
+public interface SchemaPublisher {
+
+    /**
+     * Publish a schema. The converter writes records referencing the schema as soon as this returns, so it must not
+     * return before the schema has been written.
+     * @param topic the schema topic
+     * @param fingerprint the hex encoded fingerprint of the schema, the key of the schema record
+     * @param jsonSchema the schema serialized as JSON, the value of the schema record
+     */
+    void publish(String topic, String fingerprint, byte[] jsonSchema);
+}
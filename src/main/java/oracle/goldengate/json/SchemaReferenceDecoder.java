@@ -0,0 +1,98 @@
+package oracle.goldengate.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaAndValue;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.connect.errors.DataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ *     Decodes records written by a {@link JsonConverter} in schema reference mode. The envelope of such a record holds
+ *     the fingerprint of its schema in a schemaId field instead of the schema itself, the schemas are read from the
+ *     compacted schema topic the converter publishes them to.
+ * </p>
+ * <p>
+ *     A consumer reads the schema topic from the beginning and passes every record to
+ *     {@link #addSchema(byte[], byte[])}, then decodes data records with {@link #toConnectData(String, byte[])}. Schemas
+ *     are parsed once and cached by fingerprint. A data record whose schema is not known yet fails with a
+ *     DataException, it can be decoded once the consumer has caught up with the schema topic.
+ * </p>
+ */
+public class SchemaReferenceDecoder {
+    private final JsonConverter converter = new JsonConverter();
+    private final JsonDeserializer deserializer = new JsonDeserializer();
+    private final ConcurrentMap<String, Schema> schemas = new ConcurrentHashMap<>();
+
+    public SchemaReferenceDecoder() {
+        converter.configure(new HashMap<String, Object>(), false);
+        deserializer.configure(new HashMap<String, Object>(), false);
+    }
+
+    /**
+     * Add a schema read from the schema topic.
+     * @param key the record key, the fingerprint of the schema
+     * @param value the record value, the schema serialized as JSON, or null to remove the schema
+     */
+    public void addSchema(byte[] key, byte[] value) {
+        if (key == null)
+            throw new DataException("Schema records must be keyed by the schema fingerprint.");
+        String fingerprint = new String(key, StandardCharsets.UTF_8);
+        if (value == null) {
+            schemas.remove(fingerprint);
+            return;
+        }
+        if (!fingerprint.equals(JsonConverter.fingerprint(value)))
+            throw new DataException("Schema record does not match its fingerprint " + fingerprint + ".");
+        JsonNode jsonSchema;
+        try {
+            jsonSchema = deserializer.deserialize(null, value);
+        } catch (SerializationException e) {
+            throw new DataException("Converting byte[] to Kafka Connect schema failed due to serialization error: ", e);
+        }
+        schemas.put(fingerprint, converter.asConnectSchema(jsonSchema));
+    }
+
+    /**
+     * Check if a schema has been added.
+     * @param fingerprint the fingerprint of the schema
+     * @return true if the schema is known
+     */
+    public boolean hasSchema(String fingerprint) {
+        return schemas.containsKey(fingerprint);
+    }
+
+    /**
+     * Decode a data record.
+     * @param topic the topic of the record
+     * @param value the record value or key
+     * @return the schema and the value of the record
+     */
+    public SchemaAndValue toConnectData(String topic, byte[] value) {
+        JsonNode jsonValue;
+        try {
+            jsonValue = deserializer.deserialize(topic, value);
+        } catch (SerializationException e) {
+            throw new DataException("Converting byte[] to Kafka Connect data failed due to serialization error: ", e);
+        }
+        if (jsonValue == null)
+            return SchemaAndValue.NULL;
+
+        if (!jsonValue.isObject() || jsonValue.size() != 2 || !jsonValue.has(JsonSchema.ENVELOPE_SCHEMA_ID_FIELD_NAME) || !jsonValue.has(JsonSchema.ENVELOPE_PAYLOAD_FIELD_NAME))
+            throw new DataException("JSON value with schema references must be in envelope containing \"schemaId\" and \"payload\" fields.");
+
+        JsonNode schemaId = jsonValue.get(JsonSchema.ENVELOPE_SCHEMA_ID_FIELD_NAME);
+        Schema schema = null;
+        if (!schemaId.isNull()) {
+            schema = schemas.get(schemaId.asText());
+            if (schema == null)
+                throw new DataException("Unknown schema " + schemaId.asText() + ", the schema topic must be read before the records referencing it.");
+        }
+        return new SchemaAndValue(schema, JsonConverter.convertToConnect(schema, jsonValue.get(JsonSchema.ENVELOPE_PAYLOAD_FIELD_NAME)));
+    }
+}
@@ -7,7 +7,7 @@ package oracle.goldengate.kafkaconnect;
 
 /**
  * Counters to track transactions, operations, inserts, updates, pk updates,
- * deletes, truncates, and DDL operations.
+ * deletes, truncates, DDL operations and coalesced operations.
  * @author tbcampbe
  */
 public class ConfluentHandlerMetrics {
@@ -19,6 +19,7 @@ public class ConfluentHandlerMetrics {
     private long numDeletes = 0;
     private long numTruncates = 0;
     private long numDdlOperations = 0;
+    private long numCoalescedOps = 0;
     
     /**
      * Method to increment the number of transactions.
@@ -137,4 +138,20 @@ public class ConfluentHandlerMetrics {
         return numDdlOperations;
     }
     
+    /**
+     * Method to add to the number of operations merged away by coalescing.
+     * @param count The number of operations merged away.
+     */
+    public void incrementNumCoalescedOps(long count){
+        numCoalescedOps += count;
+    }
+    
+    /**
+     * Method to get the number of operations merged away by coalescing.
+     * @return Total number of operations not sent due to coalescing.
+     */
+    public long getNumCoalescedOps(){
+        return numCoalescedOps;
+    }
+    
 }
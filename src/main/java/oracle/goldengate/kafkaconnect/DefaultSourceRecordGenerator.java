@@ -12,6 +12,7 @@ import java.util.Map;
 
 import oracle.goldengate.datasource.adapt.Op;
 import oracle.goldengate.datasource.adapt.Tx;
+import oracle.goldengate.common.data.Schema;
 import oracle.goldengate.common.data.Struct;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import oracle.goldengate.source.SourceRecord;
@@ -69,10 +70,12 @@ public class DefaultSourceRecordGenerator implements SourceRecordGenerator{
         //SourceRecord sr = 
         //        new SourceRecord(partition, offset, topic, record.schema(), record);
         SourceRecord sr = null;
+        //The payload is null for a tombstone
+        final Schema payloadSchema = (payload == null) ? null : payload.schema();
         if (key != null){
-            sr = new SourceRecord(partition, offset, topic, null, key.schema(), key, payload.schema(), payload );
+            sr = new SourceRecord(partition, offset, topic, null, key.schema(), key, payloadSchema, payload );
         }else{
-            sr = new SourceRecord(partition, offset, topic, payload.schema(), payload);
+            sr = new SourceRecord(partition, offset, topic, payloadSchema, payload);
             
         }
         return sr;
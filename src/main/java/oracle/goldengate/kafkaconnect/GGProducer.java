@@ -5,15 +5,26 @@
  */
 package oracle.goldengate.kafkaconnect;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Properties;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.Struct;
 import oracle.goldengate.datasource.GGDataSource.Status;
+import oracle.goldengate.json.JsonConverter;
+import oracle.goldengate.json.SchemaPublisher;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.connect.errors.ConnectException;
 import oracle.goldengate.source.SourceRecord;
+import oracle.goldengate.storage.BatchConverter;
+import oracle.goldengate.storage.BufferedConverter;
 import oracle.goldengate.storage.Converter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +35,10 @@ import org.slf4j.LoggerFactory;
  */
 public class GGProducer {
     private static final Logger logger=LoggerFactory.getLogger(GGProducer.class);
+    //Larger output buffers are not kept for reuse
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    private static final int KEY_BUFFER = 0;
+    private static final int VALUE_BUFFER = 1;
 
     private GGConfig config;
     //The key converter
@@ -32,6 +47,15 @@ public class GGProducer {
     private Converter valueConverter;
     //The Kafka Producer
     private KafkaProducer kafkaProducer;
+    //True to assemble JSON keys from the key fields serialized with the value
+    private boolean shareKeyFields = false;
+    //The key and value output buffers of buffered converters, per thread
+    private final ThreadLocal<ByteBuffer[]> outputBuffers = new ThreadLocal<ByteBuffer[]>(){
+        @Override
+        protected ByteBuffer[] initialValue(){
+            return new ByteBuffer[2];
+        }
+    };
     
     /**
      * Initialize the Kafka Producer
@@ -55,13 +79,104 @@ public class GGProducer {
         keyConverter.configure(config.originalsWithPrefix("key.converter."), true);
         valueConverter = config.getConfiguredInstance(GGConfig.VALUE_CONVERTER_CLASS_CONFIG, Converter.class);
         valueConverter.configure(config.originalsWithPrefix("value.converter."), false);
+        //Converters in schema reference mode publish their schemas through this producer
+        SchemaPublisher publisher = new SchemaPublisher(){
+            @Override
+            public void publish(String topic, String fingerprint, byte[] jsonSchema){
+                publishSchema(topic, fingerprint, jsonSchema);
+            }
+        };
+        if (keyConverter instanceof JsonConverter){
+            ((JsonConverter)keyConverter).setSchemaPublisher(publisher);
+        }
+        if (valueConverter instanceof JsonConverter){
+            ((JsonConverter)valueConverter).setSchemaPublisher(publisher);
+        }
     }
     
+    /**
+     * Method to set if the key fields are serialized once and shared by the
+     * key and the value, when both converters are JSON converters.
+     * @param share True to share the key fields, else false.
+     */
+    public void setShareKeyFields(boolean share){
+        shareKeyFields = share;
+    }
+
+    /**
+     * Method to check if keys are assembled from the key fields serialized
+     * with the value.
+     * @return True if enabled and both converters are JSON converters.
+     */
+    private boolean isSharingKeyFields(){
+        return shareKeyFields && (keyConverter instanceof JsonConverter) && (valueConverter instanceof JsonConverter);
+    }
+
+    /**
+     * Method to convert the key and the value of a record together, the key
+     * assembled from the key fields serialized with the value.
+     * @param record The record.
+     * @return The serialized key and value, in that order.
+     */
+    private byte[][] convertShared(SourceRecord record){
+        return ((JsonConverter)valueConverter).fromConnectData(record.topic(), (JsonConverter)keyConverter,
+                record.keySchema(), record.key(), record.valueSchema(), record.value());
+    }
+
+    /**
+     * Method to get the pool generation of a record key or value, to be
+     * checked with {@link #checkGeneration(Object, int)} before the record is
+     * converted.
+     * @param value The key or value of a record.
+     * @return The generation if a struct, else 0.
+     */
+    public static int generationOf(Object value){
+        return (value instanceof Struct) ? ((Struct)value).generation() : 0;
+    }
+
+    /**
+     * Method to check that the struct of a record key or value has not been
+     * released to its pool since the record was created.  A reused struct
+     * would otherwise be serialized with the values of another record.
+     * @param value The key or value of a record.
+     * @param generation The generation returned by {@link #generationOf(Object)}
+     * when the record was created.
+     */
+    private static void checkGeneration(Object value, int generation){
+        if (value instanceof Struct){
+            ((Struct)value).checkGeneration(generation);
+        }
+    }
+
+    /**
+     * Method to send a record whose key and value may be pooled structs.
+     * The structs are checked to be the ones the record was created with.
+     * @param record The record to send.
+     * @param keyGeneration The generation of the key when the record was
+     * created.
+     * @param valueGeneration The generation of the value when the record
+     * was created.
+     * @return Status.OK if success else any other status.
+     */
+    public Status send(SourceRecord record, int keyGeneration, int valueGeneration){
+        checkGeneration(record.key(), keyGeneration);
+        checkGeneration(record.value(), valueGeneration);
+        return send(record);
+    }
+
     public Status send(SourceRecord record){
         Status status = Status.OK;
 
-        byte[] key = keyConverter.fromConnectData(record.topic(), record.keySchema(), record.key());
-        byte[] value = valueConverter.fromConnectData(record.topic(), record.valueSchema(), record.value());
+        byte[] key;
+        byte[] value;
+        if (isSharingKeyFields()){
+            byte[][] keyAndValue = convertShared(record);
+            key = keyAndValue[0];
+            value = keyAndValue[1];
+        }else{
+            key = convert(keyConverter, KEY_BUFFER, record.topic(), record.keySchema(), record.key());
+            value = convert(valueConverter, VALUE_BUFFER, record.topic(), record.valueSchema(), record.value());
+        }
         //Instantiate the Kafka producer record
 	final ProducerRecord<byte[],byte[]> pRecord = new ProducerRecord<>(record.topic(), record.kafkaPartition(), key, value);
         try{
@@ -73,6 +188,186 @@ public class GGProducer {
         return status;
     }
     
+    /**
+     * Method to send a group of records, such as the records of a
+     * transaction.  Consecutive records for the same topic with the same key
+     * and value schemas are converted together by batch converters.  When key
+     * fields are shared the key and value of each record are converted
+     * together instead, as in {@link #send(SourceRecord)}.
+     * @param records The records to send.
+     * @return Status.OK if success else any other status.
+     */
+    public Status sendBatch(List<SourceRecord> records){
+        return sendBatch(records, null);
+    }
+
+    /**
+     * Method to send a group of records whose keys and values may be pooled
+     * structs.  The structs are checked to be the ones the records were
+     * created with before any of them is converted.
+     * @param records The records to send.
+     * @param generations The generations of the key and the value of each
+     * record when it was created, at index 2 * i and 2 * i + 1 for the record
+     * at index i, or null to not check them.
+     * @return Status.OK if success else any other status.
+     */
+    public Status sendBatch(List<SourceRecord> records, int[] generations){
+        if (generations != null){
+            for (int i = 0; i < records.size(); i++){
+                checkGeneration(records.get(i).key(), generations[2 * i]);
+                checkGeneration(records.get(i).value(), generations[(2 * i) + 1]);
+            }
+        }
+        Status status = Status.OK;
+        int start = 0;
+        while ((start < records.size()) && (status == Status.OK)){
+            SourceRecord first = records.get(start);
+            int end = start + 1;
+            while ((end < records.size()) && isSameBatch(first, records.get(end))){
+                end++;
+            }
+            int length = end - start;
+            byte[][] keyBytes = new byte[length][];
+            byte[][] valueBytes = new byte[length][];
+            if (isSharingKeyFields()){
+                for (int i = 0; i < length; i++){
+                    byte[][] keyAndValue = convertShared(records.get(start + i));
+                    keyBytes[i] = keyAndValue[0];
+                    valueBytes[i] = keyAndValue[1];
+                }
+            }else{
+                Object[] keys = new Object[length];
+                Object[] values = new Object[length];
+                for (int i = 0; i < length; i++){
+                    keys[i] = records.get(start + i).key();
+                    values[i] = records.get(start + i).value();
+                }
+                keyBytes = convertBatch(keyConverter, KEY_BUFFER, first.topic(), first.keySchema(), keys);
+                valueBytes = convertBatch(valueConverter, VALUE_BUFFER, first.topic(), first.valueSchema(), values);
+            }
+            for (int i = 0; (i < length) && (status == Status.OK); i++){
+                final ProducerRecord<byte[],byte[]> pRecord = new ProducerRecord<>(first.topic(),
+                        records.get(start + i).kafkaPartition(), keyBytes[i], valueBytes[i]);
+                try{
+                    kafkaProducer.send(pRecord);
+                }catch(Exception e){
+                    logger.error("An exception occurred sending a message to Kafka.", e);
+                    status = Status.ABEND;
+                }
+            }
+            start = end;
+        }
+        return status;
+    }
+    
+    /**
+     * Method to check if two records can be converted in the same batch.
+     * Schemas are compared by identity, the formatter reuses the schema
+     * instances of a table.
+     * @param first The first record of the batch.
+     * @param record The record to check.
+     * @return True if the record can be added to the batch, else false.
+     */
+    private boolean isSameBatch(SourceRecord first, SourceRecord record){
+        return first.topic().equals(record.topic())
+                && (first.keySchema() == record.keySchema())
+                && (first.valueSchema() == record.valueSchema());
+    }
+    
+    /**
+     * Method to convert the keys or values of a batch.  Converters which do
+     * not support batches convert the values one at a time.
+     * @param converter The key or value converter.
+     * @param bufferIndex The index of the output buffer of this converter.
+     * @param topic The topic name.
+     * @param schema The schema of the values.
+     * @param values The values.
+     * @return The serialized values.
+     */
+    private byte[][] convertBatch(Converter converter, int bufferIndex, String topic, Schema schema, Object[] values){
+        if (converter instanceof BatchConverter){
+            return ((BatchConverter)converter).fromConnectData(topic, schema, values, 0, values.length);
+        }
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++){
+            bytes[i] = convert(converter, bufferIndex, topic, schema, values[i]);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Method to convert a key or value.  Buffered converters write into an
+     * output buffer reused across records, presized from the schema, and the
+     * result is copied once into the exactly sized array the Kafka serializer
+     * requires.
+     * @param converter The key or value converter.
+     * @param bufferIndex The index of the output buffer of this converter.
+     * @param topic The topic name.
+     * @param schema The schema.
+     * @param value The value.
+     * @return The serialized value.
+     */
+    private byte[] convert(Converter converter, int bufferIndex, String topic, Schema schema, Object value){
+        if (!(converter instanceof BufferedConverter)){
+            return converter.fromConnectData(topic, schema, value);
+        }
+        BufferedConverter bufferedConverter = (BufferedConverter)converter;
+        ByteBuffer[] buffers = outputBuffers.get();
+        ByteBuffer buffer = buffers[bufferIndex];
+        int estimate = bufferedConverter.estimateSize(schema);
+        if ((buffer == null) || (buffer.capacity() < estimate)){
+            buffer = ByteBuffer.allocate(estimate);
+        }
+        ByteBuffer output = bufferedConverter.fromConnectData(topic, schema, value, buffer);
+        if (output == null){
+            return null;
+        }
+        byte[] bytes = new byte[output.remaining()];
+        output.get(bytes);
+        buffers[bufferIndex] = (output.capacity() <= MAX_POOLED_BUFFER_SIZE) ? output : null;
+        return bytes;
+    }
+    
+    /**
+     * Prepare to send records of the given schemas to a topic.  The JSON
+     * schemas and their serialized envelopes are cached in the converters and
+     * the topic metadata is fetched so the first send does not block on it.
+     * @param topic The topic name.
+     * @param keySchema The key schema, may be null.
+     * @param valueSchema The value schema.
+     */
+    public void prewarm(String topic, Schema keySchema, Schema valueSchema){
+        if ((keySchema != null) && (keyConverter instanceof JsonConverter)){
+            ((JsonConverter)keyConverter).prewarm(keySchema);
+        }
+        if ((valueSchema != null) && (valueConverter instanceof JsonConverter)){
+            ((JsonConverter)valueConverter).prewarm(valueSchema);
+        }
+        kafkaProducer.partitionsFor(topic);
+    }
+    
+    /**
+     * Method to publish a schema to the schema topic, keyed by its fingerprint.
+     * The send is waited on, records referencing the schema must not reach
+     * the broker before it.
+     * @param topic The schema topic, expected to be compacted.
+     * @param fingerprint The schema fingerprint.
+     * @param jsonSchema The serialized schema.
+     */
+    private void publishSchema(String topic, String fingerprint, byte[] jsonSchema){
+        logger.info("Publishing schema [" + fingerprint + "] to topic [" + topic + "].");
+        final ProducerRecord<byte[],byte[]> pRecord = new ProducerRecord<>(topic,
+                fingerprint.getBytes(StandardCharsets.UTF_8), jsonSchema);
+        try{
+            kafkaProducer.send(pRecord).get();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new ConnectException("Interrupted publishing schema [" + fingerprint + "] to topic [" + topic + "].", e);
+        }catch(ExecutionException e){
+            throw new ConnectException("Failed to publish schema [" + fingerprint + "] to topic [" + topic + "].", e.getCause());
+        }
+    }
+    
     /**
      * Flush the Kafka Connection.  This should be called at transaction (or
      * grouped transaction) commit to ensure write durability.
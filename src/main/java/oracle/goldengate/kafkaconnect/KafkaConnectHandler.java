@@ -6,6 +6,10 @@
 package oracle.goldengate.kafkaconnect;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import oracle.goldengate.datasource.DsConfiguration;
 import oracle.goldengate.datasource.DsEvent;
 import oracle.goldengate.datasource.DsOperation;
@@ -18,12 +22,18 @@ import oracle.goldengate.datasource.adapt.Tx;
 import oracle.goldengate.datasource.handler.NgFormattedOutputHandler;
 import oracle.goldengate.datasource.meta.DsMetaData;
 import oracle.goldengate.datasource.meta.TableMetaData;
+import oracle.goldengate.datasource.meta.TableName;
 
 import oracle.goldengate.format.NgFormattedData;
 
 import oracle.goldengate.common.data.Struct;
 import oracle.goldengate.source.SourceRecord;
+import oracle.goldengate.kafkaconnect.filter.OperationFilter;
+import oracle.goldengate.kafkaconnect.formatter.CoalescedOperation;
 import oracle.goldengate.kafkaconnect.formatter.KafkaConnectFormattedData;
+import oracle.goldengate.kafkaconnect.formatter.KafkaConnectFormatter;
+import oracle.goldengate.kafkaconnect.formatter.LastImageCache;
+import oracle.goldengate.kafkaconnect.formatter.OperationCoalescer;
 
 import oracle.goldengate.util.GGException;
 
@@ -43,6 +53,24 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
     private GGProducer kafkaProd=null;
     private SourceRecordGenerator createPR=null;
     private ConfluentHandlerMetrics handlerMetrics;
+    //Optional merging of repeated changes to the same row in a transaction
+    private boolean coalesceOperations = false;
+    private OperationCoalescer coalescer = null;
+    //Optional filtering of operations before they are formatted
+    private String filterTables = null;
+    private String filterOpTypes = null;
+    private String filterRows = null;
+    private OperationFilter filter = null;
+    //Optional building of all table schemas at startup
+    private boolean prewarmSchemas = false;
+    private int prewarmThreads = 0;
+    //Optional conversion of records in batches, records wait here until sent
+    private int conversionBatchSize = 1;
+    private final List<SourceRecord> pendingRecords = new ArrayList<>();
+    //The pool generations of the key and value of each held record
+    private int[] pendingGenerations = new int[16];
+    //Optional serialization of the key fields once, shared by the key and the value
+    private boolean shareKeyFields = false;
 
     /**
      * Default no-arg Constructor
@@ -72,6 +100,9 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
     public void init(DsConfiguration conf, DsMetaData metaData) {
         super.init(conf, metaData);
         kafkaProperties.loadKafkaProperties();
+        if ((filterTables != null) || (filterOpTypes != null) || (filterRows != null)){
+            filter = new OperationFilter(filterTables, filterOpTypes, filterRows);
+        }
 
         if(logger.isInfoEnabled()) {
             StringBuilder sb = new StringBuilder();
@@ -90,6 +121,34 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
             sb.append("  Kafka Handler is running in mode: ");
             sb.append(this.getMode().name());
             sb.append(System.lineSeparator());
+            //Operation coalescing
+            if (coalesceOperations){
+                sb.append("  Consecutive operations on the same row will be coalesced within a transaction.");
+                sb.append(System.lineSeparator());
+            }
+            //Operation filtering
+            if (filter != null){
+                filter.appendSummary(sb);
+            }
+            //Schema pre-warming
+            if (prewarmSchemas){
+                sb.append("  Schemas of all tables will be built at startup using [");
+                sb.append((prewarmThreads > 0) ? String.valueOf(prewarmThreads) : "all available");
+                sb.append("] threads.");
+                sb.append(System.lineSeparator());
+            }
+            //Batch conversion
+            if (conversionBatchSize > 1){
+                sb.append("  Records will be converted in batches of up to [");
+                sb.append(conversionBatchSize);
+                sb.append("] records or per transaction.");
+                sb.append(System.lineSeparator());
+            }
+            //Shared key fields
+            if (shareKeyFields){
+                sb.append("  Keys will be assembled from the key fields serialized with the value when both converters are JSON converters.");
+                sb.append(System.lineSeparator());
+            }
             //Output the conents of the Kafka producer config file
             sb.append("  Contents of Kafka producer configuration file ");
             sb.append(System.lineSeparator());
@@ -101,8 +160,27 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
         }
         //Generate the Confluent Kafka producer
         kafkaProd = kafkaProperties.instantiateConfluentKafkaProducer();
+        kafkaProd.setShareKeyFields(shareKeyFields);
         //Instantiate the SourceRecordGenerator
         createPR = kafkaProperties.getSourceRecordGenerator();
+        if (coalesceOperations){
+            if (isOperationMode()){
+                logger.warn("Operation coalescing is only supported in transaction mode (gg.handler.name.mode=tx).  Operations will not be coalesced.");
+            }else if (!(formatter instanceof KafkaConnectFormatter)){
+                logger.warn("Operation coalescing requires the Kafka Connect formatter.  Operations will not be coalesced.");
+            }else{
+                coalescer = new OperationCoalescer((KafkaConnectFormatter)formatter);
+            }
+        }
+        if ((conversionBatchSize > 1) && (formatter instanceof KafkaConnectFormatter)){
+            //The structs of a whole batch are released together.  A batch is
+            //sent once it is full, after an operation which may add up to 3
+            //records, so it holds at most 2 more records than the batch size.
+            ((KafkaConnectFormatter)formatter).setStructPoolSize(conversionBatchSize + 2);
+        }
+        if (prewarmSchemas){
+            prewarmSchemas(metaData);
+        }
     }
 
     /**
@@ -137,27 +215,19 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
         // is recieved.  In transaction mode the operations are cached and then
         // processed in the transaction commit call.
         if (isOperationMode()) {
-            KafkaConnectFormattedData data = (KafkaConnectFormattedData) formatter.createNgFormattedData();
             // Tx/Op/Col adapters wrap metadata & values behind a single, simple
             // interface if using the DataSourceListener API (via AbstractHandler).
             final Tx txAdapt = new Tx(tx, getMetaData(), getConfig());
             final TableMetaData tMeta = getMetaData().getTableMetaData(op.getTableName());
+            if ((filter != null) && !filter.accept(op, tMeta)){
+                skipOperation(op, tMeta);
+                return status;
+            }
             final Op opAdapt = new Op(op, tMeta, getConfig());
             //Increment the op counters
             incrementCounters(opAdapt);
-            //Format the data
-            status = formatOp(txAdapt, opAdapt, data); 
-
-            if (status == Status.OK) {
-                for (int i = 0; i < data.size(); i++) {
-                    Struct record = data.getRecord(i);
-                    Struct key = data.getKey(i);
-                    status = processData(txAdapt, opAdapt, key, record);
-                    if (status != Status.OK){
-                        break;
-                    }
-                }
-            }
+            //Format and send the data
+            status = processOperation(txAdapt, opAdapt, null);
         }
 
         return status;
@@ -175,37 +245,40 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
     public Status transactionCommit(DsEvent e, DsTransaction tx) {
         Status status = super.transactionCommit(e, tx);
         final Tx txAdapt = new Tx(tx, getMetaData(), getConfig()); 
-        if(!isOperationMode()) {
+        if(!isOperationMode() && (coalescer != null)) {
+            status = processCoalescedOperations(txAdapt, tx);
+        }else if(!isOperationMode()) {
             for(DsOperation op : tx.getOperations()) {
                 TableMetaData tMeta = getMetaData().getTableMetaData(op.getTableName());
+                if ((filter != null) && !filter.accept(op, tMeta)){
+                    skipOperation(op, tMeta);
+                    continue;
+                }
                 Op opAdapt = new Op(op, tMeta, getConfig());
-                KafkaConnectFormattedData data = (KafkaConnectFormattedData) formatter.createNgFormattedData();
                 //Increment the op counters
                 incrementCounters(opAdapt);
-                //Format the data
-                status = formatOp(txAdapt, opAdapt, data); 
-
-                if (status == Status.OK) {
-
-                    for (int i = 0; i < data.size(); i++) {
-                        Struct record = data.getRecord(i);
-                        Struct key = data.getKey(i);
-                        status = processData(txAdapt, opAdapt, key, record);
-                        if (status != Status.OK){
-                            break;
-                        }
-                    }
-                }
+                //Format and send the data
+                status = processOperation(txAdapt, opAdapt, null);
                 if (status != Status.OK){
                     break;
                 }
             }
         }
+        if (status == Status.OK){
+            //Send the records still waiting for batch conversion
+            status = sendPendingRecords();
+        }else{
+            discardPendingRecords();
+        }
         if (status == Status.OK){
             //Increment the number of tranactions
             handlerMetrics.incrementNumTxs();
             //Flush Kafka on the transaction commit boundary to ensure write duribility
             status = kafkaProd.flush();
+            //Persist newly generated schemas periodically
+            if (formatter instanceof KafkaConnectFormatter){
+                ((KafkaConnectFormatter)formatter).writeSchemaStore(false);
+            }
         }
         return status;
     }
@@ -239,12 +312,14 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
      */
     @Override
     public Status transactionRollback(DsEvent e, DsTransaction tx) {
+        discardPendingRecords();
         return super.transactionRollback(e, tx);
     }
 
     /**
-     * Handle the metadataChanged events. TODO: Schema topics: Can possibly send
-     * avro metadata schemas to a persistent kafka topic.
+     * Handle the metadataChanged events.  The schemas of the changed table are
+     * rebuilt, JSON converters in schema reference mode publish the new
+     * schemas to the schema topic when they are first used.
      *
      * @param e The event object.
      * @param meta The metadata object
@@ -256,7 +331,13 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
         //Need to clear out cached metadata
         TableMetaData tMeta = (TableMetaData)e.getEventSource();
         String tableName = tMeta.getTableName().getOriginalName();
-        //Need to get this to the formatter.
+        if (filter != null){
+            filter.metaDataChanged(tableName);
+        }
+        //Drop the cached schemas of the table in the formatter
+        if (formatter instanceof KafkaConnectFormatter){
+            ((KafkaConnectFormatter)formatter).metaDataChanged(e, meta);
+        }
         return status;
     }
 
@@ -285,6 +366,261 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
         kafkaProperties.setSourceRecordGeneratorClass(className);
     }   
 
+    /**
+     * Method to enable coalescing of consecutive operations on the same row
+     * within a transaction before they are formatted.  Only supported in
+     * transaction mode.
+     * Configure using the following parameter in the GoldenGate Java 
+     * properties file:
+     * gg.handler.name.coalesceOperations
+     * @param coalesce True to coalesce operations, else false.
+     */
+    public void setCoalesceOperations(boolean coalesce) {
+        coalesceOperations = coalesce;
+    }
+    
+    /**
+     * Method to set the tables to send to Kafka as a comma separated list of
+     * table name globs, for example GG.*,!GG.AUDIT_*.  Globs prefixed with !
+     * exclude tables.
+     * Configure using the following parameter in the GoldenGate Java 
+     * properties file:
+     * gg.handler.name.filterTables
+     * @param tables The table name globs.
+     */
+    public void setFilterTables(String tables) {
+        filterTables = tables;
+    }
+    
+    /**
+     * Method to set the operation types to send to Kafka as a comma separated
+     * list of INSERT, UPDATE, PKUPDATE, DELETE and TRUNCATE.
+     * Configure using the following parameter in the GoldenGate Java 
+     * properties file:
+     * gg.handler.name.filterOpTypes
+     * @param opTypes The operation types.
+     */
+    public void setFilterOpTypes(String opTypes) {
+        filterOpTypes = opTypes;
+    }
+    
+    /**
+     * Method to set the row filters as a semicolon separated list of
+     * predicates of the form TABLE:COLUMN operator VALUE, for example
+     * GG.TCUSTORD:ORDER_AMOUNT&gt;=1000.  An operation is sent only if it
+     * satisfies all predicates for its table.
+     * Configure using the following parameter in the GoldenGate Java 
+     * properties file:
+     * gg.handler.name.filterRows
+     * @param rows The row predicates.
+     */
+    public void setFilterRows(String rows) {
+        filterRows = rows;
+    }
+
+    /**
+     * Method to build the schemas, field plans and converter schema caches of
+     * all tables and fetch their topic metadata at startup, instead of on the
+     * first operation of each table.
+     * Configure using the following parameter in the GoldenGate Java 
+     * properties file:
+     * gg.handler.name.prewarmSchemas
+     * @param prewarm True to pre-warm schemas, else false.
+     */
+    public void setPrewarmSchemas(boolean prewarm) {
+        prewarmSchemas = prewarm;
+    }
+    
+    /**
+     * Method to set the number of threads used to pre-warm schemas.  The 
+     * default of 0 uses one thread per processor.
+     * Configure using the following parameter in the GoldenGate Java 
+     * properties file:
+     * gg.handler.name.prewarmThreads
+     * @param threads The number of threads.
+     */
+    public void setPrewarmThreads(int threads) {
+        prewarmThreads = threads;
+    }
+
+    /**
+     * Method to set the maximum number of records converted together.  With
+     * a size above 1 the formatted records are held and converted in batches
+     * by the converters, a batch is sent when it is full and at transaction
+     * commit.  The default of 1 converts and sends each record as it is
+     * formatted.
+     * Configure using the following parameter in the GoldenGate Java 
+     * properties file:
+     * gg.handler.name.conversionBatchSize
+     * @param size The maximum number of records in a batch.
+     */
+    public void setConversionBatchSize(int size) {
+        conversionBatchSize = Math.max(1, size);
+    }
+
+    /**
+     * Method to set if the key fields are serialized once and shared by the
+     * key and the value.  When both converters are JSON converters the key
+     * is assembled from the key fields written with the value, instead of
+     * converting the key separately into a pooled output buffer.  The key
+     * bytes are the same either way.  The default is false.
+     * Configure using the following parameter in the GoldenGate Java 
+     * properties file:
+     * gg.handler.name.shareKeyFields
+     * @param share True to share the key fields, else false.
+     */
+    public void setShareKeyFields(boolean share) {
+        shareKeyFields = share;
+    }
+
+    /**
+     * Method to pre-warm the schemas of all tables in the metadata which pass
+     * the filter.
+     * @param metaData The metadata object.
+     */
+    private void prewarmSchemas(DsMetaData metaData) {
+        if (!(formatter instanceof KafkaConnectFormatter)){
+            logger.warn("Schema pre-warming requires the Kafka Connect formatter.  Schemas will be built on first use.");
+            return;
+        }
+        List<TableMetaData> tables = new ArrayList<>();
+        for (TableName tableName : metaData.getTableNames()){
+            TableMetaData tMeta = metaData.getTableMetaData(tableName);
+            if ((tMeta != null) && ((filter == null) || filter.acceptTable(tMeta))){
+                tables.add(tMeta);
+            }
+        }
+        SchemaPrewarmer prewarmer = new SchemaPrewarmer((KafkaConnectFormatter)formatter, kafkaProd, prewarmThreads);
+        long elapsed = prewarmer.prewarm(tables);
+        logger.info("Pre-warmed the schemas of [" + prewarmer.getNumWarmed() + "] tables in [" 
+                + elapsed + "] milliseconds, [" + prewarmer.getNumFailed() + "] tables failed.");
+    }
+
+    /**
+     * Method to coalesce the operations of a transaction and then format and
+     * send the surviving operations.
+     * @param txAdapt The current transaction
+     * @param tx The transaction object.
+     * @return Status.OK for success, else any other status.
+     */
+    private Status processCoalescedOperations(Tx txAdapt, DsTransaction tx) {
+        Status status = Status.OK;
+        List<DsOperation> accepted = new ArrayList<>();
+        for(DsOperation op : tx.getOperations()) {
+            TableMetaData tMeta = getMetaData().getTableMetaData(op.getTableName());
+            if ((filter != null) && !filter.accept(op, tMeta)){
+                //The operations before a filtered operation are sent first,
+                //so that it is applied to the last image cache in order and
+                //no operations are coalesced across it
+                status = processCoalescedOperations(txAdapt, accepted);
+                accepted.clear();
+                if (status != Status.OK){
+                    return status;
+                }
+                skipOperation(op, tMeta);
+                continue;
+            }
+            //Increment the op counters for the source operations
+            incrementCounters(new Op(op, tMeta, getConfig()));
+            accepted.add(op);
+        }
+        return processCoalescedOperations(txAdapt, accepted);
+    }
+    
+    /**
+     * Method to coalesce a run of accepted operations of a transaction and
+     * then format and send them.
+     * @param txAdapt The current transaction
+     * @param accepted The accepted operations in transaction order.
+     * @return Status.OK for success, else any other status.
+     */
+    private Status processCoalescedOperations(Tx txAdapt, List<DsOperation> accepted) {
+        Status status = Status.OK;
+        List<CoalescedOperation> ops = coalescer.coalesce(accepted, getMetaData());
+        handlerMetrics.incrementNumCoalescedOps(accepted.size() - ops.size());
+        for(CoalescedOperation cop : ops) {
+            Op opAdapt = new Op(cop.getOperation(), cop.getTableMetaData(), getConfig());
+            status = processOperation(txAdapt, opAdapt, cop);
+            if (status != Status.OK){
+                break;
+            }
+        }
+        return status;
+    }
+    
+    /**
+     * Method to apply an operation dropped by the operation filter to the
+     * last image cache of the formatter, so that later compressed updates of
+     * the row are not completed from an image older than the dropped
+     * operation.  Operations of tables which are not sent at all are never
+     * cached and are ignored.
+     * @param op The dropped operation.
+     * @param tMeta The table metadata.
+     */
+    private void skipOperation(DsOperation op, TableMetaData tMeta) {
+        if ((formatter instanceof KafkaConnectFormatter) && filter.acceptTable(tMeta)){
+            ((KafkaConnectFormatter)formatter).skipOperation(op, tMeta);
+        }
+    }
+    
+    /**
+     * Method to format an operation and send the resulting records to Kafka.
+     * @param txAdapt The current transaction
+     * @param opAdapt The current operation
+     * @param coalesced The coalesced operation or null if not coalescing.
+     * @return Status.OK for success, else any other status.
+     */
+    private Status processOperation(Tx txAdapt, Op opAdapt, CoalescedOperation coalesced) {
+        KafkaConnectFormattedData data = (KafkaConnectFormattedData) formatter.createNgFormattedData();
+        //Format the data
+        Status status = formatOp(txAdapt, opAdapt, coalesced, data); 
+
+        if (status == Status.OK) {
+            for (int i = 0; i < data.size(); i++) {
+                Struct record = data.getRecord(i);
+                Struct key = data.getKey(i);
+                status = processData(txAdapt, opAdapt, key, record, data.getTopic(i));
+                if (status != Status.OK){
+                    break;
+                }
+            }
+        }
+        if (conversionBatchSize > 1){
+            //The structs of held records are released once their batch is sent
+            if ((status == Status.OK) && (pendingRecords.size() >= conversionBatchSize)){
+                status = sendPendingRecords();
+            }
+        }else if (formatter instanceof KafkaConnectFormatter){
+            //The records have been serialized, their structs can be reused
+            ((KafkaConnectFormatter)formatter).releaseStructs();
+        }
+        return status;
+    }
+
+    /**
+     * Method to convert and send the records held for batch conversion.
+     * @return Status.OK for success, else any other status.
+     */
+    private Status sendPendingRecords() {
+        Status status = Status.OK;
+        if (!pendingRecords.isEmpty()){
+            status = kafkaProd.sendBatch(pendingRecords, pendingGenerations);
+        }
+        discardPendingRecords();
+        return status;
+    }
+
+    /**
+     * Method to drop the records held for batch conversion and release their
+     * structs for reuse.
+     */
+    private void discardPendingRecords() {
+        pendingRecords.clear();
+        if (formatter instanceof KafkaConnectFormatter){
+            ((KafkaConnectFormatter)formatter).releaseStructs();
+        }
+    }
+
     /**
      * This method is responsible to process and format each operation as it
      * comes. Also creates a new producerRecord for each operation and submits
@@ -292,9 +628,10 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
      *
      * @param currentTx The current transaction
      * @param op The current operation
+     * @param coalesced The coalesced operation or null if not coalescing.
      * @return Status.OK if success
      */
-    private Status formatOp(Tx currentTx, Op op, NgFormattedData data) {
+    private Status formatOp(Tx currentTx, Op op, CoalescedOperation coalesced, NgFormattedData data) {
         Status status = Status.OK;
         if (logger.isDebugEnabled()) {
             logger.debug("Process operation: table=[" + op.getTableName() + "]"
@@ -306,7 +643,12 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
         TableMetaData tMeta = getMetaData().getTableMetaData(op.getTableName());
 
         try {
-            formatter.formatOp(currentTx.getTransaction(), op.getOperation(), tMeta, data);
+            if (coalesced != null){
+                ((KafkaConnectFormatter)formatter).formatOp(currentTx.getTransaction(), op.getOperation(), 
+                        coalesced.getOpType(), coalesced.getPriorImage(), tMeta, data);
+            }else{
+                formatter.formatOp(currentTx.getTransaction(), op.getOperation(), tMeta, data);
+            }
            
         } catch (Exception e) {
             logger.error("Confluent Kafka Handler failed to format and process operation: table=[" + op.getTableName() + "]"
@@ -323,18 +665,40 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
 
     /**
      * This method is responsible for creating the Kafka producer record
-     * and submitting it to the Kafka producer.
+     * and submitting it to the Kafka producer, or holding it until its batch
+     * is sent when records are converted in batches.  The pool generations
+     * of the key and value are recorded with the record, the producer checks
+     * that the structs have not been released and reused before it converts
+     * them.
      * 
      * @param tx The current transaction
      * @param op The current operation
      * @param key The Kafka Connect key struct
      * @param payload The Kafka Connect Payload struct
+     * @param topic The topic routed to by the formatter, or null to use the
+     * topic of the source record generator.
      * @return Status.OK for success, else any other status.
      */
-    private Status processData(Tx tx, Op op, Struct key, Struct payload) {
+    private Status processData(Tx tx, Op op, Struct key, Struct payload, String topic) {
         SourceRecord sr =
                 createPR.createSourceRecord(tx, op, kafkaProd.getKafkaProducer(), key, payload);
-        return kafkaProd.send(sr);
+        if (topic != null){
+            sr = sr.newRecord(topic, sr.kafkaPartition(), sr.keySchema(), sr.key(), 
+                    sr.valueSchema(), sr.value(), sr.timestamp());
+        }
+        int keyGeneration = GGProducer.generationOf(sr.key());
+        int valueGeneration = GGProducer.generationOf(sr.value());
+        if (conversionBatchSize > 1){
+            int index = 2 * pendingRecords.size();
+            if (index + 2 > pendingGenerations.length){
+                pendingGenerations = Arrays.copyOf(pendingGenerations, 2 * pendingGenerations.length);
+            }
+            pendingGenerations[index] = keyGeneration;
+            pendingGenerations[index + 1] = valueGeneration;
+            pendingRecords.add(sr);
+            return Status.OK;
+        }
+        return kafkaProd.send(sr, keyGeneration, valueGeneration);
     }
    
     /**
@@ -347,6 +711,9 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
         //Flush just in case
         kafkaProd.flush();
         kafkaProd.close();
+        if (formatter instanceof KafkaConnectFormatter){
+            ((KafkaConnectFormatter)formatter).writeSchemaStore(true);
+        }
     }
     
     @Override
@@ -362,6 +729,29 @@ public class KafkaConnectHandler extends NgFormattedOutputHandler {
         sb.append(", deletes=").append(handlerMetrics.getNumDeletes());
         sb.append(", truncates=").append(handlerMetrics.getNumTruncates());
         sb.append(", ddl operations=").append(handlerMetrics.getNumDdlOps());
+        if (filter != null){
+            filter.appendStatus(sb);
+        }
+        if (coalescer != null){
+            sb.append(", coalesced operations=").append(handlerMetrics.getNumCoalescedOps());
+        }
+        if (formatter instanceof KafkaConnectFormatter){
+            KafkaConnectFormatter kcFormatter = (KafkaConnectFormatter)formatter;
+            if (kcFormatter.isReuseStructs()){
+                sb.append(", structs allocated=").append(kcFormatter.getNumStructsAllocated());
+                sb.append(", reused=").append(kcFormatter.getNumStructsReused());
+            }
+            LastImageCache cache = kcFormatter.getLastImageCache();
+            if (cache != null){
+                long lookups = cache.getNumHits() + cache.getNumMisses();
+                sb.append(", last image cache hits=").append(cache.getNumHits());
+                sb.append(", misses=").append(cache.getNumMisses());
+                sb.append(", hit rate=").append(lookups == 0 ? 0 : (cache.getNumHits() * 100) / lookups).append("%");
+                sb.append(", rows=").append(cache.getNumEntries());
+                sb.append(", evictions=").append(cache.getNumEvictions());
+                sb.append(", memory used=").append(cache.getUsedBytes()).append("/").append(cache.getMaxBytes()).append(" bytes");
+            }
+        }
         return sb.toString();
     }
     
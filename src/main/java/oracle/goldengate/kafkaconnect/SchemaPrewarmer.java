@@ -0,0 +1,124 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import oracle.goldengate.datasource.meta.TableMetaData;
+import oracle.goldengate.kafkaconnect.formatter.KafkaConnectFormatter;
+import oracle.goldengate.kafkaconnect.formatter.KeyAndPayloadSchemas;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the schemas, field plans and converter schema caches of a set of
+ * tables and fetches the topic metadata from Kafka ahead of the first
+ * operation, so the first transaction touching many tables does not stall.
+ * The tables are split across a fork join pool.  Pre-warming is best effort,
+ * a table which fails is logged and built again on its first operation.
+ */
+public class SchemaPrewarmer {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaPrewarmer.class);
+    //Tables handled by a single task before it is no longer split
+    private static final int TABLES_PER_TASK = 8;
+    private final KafkaConnectFormatter formatter;
+    private final GGProducer producer;
+    private final int parallelism;
+    private final AtomicInteger numWarmed = new AtomicInteger();
+    private final AtomicInteger numFailed = new AtomicInteger();
+
+    /**
+     * Create the pre-warmer.
+     * @param formatter The formatter which generates the schemas.
+     * @param producer The producer which holds the converters and the Kafka
+     * connection.
+     * @param parallelism The number of threads, 0 for the number of processors.
+     */
+    public SchemaPrewarmer(KafkaConnectFormatter formatter, GGProducer producer, int parallelism){
+        this.formatter = formatter;
+        this.producer = producer;
+        this.parallelism = (parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Method to pre-warm the given tables.  Returns when all tables are done.
+     * @param tables The table metadata of the tables.
+     * @return The elapsed time in milliseconds.
+     */
+    public long prewarm(List<TableMetaData> tables){
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new PrewarmTask(tables, 0, tables.size()));
+        }finally{
+            pool.shutdown();
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Method to get the number of tables successfully pre-warmed.
+     * @return The number of tables.
+     */
+    public int getNumWarmed(){
+        return numWarmed.get();
+    }
+
+    /**
+     * Method to get the number of tables which failed to pre-warm.
+     * @return The number of tables.
+     */
+    public int getNumFailed(){
+        return numFailed.get();
+    }
+
+    private void prewarmTable(TableMetaData tMeta){
+        String tableName = tMeta.getTableName().getOriginalName();
+        try{
+            KeyAndPayloadSchemas schemas = formatter.prewarmSchemas(tMeta);
+            //The default topic is the table name, routed topics are not known
+            //until the records are formatted.
+            producer.prewarm(tableName, schemas.getKeySchema(), schemas.getPayloadSchema());
+            numWarmed.incrementAndGet();
+        }catch(Exception e){
+            numFailed.incrementAndGet();
+            logger.warn("Failed to pre-warm the schemas of table [" + tableName + "].", e);
+        }
+    }
+
+    /**
+     * Pre-warms a range of the tables, splitting the range in half until it
+     * is small enough.
+     */
+    private class PrewarmTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<TableMetaData> tables;
+        private final int from;
+        private final int to;
+
+        PrewarmTask(List<TableMetaData> tables, int from, int to){
+            this.tables = tables;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from <= TABLES_PER_TASK){
+                for (int i = from; i < to; i++){
+                    prewarmTable(tables.get(i));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PrewarmTask(tables, from, mid), new PrewarmTask(tables, mid, to));
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import oracle.goldengate.datasource.DsColumn;
+import oracle.goldengate.datasource.DsOperation;
+import oracle.goldengate.datasource.meta.ColumnMetaData;
+import oracle.goldengate.datasource.meta.TableMetaData;
+import oracle.goldengate.util.ConfigException;
+
+/**
+ * Decides whether an operation is sent to Kafka before it is formatted.  An
+ * operation is dropped if its table does not match the table globs, if its
+ * operation type is not selected, or if any row predicate for its table is
+ * not satisfied.
+ *
+ * Table globs are a comma separated list of fully qualified table names
+ * where * matches any characters and ? matches one character.  A glob
+ * prefixed with ! excludes matching tables.  If only exclusions are given
+ * all other tables are included.  Operation types are a comma separated list
+ * of INSERT, UPDATE, PKUPDATE, DELETE and TRUNCATE.  Row predicates are a
+ * semicolon separated list, see {@link RowPredicate}.  A row predicate
+ * does not apply to a table that does not have its column.
+ *
+ * The decision for the table and the column positions of the row predicates
+ * are resolved once per table and cached, so evaluating an operation is a
+ * map lookup plus one comparison per applicable predicate.
+ */
+public class OperationFilter {
+    private final String tables;
+    private final List<Pattern> includes = new ArrayList<>();
+    private final List<Pattern> excludes = new ArrayList<>();
+    private final boolean filterOpTypes;
+    private boolean inserts = false;
+    private boolean updates = false;
+    private boolean pkUpdates = false;
+    private boolean deletes = false;
+    private boolean truncates = false;
+    private final List<RowPredicate> predicates = new ArrayList<>();
+    private final Map<String, TableFilter> tableFilters = new HashMap<>();
+    private long numTableDrops = 0;
+    private long numOpTypeDrops = 0;
+
+    /**
+     * Compile the filter.
+     * @param tables The table globs, may be null.
+     * @param opTypes The operation types, may be null.
+     * @param rows The row predicates, may be null.
+     */
+    public OperationFilter(String tables, String opTypes, String rows){
+        this.tables = tables;
+        if (tables != null){
+            for (String glob : tables.split(",")){
+                glob = glob.trim();
+                if (glob.startsWith("!")){
+                    excludes.add(compileGlob(glob.substring(1)));
+                }else if (!glob.isEmpty()){
+                    includes.add(compileGlob(glob));
+                }
+            }
+        }
+        filterOpTypes = (opTypes != null) && !opTypes.trim().isEmpty();
+        if (filterOpTypes){
+            for (String opType : opTypes.split(",")){
+                opType = opType.trim().toUpperCase();
+                if (opType.equals("INSERT")){
+                    inserts = true;
+                }else if (opType.equals("UPDATE")){
+                    updates = true;
+                }else if (opType.equals("PKUPDATE")){
+                    pkUpdates = true;
+                }else if (opType.equals("DELETE")){
+                    deletes = true;
+                }else if (opType.equals("TRUNCATE")){
+                    truncates = true;
+                }else if (!opType.isEmpty()){
+                    throw new ConfigException("The operation type filter [" + opType
+                            + "] is invalid.  Valid operation types are INSERT, UPDATE, PKUPDATE, DELETE and TRUNCATE.");
+                }
+            }
+        }
+        if (rows != null){
+            for (String predicate : rows.split(";")){
+                if (!predicate.trim().isEmpty()){
+                    predicates.add(new RowPredicate(predicate));
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to check if an operation should be sent.
+     * @param op The operation.
+     * @param tMeta The table metadata of the operation.
+     * @return True if the operation passes the filter, else false.
+     */
+    public boolean accept(DsOperation op, TableMetaData tMeta){
+        TableFilter tableFilter = getTableFilter(tMeta);
+        if (!tableFilter.accepted){
+            numTableDrops++;
+            return false;
+        }
+        DsOperation.OpType opType = op.getOperationType();
+        if (filterOpTypes && !acceptOpType(opType)){
+            numOpTypeDrops++;
+            return false;
+        }
+        if ((tableFilter.predicates.length == 0) || opType.isTruncate()){
+            return true;
+        }
+        List<DsColumn> columns = op.getColumns();
+        for (int i = 0; i < tableFilter.predicates.length; i++){
+            int cIndex = tableFilter.columnIndexes[i];
+            if (cIndex >= columns.size()){
+                continue;
+            }
+            DsColumn col = columns.get(cIndex);
+            //Deletes are tested on the before image, everything else on the
+            //after image, falling back to the before image if the column is
+            //missing from a compressed update.
+            DsColumn image = opType.isDelete() ? col.getBefore() : col.getAfter();
+            if ((image == null) && !opType.isDelete()){
+                image = col.getBefore();
+            }
+            if (image == null){
+                //The value is unknown, do not drop the operation
+                continue;
+            }
+            RowPredicate predicate = tableFilter.predicates[i];
+            if (!predicate.matches(image.isValueNull(), image.getValue())){
+                predicate.incrementNumDrops();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to check if any operations of a table can pass the filter.
+     * @param tMeta The table metadata.
+     * @return True if the table is sent, else false.
+     */
+    public boolean acceptTable(TableMetaData tMeta){
+        return getTableFilter(tMeta).accepted;
+    }
+
+    /**
+     * Method to discard the cached decision for a table, called when the
+     * table metadata changes.
+     * @param tableName The fully qualified table name.
+     */
+    public void metaDataChanged(String tableName){
+        tableFilters.remove(tableName);
+    }
+
+    /**
+     * Method to get the total number of dropped operations.
+     * @return The number of dropped operations.
+     */
+    public long getNumDrops(){
+        long total = numTableDrops + numOpTypeDrops;
+        for (RowPredicate predicate : predicates){
+            total += predicate.getNumDrops();
+        }
+        return total;
+    }
+
+    /**
+     * Method to append the drop counters of each filter to a status report.
+     * @param sb The status report.
+     */
+    public void appendStatus(StringBuilder sb){
+        sb.append(", filtered operations=").append(getNumDrops());
+        sb.append(" (tables=").append(numTableDrops);
+        sb.append(", operation types=").append(numOpTypeDrops);
+        for (RowPredicate predicate : predicates){
+            sb.append(", [").append(predicate).append("]=").append(predicate.getNumDrops());
+        }
+        sb.append(")");
+    }
+
+    /**
+     * Method to append a description of the filter to the configuration
+     * summary.
+     * @param sb The configuration summary.
+     */
+    public void appendSummary(StringBuilder sb){
+        sb.append("  Operations are filtered before formatting.");
+        sb.append(System.lineSeparator());
+        if (!includes.isEmpty() || !excludes.isEmpty()){
+            sb.append("    Tables: ").append(tables);
+            sb.append(System.lineSeparator());
+        }
+        if (filterOpTypes){
+            sb.append("    Operation types: inserts=").append(inserts);
+            sb.append(", updates=").append(updates);
+            sb.append(", PK updates=").append(pkUpdates);
+            sb.append(", deletes=").append(deletes);
+            sb.append(", truncates=").append(truncates);
+            sb.append(System.lineSeparator());
+        }
+        for (RowPredicate predicate : predicates){
+            sb.append("    Row filter: ").append(predicate);
+            sb.append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Method to compile a table glob into a case insensitive pattern.
+     * @param glob The glob.
+     * @return The compiled pattern.
+     */
+    public static Pattern compileGlob(String glob){
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : glob.trim().toCharArray()){
+            if ((c == '*') || (c == '?')){
+                if (literal.length() > 0){
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            }else{
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0){
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Method to check if an operation type is selected, ignoring whether
+     * operation types are filtered at all.
+     * @param opType The operation type.
+     * @return True if the operation type is selected, else false.
+     */
+    boolean acceptOpType(DsOperation.OpType opType){
+        if (opType.isInsert()){
+            return inserts;
+        }else if (opType.isPkUpdate()){
+            return pkUpdates;
+        }else if (opType.isUpdate()){
+            return updates;
+        }else if (opType.isDelete()){
+            return deletes;
+        }else if (opType.isTruncate()){
+            return truncates;
+        }
+        return true;
+    }
+
+    private TableFilter getTableFilter(TableMetaData tMeta){
+        String tableName = tMeta.getTableName().getOriginalName();
+        TableFilter tableFilter = tableFilters.get(tableName);
+        if (tableFilter == null){
+            tableFilter = compileTableFilter(tableName, tMeta);
+            tableFilters.put(tableName, tableFilter);
+        }
+        return tableFilter;
+    }
+
+    /**
+     * Method to check if a table name matches the table globs.
+     * @param tableName The fully qualified table name.
+     * @return True if the table is included and not excluded, else false.
+     */
+    boolean acceptTableName(String tableName){
+        boolean accepted = includes.isEmpty();
+        for (Pattern include : includes){
+            if (include.matcher(tableName).matches()){
+                accepted = true;
+                break;
+            }
+        }
+        for (Pattern exclude : excludes){
+            if (exclude.matcher(tableName).matches()){
+                accepted = false;
+                break;
+            }
+        }
+        return accepted;
+    }
+
+    private TableFilter compileTableFilter(String tableName, TableMetaData tMeta){
+        boolean accepted = acceptTableName(tableName);
+        List<RowPredicate> tablePredicates = new ArrayList<>();
+        List<Integer> columnIndexes = new ArrayList<>();
+        for (RowPredicate predicate : predicates){
+            if (!predicate.appliesTo(tableName)){
+                continue;
+            }
+            int cIndex = findColumn(tMeta, predicate.getColumnName());
+            if (cIndex < 0){
+                //A glob may match tables without the column
+                continue;
+            }
+            tablePredicates.add(predicate);
+            columnIndexes.add(cIndex);
+        }
+        TableFilter tableFilter = new TableFilter();
+        tableFilter.accepted = accepted;
+        tableFilter.predicates = tablePredicates.toArray(new RowPredicate[tablePredicates.size()]);
+        tableFilter.columnIndexes = new int[columnIndexes.size()];
+        for (int i = 0; i < tableFilter.columnIndexes.length; i++){
+            tableFilter.columnIndexes[i] = columnIndexes.get(i);
+        }
+        return tableFilter;
+    }
+
+    private static int findColumn(TableMetaData tMeta, String columnName){
+        for (int i = 0; i < tMeta.getNumColumns(); i++){
+            ColumnMetaData cMeta = tMeta.getColumnMetaData(i);
+            if (cMeta.getOriginalColumnName().equalsIgnoreCase(columnName)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The compiled filter of a single table.
+     */
+    private static class TableFilter {
+        private boolean accepted;
+        private RowPredicate[] predicates;
+        private int[] columnIndexes;
+    }
+}
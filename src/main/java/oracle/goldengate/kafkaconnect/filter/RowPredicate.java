@@ -0,0 +1,207 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.filter;
+
+import java.math.BigDecimal;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import oracle.goldengate.util.ConfigException;
+
+/**
+ * A simple column predicate of the form TABLEGLOB:COLUMN operator VALUE, for
+ * example GG.TCUSTORD:ORDER_AMOUNT &gt;= 1000.  The supported operators are
+ * =, !=, &lt;&gt;, &lt;, &gt;, &lt;= and &gt;=.  The value is compared numerically if it is
+ * a number and the column value parses as a number, else as a string.  The
+ * value NULL tests for a null column value with = and != only.  A value in
+ * single quotes is always compared as a string.
+ *
+ * Numbers are compared as exact decimals, never through a double, so large
+ * NUMBER keys above 2^53 and decimal fractions compare exactly.  The literal
+ * is parsed once when the predicate is compiled.  If it is an integer within
+ * the range of a long, column values that parse as a long are compared as
+ * longs and only other column values are parsed as decimals.
+ */
+public class RowPredicate {
+    private static final Pattern CONDITION =
+            Pattern.compile("^\\s*([^\\s=!<>]+)\\s*(<=|>=|!=|<>|=|<|>)\\s*(.*?)\\s*$");
+
+    private enum Operator { EQ, NE, LT, GT, LE, GE }
+
+    private final String text;
+    private final Pattern tablePattern;
+    private final String columnName;
+    private final Operator operator;
+    private final String literal;
+    private final boolean nullLiteral;
+    private final boolean numeric;
+    private final BigDecimal number;
+    private final boolean integral;
+    private final long longNumber;
+    private long numDrops = 0;
+
+    /**
+     * Compile a predicate.
+     * @param text The predicate text TABLEGLOB:COLUMN operator VALUE.
+     */
+    public RowPredicate(String text){
+        this.text = text.trim();
+        int sep = this.text.indexOf(':');
+        if (sep <= 0){
+            throw new ConfigException("The row filter [" + text
+                    + "] is invalid.  Row filters must be of the form TABLE:COLUMN operator VALUE.");
+        }
+        tablePattern = OperationFilter.compileGlob(this.text.substring(0, sep));
+        Matcher m = CONDITION.matcher(this.text.substring(sep + 1));
+        if (!m.matches()){
+            throw new ConfigException("The row filter [" + text
+                    + "] is invalid.  Row filters must be of the form TABLE:COLUMN operator VALUE.");
+        }
+        columnName = m.group(1);
+        operator = parseOperator(m.group(2));
+        String value = m.group(3);
+        BigDecimal parsed = null;
+        if ((value.length() >= 2) && value.startsWith("'") && value.endsWith("'")){
+            //Quoted values are always strings
+            value = value.substring(1, value.length() - 1);
+            nullLiteral = false;
+        }else if (value.equalsIgnoreCase("NULL")){
+            if ((operator != Operator.EQ) && (operator != Operator.NE)){
+                throw new ConfigException("The row filter [" + text
+                        + "] is invalid.  NULL can only be compared using = or !=.");
+            }
+            nullLiteral = true;
+        }else{
+            nullLiteral = false;
+            try {
+                parsed = new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                //Not a number, compare as a string
+            }
+        }
+        literal = value;
+        numeric = (parsed != null);
+        number = parsed;
+        long parsedLong = 0;
+        boolean isLong = false;
+        if (parsed != null){
+            try {
+                parsedLong = parsed.longValueExact();
+                isLong = true;
+            } catch (ArithmeticException e) {
+                //A fraction or out of the range of a long
+            }
+        }
+        integral = isLong;
+        longNumber = parsedLong;
+    }
+
+    /**
+     * Method to check if this predicate applies to a table.
+     * @param tableName The fully qualified table name.
+     * @return True if the predicate applies to the table, else false.
+     */
+    public boolean appliesTo(String tableName){
+        return tablePattern.matcher(tableName).matches();
+    }
+
+    /**
+     * Method to get the name of the column tested by this predicate.
+     * @return The column name.
+     */
+    public String getColumnName(){
+        return columnName;
+    }
+
+    /**
+     * Method to evaluate the predicate against a column value.
+     * @param isNull True if the column value is null.
+     * @param value The column value.
+     * @return True if the value satisfies the predicate, else false.
+     */
+    public boolean matches(boolean isNull, String value){
+        if (nullLiteral){
+            return (operator == Operator.EQ) ? isNull : !isNull;
+        }
+        if (isNull || (value == null)){
+            //As in SQL, a null value satisfies no comparison
+            return false;
+        }
+        int cmp;
+        if (numeric){
+            try {
+                cmp = compareNumber(value.trim());
+            } catch (NumberFormatException e) {
+                cmp = value.compareTo(literal);
+            }
+        }else{
+            cmp = value.compareTo(literal);
+        }
+        switch (operator){
+            case EQ:
+                return cmp == 0;
+            case NE:
+                return cmp != 0;
+            case LT:
+                return cmp < 0;
+            case GT:
+                return cmp > 0;
+            case LE:
+                return cmp <= 0;
+            default:
+                return cmp >= 0;
+        }
+    }
+
+    /**
+     * Method to count an operation dropped by this predicate.
+     */
+    public void incrementNumDrops(){
+        numDrops++;
+    }
+
+    /**
+     * Method to get the number of operations dropped by this predicate.
+     * @return The number of dropped operations.
+     */
+    public long getNumDrops(){
+        return numDrops;
+    }
+
+    @Override
+    public String toString(){
+        return text;
+    }
+
+    private int compareNumber(String value){
+        if (integral){
+            try {
+                return Long.compare(Long.parseLong(value), longNumber);
+            } catch (NumberFormatException e) {
+                //A fraction or a larger number, compare as a decimal
+            }
+        }
+        return new BigDecimal(value).compareTo(number);
+    }
+
+    private static Operator parseOperator(String op){
+        switch (op){
+            case "=":
+                return Operator.EQ;
+            case "!=":
+            case "<>":
+                return Operator.NE;
+            case "<":
+                return Operator.LT;
+            case ">":
+                return Operator.GT;
+            case "<=":
+                return Operator.LE;
+            default:
+                return Operator.GE;
+        }
+    }
+}
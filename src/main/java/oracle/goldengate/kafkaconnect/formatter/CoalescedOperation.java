@@ -0,0 +1,69 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import oracle.goldengate.datasource.DsOperation;
+import oracle.goldengate.datasource.meta.TableMetaData;
+
+/**
+ * An operation which survived coalescing, along with the operation type it is
+ * to be output as and the merged after image of the earlier operations on the
+ * same row that it replaced.
+ */
+public class CoalescedOperation {
+    private final DsOperation operation;
+    private final TableMetaData tableMetaData;
+    private final DsOperation.OpType opType;
+    private final RowImage priorImage;
+
+    /**
+     * Create the coalesced operation.
+     * @param operation The source operation.
+     * @param tableMetaData The table metadata.
+     * @param opType The operation type to output.
+     * @param priorImage The merged after image of the replaced operations,
+     * may be null.
+     */
+    public CoalescedOperation(DsOperation operation, TableMetaData tableMetaData, 
+            DsOperation.OpType opType, RowImage priorImage){
+        this.operation = operation;
+        this.tableMetaData = tableMetaData;
+        this.opType = opType;
+        this.priorImage = priorImage;
+    }
+
+    /**
+     * Method to get the source operation.
+     * @return The source operation.
+     */
+    public DsOperation getOperation(){
+        return operation;
+    }
+
+    /**
+     * Method to get the table metadata.
+     * @return The table metadata.
+     */
+    public TableMetaData getTableMetaData(){
+        return tableMetaData;
+    }
+
+    /**
+     * Method to get the operation type to output.
+     * @return The operation type.
+     */
+    public DsOperation.OpType getOpType(){
+        return opType;
+    }
+
+    /**
+     * Method to get the merged after image of the replaced operations.
+     * @return The prior image or null if no operation was replaced.
+     */
+    public RowImage getPriorImage(){
+        return priorImage;
+    }
+}
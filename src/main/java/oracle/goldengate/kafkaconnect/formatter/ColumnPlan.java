@@ -0,0 +1,232 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.datasource.meta.ColumnMetaData;
+import oracle.goldengate.datasource.meta.DsType;
+import static oracle.goldengate.datasource.meta.DsType.GGSubType.GG_SUBTYPE_FIXED_PREC;
+import static oracle.goldengate.datasource.meta.DsType.GGSubType.GG_SUBTYPE_FLOAT;
+
+/**
+ * How a single source column is written to the key and payload structs.  The
+ * output field name (after any rename), the value type and whether the value
+ * is masked are decided once when the plan for the table is compiled, so
+ * formatting a column value is a switch on the value kind and a put by field.
+ */
+public class ColumnPlan {
+    /**
+     * The Kafka Connect type a column value is converted to.
+     */
+    public enum ValueKind { STRING, INT64, FLOAT64, FLOAT32 }
+
+    //The value written in place of a masked column value
+    public static final String MASK = "*****";
+
+    private final int columnIndex;
+    private final String fieldName;
+    private final ValueKind kind;
+    private final boolean masked;
+    private final boolean keyCol;
+    private int payloadIndex = -1;
+    private int keyIndex = -1;
+
+    /**
+     * Create the plan of a column.
+     * @param columnIndex The index of the column in the table.
+     * @param fieldName The output field name.
+     * @param kind The value type.
+     * @param masked True if the payload value is masked.
+     * @param keyCol True if the column is a primary key column.
+     */
+    public ColumnPlan(int columnIndex, String fieldName, ValueKind kind, boolean masked, boolean keyCol){
+        this.columnIndex = columnIndex;
+        this.fieldName = fieldName;
+        this.kind = kind;
+        this.masked = masked;
+        this.keyCol = keyCol;
+    }
+
+    /**
+     * Method to get the value type of a source column.
+     * @param cmeta The column metadata.
+     * @param allColumnsAsStrings True if all columns are treated as strings.
+     * @return The value type.
+     */
+    public static ValueKind kindOf(ColumnMetaData cmeta, boolean allColumnsAsStrings){
+        if (allColumnsAsStrings){
+            return ValueKind.STRING;
+        }
+        DsType.GGType colType = cmeta.getDataType().getGGDataType();
+        switch (colType) {
+            // Things that fit in signed short
+            case GG_16BIT_S:
+            case GG_16BIT_U:
+            case GG_32BIT_S:
+            case GG_32BIT_U:
+            case GG_64BIT_S:
+                if (cmeta.getDataType().getScale() > 0){
+                    return ValueKind.FLOAT64;
+                }
+                return ValueKind.INT64;
+            case GG_64BIT_U:
+                return ValueKind.FLOAT64;
+            // REAL is a single precision floating point value, i.e. a Java float
+            case GG_REAL:
+            case GG_IEEE_REAL:
+                return ValueKind.FLOAT32;
+            case GG_DOUBLE:
+            case GG_IEEE_DOUBLE:
+            case GG_DOUBLE_V:
+            case GG_DOUBLE_F:
+            case GG_DEC_U:
+            case GG_DEC_LSS:
+            case GG_DEC_LSE:
+            case GG_DEC_TSS:
+            case GG_DEC_TSE:
+            case GG_DEC_PACKED:
+                return ValueKind.FLOAT64;
+            case GG_ASCII_V:
+            case GG_ASCII_F:
+                // Even though it's coming to us as character data, we need to
+                // inspect the sub-type to see whether it is a number type.  If
+                // this is a number type, we'll use Double for consistency.
+                if (cmeta.getDataType().getGGDataSubType() == GG_SUBTYPE_FLOAT ||
+                        cmeta.getDataType().getGGDataSubType() == GG_SUBTYPE_FIXED_PREC) {
+                    return ValueKind.FLOAT64;
+                }
+                return ValueKind.STRING;
+            // Default to strings for everything else
+            default:
+                return ValueKind.STRING;
+        }
+    }
+
+    /**
+     * Method to get the index of the column in the table.
+     * @return The column index.
+     */
+    public int getColumnIndex(){
+        return columnIndex;
+    }
+
+    /**
+     * Method to get the output field name.
+     * @return The field name.
+     */
+    public String getFieldName(){
+        return fieldName;
+    }
+
+    /**
+     * Method to get the value type.
+     * @return The value type.
+     */
+    public ValueKind getKind(){
+        return kind;
+    }
+
+    /**
+     * Method to check if the payload value is masked.
+     * @return True if masked, else false.
+     */
+    public boolean isMasked(){
+        return masked;
+    }
+
+    /**
+     * Method to check if the column is a primary key column.
+     * @return True if a primary key column, else false.
+     */
+    public boolean isKeyCol(){
+        return keyCol;
+    }
+
+    /**
+     * Method to get the schema of the column in the key struct.  Variables
+     * are always optional.
+     * @return The key field schema.
+     */
+    public Schema getKeySchema(){
+        switch (kind){
+            case INT64:
+                return Schema.OPTIONAL_INT64_SCHEMA;
+            case FLOAT64:
+                return Schema.OPTIONAL_FLOAT64_SCHEMA;
+            case FLOAT32:
+                return Schema.OPTIONAL_FLOAT32_SCHEMA;
+            default:
+                return Schema.OPTIONAL_STRING_SCHEMA;
+        }
+    }
+
+    /**
+     * Method to get the schema of the column in the payload struct.  Masked
+     * columns are always strings.
+     * @return The payload field schema.
+     */
+    public Schema getPayloadSchema(){
+        return masked ? Schema.OPTIONAL_STRING_SCHEMA : getKeySchema();
+    }
+
+    /**
+     * Method to get the index of the field in the payload struct.
+     * @return The payload field index.
+     */
+    public int getPayloadIndex(){
+        return payloadIndex;
+    }
+
+    /**
+     * Method to get the index of the field in the key struct.
+     * @return The key field index or -1 if not a primary key column.
+     */
+    public int getKeyIndex(){
+        return keyIndex;
+    }
+
+    /**
+     * Method to convert a column value to the key value.
+     * @param value The column value as text.
+     * @return The key value.
+     */
+    public Object toKeyValue(String value){
+        switch (kind){
+            case INT64:
+                return Long.valueOf(value);
+            case FLOAT64:
+                return Double.valueOf(value);
+            case FLOAT32:
+                return Float.valueOf(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Method to convert a column value to the payload value.
+     * @param value The column value as text.
+     * @return The payload value.
+     */
+    public Object toPayloadValue(String value){
+        return masked ? MASK : toKeyValue(value);
+    }
+
+    /**
+     * Method to copy the plan of a column which has moved to a new index
+     * after a metadata change.
+     * @param index The new column index.
+     * @return The plan at the new index, not yet bound.
+     */
+    ColumnPlan moveTo(int index){
+        return new ColumnPlan(index, fieldName, kind, masked, keyCol);
+    }
+
+    void bind(int payloadIndex, int keyIndex){
+        this.payloadIndex = payloadIndex;
+        this.keyIndex = keyIndex;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.util.List;
+
+import oracle.goldengate.common.data.Field;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.Struct;
+
+/**
+ * The compiled output plan of a table.  It holds the plan of every column,
+ * the operation metadata fields, the constant fields added by the transforms
+ * and the routing column.  The plan is compiled together with the key and
+ * payload schemas, so renames, masks, added fields and routing cost nothing
+ * per row beyond the field puts.
+ */
+public class FieldPlan {
+    //The operation metadata fields at the start of every payload
+    static final String[] METADATA_FIELDS = {"table", "op_type", "op_ts", "current_ts", "pos"};
+
+    private final ColumnPlan[] columns;
+    private final String[] addedNames;
+    private final String[] addedValues;
+    private final String routeFieldName;
+    private int tableIndex;
+    private int opTypeIndex;
+    private int opTsIndex;
+    private int currentTsIndex;
+    private int posIndex;
+    private int[] addedIndexes;
+    private int routeIndex = -1;
+
+    /**
+     * Create the plan of a table.
+     * @param columns The plan of each column, by column index.
+     * @param addedFields The names and values of the constant fields.
+     * @param routeFieldName The output field name of the column used as the
+     * topic name, null to use the default topic.
+     */
+    public FieldPlan(ColumnPlan[] columns, List<String[]> addedFields, String routeFieldName){
+        this.columns = columns;
+        this.addedNames = new String[addedFields.size()];
+        this.addedValues = new String[addedFields.size()];
+        for (int i = 0; i < addedNames.length; i++){
+            addedNames[i] = addedFields.get(i)[0];
+            addedValues[i] = addedFields.get(i)[1];
+        }
+        this.routeFieldName = routeFieldName;
+    }
+
+    /**
+     * Method to get the number of columns.
+     * @return The number of columns.
+     */
+    public int getNumColumns(){
+        return columns.length;
+    }
+
+    /**
+     * Method to get the plan of a column.
+     * @param index The column index.
+     * @return The column plan.
+     */
+    public ColumnPlan getColumn(int index){
+        return columns[index];
+    }
+
+    /**
+     * Method to get the number of constant fields.
+     * @return The number of constant fields.
+     */
+    public int getNumAddedFields(){
+        return addedNames.length;
+    }
+
+    /**
+     * Method to get the name of a constant field.
+     * @param index The index of the constant field.
+     * @return The field name.
+     */
+    public String getAddedFieldName(int index){
+        return addedNames[index];
+    }
+
+    /**
+     * Method to get the value of a constant field.
+     * @param index The index of the constant field.
+     * @return The field value.
+     */
+    public String getAddedFieldValue(int index){
+        return addedValues[index];
+    }
+
+    /**
+     * Method to get the output field name of the routing column.
+     * @return The field name or null if not routed by column.
+     */
+    public String getRouteFieldName(){
+        return routeFieldName;
+    }
+
+    /**
+     * Method to put the operation metadata into a payload struct.
+     * @param rec The payload struct.
+     * @param table The table name.
+     * @param opType The operation type key.
+     * @param opTs The operation timestamp.
+     * @param currentTs The current timestamp.
+     * @param pos The operation position.
+     */
+    public void putMetadata(Struct rec, String table, String opType, String opTs, String currentTs, String pos){
+        rec.putTrusted(tableIndex, table);
+        rec.putTrusted(opTypeIndex, opType);
+        rec.putTrusted(opTsIndex, opTs);
+        rec.putTrusted(currentTsIndex, currentTs);
+        rec.putTrusted(posIndex, pos);
+        for (int i = 0; i < addedIndexes.length; i++){
+            rec.putTrusted(addedIndexes[i], addedValues[i]);
+        }
+    }
+
+    /**
+     * Method to check if records are routed to topics by a column value.
+     * @return True if routed by column, else false.
+     */
+    public boolean isRouted(){
+        return routeFieldName != null;
+    }
+
+    /**
+     * Method to get the topic of a formatted payload when routing by column.
+     * @param rec The payload struct.
+     * @return The topic name, or null to use the default topic.
+     */
+    public String routeTopic(Struct rec){
+        if (routeIndex < 0){
+            return null;
+        }
+        Object value = rec.get(routeIndex);
+        return (value == null) ? null : value.toString();
+    }
+
+    /**
+     * Method to resolve the fields of the plan against the generated schemas,
+     * so that values are put into the structs by field index.
+     * @param keySchema The key schema, may be null.
+     * @param payloadSchema The payload schema.
+     */
+    void bind(Schema keySchema, Schema payloadSchema){
+        tableIndex = indexOf(payloadSchema, "table");
+        opTypeIndex = indexOf(payloadSchema, "op_type");
+        opTsIndex = indexOf(payloadSchema, "op_ts");
+        currentTsIndex = indexOf(payloadSchema, "current_ts");
+        posIndex = indexOf(payloadSchema, "pos");
+        addedIndexes = new int[addedNames.length];
+        for (int i = 0; i < addedNames.length; i++){
+            addedIndexes[i] = indexOf(payloadSchema, addedNames[i]);
+        }
+        for (ColumnPlan column : columns){
+            int keyIndex = -1;
+            if (column.isKeyCol() && (keySchema != null)){
+                keyIndex = indexOf(keySchema, column.getFieldName());
+            }
+            column.bind(indexOf(payloadSchema, column.getFieldName()), keyIndex);
+        }
+        routeIndex = (routeFieldName == null) ? -1 : indexOf(payloadSchema, routeFieldName);
+    }
+
+    private static int indexOf(Schema schema, String fieldName){
+        Field field = schema.field(fieldName);
+        return (field == null) ? -1 : field.index();
+    }
+}
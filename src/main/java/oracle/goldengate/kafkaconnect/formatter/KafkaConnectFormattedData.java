@@ -10,24 +10,35 @@ import oracle.goldengate.format.NgFormattedData;
 
 
 public class KafkaConnectFormattedData implements NgFormattedData {
-    private static final int numRecords=2;
+    //A delete event and tombstone followed by an insert is the most output
+    //of a single operation
+    private static final int numRecords=3;
+    private int count = 0;
     private Struct records[];
     private Struct keys[];
+    private String topics[];
+    //Validate the structs as they are added, for debugging
+    private final boolean validate;
     
     public KafkaConnectFormattedData(){
+        this(false);
+    }
+    
+    /**
+     * Constructor.
+     * @param validate True to validate the key and payload structs against
+     * their schemas when they are added.
+     */
+    public KafkaConnectFormattedData(boolean validate){
+        this.validate = validate;
         records = new Struct[this.numRecords];
         keys = new Struct[this.numRecords];
+        topics = new String[this.numRecords];
     }
 
     @Override
     public int size() {
-        int ctr = 0;
-        for (int i = 0; i < this.numRecords; i++) {
-            if (records[i] != null) {
-                ctr++;
-            }
-        }
-        return ctr;
+        return count;
     }
 
     @Override
@@ -71,40 +82,32 @@ public class KafkaConnectFormattedData implements NgFormattedData {
     }
 
     /**
-     * Method to set a payload record struct
-     * @param record A payload record struct
+     * Method to add a record.  The payload is null for a tombstone.
+     * @param key The key record struct, null if the table has no key.
+     * @param record The payload record struct, null for a tombstone.
+     * @param topic The topic name or null to use the topic chosen by the
+     * source record generator.
      */
-    public void setRecord(Struct record){
-        int i=0;
-
-	while (i < this.numRecords) {
-	    if (records[i] == null) {
-		records[i] = record;
-	        break;
-	    }
-            i++;
-        }
-    }
-    
-    /**
-     * Method to set a key record struct
-     * @param key A key record struct
-     */
-    public void setKey(Struct key){
-        int i = 0;
-        while (i < this.numRecords){
-            if (keys[i] == null){
-                keys[i] = key;
-                break;
+    public void addRecord(Struct key, Struct record, String topic){
+        if (validate){
+            if (key != null){
+                key.validate();
+            }
+            if (record != null){
+                record.validate();
             }
-            i++;
         }
+        keys[count] = key;
+        records[count] = record;
+        topics[count] = topic;
+        count++;
     }
     
     /**
      * Method to get the payload record struct at the index.
      * @param index The index
-     * @return The payload record struct at the index or null if no record.
+     * @return The payload record struct at the index, null if no record or 
+     * a tombstone.
      */
     public Struct getRecord(int index){
         if (index < this.numRecords) {
@@ -125,4 +128,16 @@ public class KafkaConnectFormattedData implements NgFormattedData {
         return null;
     }
     
+    /**
+     * Method to get the topic of the record at the index.
+     * @param index The index
+     * @return The topic or null to use the default topic.
+     */
+    public String getTopic(int index){
+        if (index < this.numRecords){
+            return topics[index];
+        }
+        return null;
+    }
+    
 }
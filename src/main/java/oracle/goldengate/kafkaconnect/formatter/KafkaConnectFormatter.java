@@ -5,6 +5,7 @@
  */
 package oracle.goldengate.kafkaconnect.formatter;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -22,11 +23,12 @@ import oracle.goldengate.datasource.ObjectType;
 import oracle.goldengate.datasource.format.NgFormatter;
 import oracle.goldengate.datasource.format.NgUniqueTimestamp;
 import oracle.goldengate.datasource.meta.*;
-import static oracle.goldengate.datasource.meta.DsType.GGSubType.GG_SUBTYPE_FIXED_PREC;
-import static oracle.goldengate.datasource.meta.DsType.GGSubType.GG_SUBTYPE_FLOAT;
 import oracle.goldengate.format.NgFormattedData;
 
 import oracle.goldengate.common.data.Struct;
+import oracle.goldengate.common.data.PrimitiveStruct;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.StructPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +56,44 @@ public class KafkaConnectFormatter implements NgFormatter {
     private boolean versionAvroSchemas = false;
     //Use ISO8601 format for current timestamp
     private boolean useIso8601Format = true;
+    //Optional cache of the last row images to expand compressed updates
+    private boolean useLastImageCache = false;
+    private int lastImageCacheSizeMB = 64;
+    private LastImageCache lastImageCache;
+    //Optional transforms compiled into the field plan of each table
+    private String renameFields = null;
+    private String maskFields = null;
+    private String addFields = null;
+    private String routeByColumn = null;
+    //Compaction friendly deletes
+    private boolean useTombstoneDeletes = false;
+    private boolean tombstoneDeleteEvents = false;
+    //Optional store of the generated schemas for warm restarts
+    private static final long SCHEMA_STORE_WRITE_INTERVAL_MS = 60000L;
+    private String schemaStoreFile = null;
+    private SchemaStore schemaStore = null;
+    private long schemaStoreWriteTime = 0;
+    //Optional reuse of the key and payload structs, per formatting thread.
+    //An operation formats up to 3 records, each with a key and a payload.
+    private static final int STRUCT_POOL_SIZE = 4;
+    private boolean reuseStructs = false;
+    private int structPoolSize = STRUCT_POOL_SIZE;
+    //The pools of all formatting threads, for the status report
+    private final List<StructPool> allStructPools = new ArrayList<>();
+    //Optional conversion of column values only when they are read
+    private boolean lazyColumnValues = false;
+    //Values from the column plan are trusted unless validation is enabled
+    private boolean validateValues = false;
+    private final ThreadLocal<StructPool> structPools = new ThreadLocal<StructPool>(){
+        @Override
+        protected StructPool initialValue(){
+            StructPool pool = new StructPool(structPoolSize);
+            synchronized (allStructPools){
+                allStructPools.add(pool);
+            }
+            return pool;
+        }
+    };
     
         /**
      * Method to set the insert operation key.  This key will be included in the
@@ -93,6 +133,19 @@ public class KafkaConnectFormatter implements NgFormatter {
         treatAllColumnsAsStrings = allColumnsAsStrings;
     }
     
+    /**
+     * Method to set to version the generated schemas.  The first schemas of
+     * a table are version 1 and the version is incremented every time a 
+     * metadata change alters the columns of the table.  Versions are kept in
+     * memory and in the schema store, see {@link #setSchemaStoreFile(String)}.
+     * Without a schema store the versions restart at 1 when the process
+     * restarts, so consumers would see the version of a table go backwards.
+     * @param version True to version schemas, else false.
+     */
+    public void setVersionAvroSchemas(boolean version){
+        versionAvroSchemas = version;
+    }
+    
     /**
      * Method to set if to use the ISO-8601 format for the current data timestamp.
      * @param iso8601 True to use ISO-8601 format, else false.
@@ -125,13 +178,233 @@ public class KafkaConnectFormatter implements NgFormatter {
         }
     }
     
+    /**
+     * Method to enable the last image cache.  When enabled the last after 
+     * image of every row of a table with a primary key is cached, and the 
+     * unchanged columns missing from compressed updates are filled in from
+     * the cache so that full after images are output.
+     * @param enable True to enable the cache, else false.
+     */
+    public void setLastImageCache(boolean enable){
+        useLastImageCache = enable;
+    }
+    
+    /**
+     * Method to set the memory bound of the last image cache.  Least recently
+     * used row images are evicted when the bound is reached.  The default is
+     * 64 megabytes.
+     * @param sizeMB The maximum size of the cache in megabytes.
+     */
+    public void setLastImageCacheSizeMB(int sizeMB){
+        lastImageCacheSizeMB = sizeMB;
+    }
+    
+    /**
+     * Method to set the fields to rename as a semicolon separated list of
+     * TABLE:COLUMN-&gt;NEWNAME rules.  The table name may be a glob.  Renames
+     * apply to the key and payload.
+     * @param rules The rename rules.
+     */
+    public void setRenameFields(String rules){
+        renameFields = rules;
+    }
+    
+    /**
+     * Method to set the fields whose payload values are masked as a 
+     * semicolon separated list of TABLE:COLUMN rules.  The table name may be
+     * a glob.  Masked fields are strings in the payload schema and key 
+     * values are not masked.
+     * @param rules The mask rules.
+     */
+    public void setMaskFields(String rules){
+        maskFields = rules;
+    }
+    
+    /**
+     * Method to set the constant fields added to the payload as a semicolon
+     * separated list of TABLE:NAME=VALUE rules.  The table name may be a glob.
+     * @param rules The add field rules.
+     */
+    public void setAddFields(String rules){
+        addFields = rules;
+    }
+    
+    /**
+     * Method to set the column whose value is the topic name of each record
+     * as a semicolon separated list of TABLE:COLUMN rules.  The table name may
+     * be a glob.  Records with a null value go to the default topic.
+     * @param rules The routing rules.
+     */
+    public void setRouteByColumn(String rules){
+        routeByColumn = rules;
+    }
+    
+    /**
+     * Method to output deletes on tables with a primary key as tombstones,
+     * the key with a null payload, so that log compacted topics remove the
+     * row.  Primary key updates handled as delete-insert use a tombstone for
+     * the delete as well.
+     * @param tombstones True to output tombstones, else false.
+     */
+    public void setTombstoneDeletes(boolean tombstones){
+        useTombstoneDeletes = tombstones;
+    }
+    
+    /**
+     * Method to precede each tombstone with a delete event holding only the
+     * operation metadata and the key values, for consumers that need to see
+     * deletes.  Only applies if tombstone deletes are enabled.
+     * @param events True to output delete events, else false.
+     */
+    public void setTombstoneDeleteEvents(boolean events){
+        tombstoneDeleteEvents = events;
+    }
+    
+    /**
+     * Method to set the file in which generated schemas are stored so that
+     * they are loaded instead of rebuilt when the process restarts.  Stored
+     * schemas are only used if the table metadata and the formatter settings
+     * are unchanged.
+     * @param fileName The schema store file.
+     */
+    public void setSchemaStoreFile(String fileName){
+        schemaStoreFile = fileName;
+    }
+    
+    /**
+     * Method to set to reuse the key and payload structs of formatted records
+     * instead of allocating new ones for every operation.  The structs are 
+     * released by {@link #releaseStructs()} which the caller must invoke once
+     * the formatted records have been serialized, as the Kafka Connect 
+     * handler does after sending each operation.
+     * @param reuse True to reuse structs, else false.
+     */
+    public void setReuseStructs(boolean reuse){
+        reuseStructs = reuse;
+    }
+    
+    /**
+     * Method to set the number of released structs kept for reuse per schema
+     * by each formatting thread.  The structs of records which are held
+     * before they are sent, such as a conversion batch, are released
+     * together, so the pool must keep as many structs of a schema as a batch
+     * holds, or all but the first few are allocated again for every batch.
+     * The default of 4 is enough when the records of each operation are sent
+     * before the next operation is formatted.
+     * @param size The number of structs kept per schema.
+     */
+    public void setStructPoolSize(int size){
+        structPoolSize = Math.max(STRUCT_POOL_SIZE, size);
+    }
+    
+    /**
+     * Method to get the number of structs allocated by the struct pools of
+     * all formatting threads.  The count read from another thread may be
+     * slightly behind.
+     * @return The number of allocated structs.
+     */
+    public long getNumStructsAllocated(){
+        long count = 0;
+        synchronized (allStructPools){
+            for (StructPool pool : allStructPools){
+                count += pool.numAllocated();
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Method to get the number of times a released struct was reused by the
+     * struct pools of all formatting threads.  The count read from another
+     * thread may be slightly behind.
+     * @return The number of reused structs.
+     */
+    public long getNumStructsReused(){
+        long count = 0;
+        synchronized (allStructPools){
+            for (StructPool pool : allStructPools){
+                count += pool.numReused();
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Method to check if the key and payload structs are reused.
+     * @return True if structs are reused, else false.
+     */
+    public boolean isReuseStructs(){
+        return reuseStructs;
+    }
+    
+    /**
+     * Method to set to keep column values as their text in the formatted 
+     * structs and convert them only when they are read.  Converters write the
+     * text of string columns directly.  Takes precedence over reusing structs.
+     * @param lazy True to convert column values lazily, else false.
+     */
+    public void setLazyColumnValues(boolean lazy){
+        lazyColumnValues = lazy;
+    }
+    
+    /**
+     * Method to set to validate the formatted key and payload structs against
+     * their schemas.  Values produced by the compiled column plan always match
+     * their fields, so they are put without validation by default.  Enable
+     * for debugging.
+     * @param validate True to validate formatted records, else false.
+     */
+    public void setValidateValues(boolean validate){
+        validateValues = validate;
+    }
+    
+    /**
+     * Method to release the structs of the records formatted by the current
+     * thread so they are reused.  The records must no longer be referenced,
+     * using a released struct throws an exception.
+     */
+    public void releaseStructs(){
+        if (reuseStructs){
+            structPools.get().releaseAll();
+        }
+    }
+    
+    /**
+     * Method to write newly generated schemas to the schema store file.  
+     * Unless forced the file is written at most once per interval.
+     * @param force True to write now, for example at shutdown.
+     */
+    public void writeSchemaStore(boolean force){
+        if ((schemaStore == null) || !schemaStore.isDirty()){
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (force || (now - schemaStoreWriteTime >= SCHEMA_STORE_WRITE_INTERVAL_MS)){
+            schemaStore.write();
+            schemaStoreWriteTime = now;
+        }
+    }
+    
+    /**
+     * Method to get the last image cache.
+     * @return The last image cache or null if not enabled.
+     */
+    public LastImageCache getLastImageCache(){
+        return lastImageCache;
+    }
+    
     @Override
     public NgFormattedData createNgFormattedData() {
-        return new KafkaConnectFormattedData();
+        return new KafkaConnectFormattedData(validateValues);
     }
 
     @Override
     public void init(DsConfiguration dc, DsMetaData dmd) {
+        TransformChain transforms = new TransformChain(renameFields, maskFields, addFields, routeByColumn);
+        if (lazyColumnValues && reuseStructs){
+            logger.warn("Lazy column values are enabled, key and payload structs will not be reused.");
+            reuseStructs = false;
+        }
         if (logger.isInfoEnabled()){
             StringBuilder sb = new StringBuilder();
             sb.append(System.lineSeparator());
@@ -177,6 +450,47 @@ public class KafkaConnectFormatter implements NgFormatter {
                 sb.append("  The current timestamp will not be in ISO-8601 format.");
             }
             sb.append(System.lineSeparator());
+            if (versionAvroSchemas){
+                sb.append("  Schemas will be versioned, the version is incremented when the columns of a table change.");
+                if (schemaStoreFile == null){
+                    sb.append("  No schema store file is set, so versions restart at 1 when the process restarts.");
+                }
+                sb.append(System.lineSeparator());
+            }
+            if (useLastImageCache){
+                sb.append("  Compressed updates will be expanded from a last image cache of [");
+                sb.append(lastImageCacheSizeMB);
+                sb.append("] MB.");
+                sb.append(System.lineSeparator());
+            }
+            if (useTombstoneDeletes){
+                sb.append("  Deletes on tables with a primary key will be output as tombstones");
+                sb.append(tombstoneDeleteEvents ? " preceded by a key only delete event." : ".");
+                sb.append(System.lineSeparator());
+            }
+            if (validateValues){
+                sb.append("  Formatted records will be validated against their schemas.");
+                sb.append(System.lineSeparator());
+            }
+            if (lazyColumnValues){
+                sb.append("  Column values will be converted only when they are read.");
+                sb.append(System.lineSeparator());
+            }
+            if (reuseStructs){
+                sb.append("  Key and payload structs will be reused once the formatted records have been sent.");
+                sb.append(System.lineSeparator());
+            }
+            if (schemaStoreFile != null){
+                sb.append("  Generated schemas will be stored in the file [");
+                sb.append(schemaStoreFile);
+                sb.append("].");
+                sb.append(System.lineSeparator());
+            }
+            if (!transforms.isEmpty()){
+                sb.append("  Transforms are compiled into the output of each table.");
+                sb.append(System.lineSeparator());
+                transforms.appendSummary(sb);
+            }
             sb.append("**** End Kafka Connect Row Formatter - Configuration Summary ****");
             sb.append(System.lineSeparator());
             logger.info(sb.toString());
@@ -184,6 +498,21 @@ public class KafkaConnectFormatter implements NgFormatter {
         //Instantiate the schema generator.
         schemaGenerator = new KafkaConnectSchemaGenerator();
         schemaGenerator.setTreatAllColumnsAsStrings(treatAllColumnsAsStrings);
+        schemaGenerator.setVersionSchemas(versionAvroSchemas);
+        schemaGenerator.setTransformChain(transforms);
+        if (versionAvroSchemas && (schemaStoreFile == null)){
+            logger.warn("Schemas are versioned without a schema store file.  Versions are only kept in memory and "
+                    + "restart at 1 when the process restarts.  Set gg.handler.name.format.schemaStoreFile to keep them.");
+        }
+        if (schemaStoreFile != null){
+            schemaStore = new SchemaStore(new File(schemaStoreFile));
+            schemaStore.open();
+            schemaGenerator.setSchemaStore(schemaStore);
+            schemaStoreWriteTime = System.currentTimeMillis();
+        }
+        if (useLastImageCache){
+            lastImageCache = new LastImageCache(lastImageCacheSizeMB * 1024L * 1024L);
+        }
     }
 
     @Override
@@ -193,59 +522,97 @@ public class KafkaConnectFormatter implements NgFormatter {
 
     @Override
     public void formatOp(DsTransaction tx, DsOperation op, TableMetaData tMeta, NgFormattedData output) throws Exception {
+        formatOp(tx, op, op.getOperationType(), null, tMeta, output);
+    }
+    
+    /**
+     * Method to format an operation as the given operation type.  This is
+     * used to format operations which have been coalesced with earlier
+     * operations on the same row.
+     * @param tx The transaction.
+     * @param op The operation.
+     * @param opType The operation type to output.
+     * @param priorImage The after image of the earlier coalesced operations
+     * used to fill in columns missing from this operation, may be null.
+     * @param tMeta The table metadata.
+     * @param output The formatted output.
+     * @throws Exception 
+     */
+    public void formatOp(DsTransaction tx, DsOperation op, DsOperation.OpType opType, 
+            RowImage priorImage, TableMetaData tMeta, NgFormattedData output) throws Exception {
 		String tableName = tMeta.getTableName().getOriginalName();
         logger.debug("Entering formatOp");
         try{
             KafkaConnectFormattedData objectFormattedData = (KafkaConnectFormattedData)output;
             KeyAndPayloadSchemas schemas = schemaGenerator.getSchema(tableName, tMeta);
+            FieldPlan plan = schemas.getFieldPlan();
             
-            Struct rec1 = new Struct(schemas.getPayloadSchema());
+            Struct rec1 = newStruct(schemas.getPayloadSchema(), false);
             Struct rec2 = null;
             Struct key1 = null;
             Struct key2 = null;
             if (schemas.getKeySchema() != null){
-                key1 = new Struct(schemas.getKeySchema());
+                key1 = newStruct(schemas.getKeySchema(), true);
             }
+            //Deletes become tombstones on compacted topics if the table has a key
+            boolean tombstone = useTombstoneDeletes && (key1 != null);
             
-            if (op.getOperationType().isInsert()){
+            if (opType.isInsert()){
                 //Insert is after values
-                formatAfterValuesOp(op.getOperationType(), tx, op, tMeta, rec1, key1);
-            }else if (op.getOperationType().isDelete()){
-                //Delete is before values
-                formatBeforeValuesOp(op.getOperationType(), tx, op, tMeta, rec1, key1);
-            }else if (op.getOperationType().isPkUpdate()){
+                formatAfterValuesOp(opType, tx, op, tMeta, plan, rec1, key1, priorImage);
+                rememberLastImage(tableName, op, tMeta, priorImage);
+                objectFormattedData.addRecord(key1, rec1, plan.routeTopic(rec1));
+            }else if (opType.isDelete()){
+                if (tombstone){
+                    formatTombstone(tx, op, tMeta, plan, rec1, key1, objectFormattedData);
+                }else{
+                    //Delete is before values
+                    formatBeforeValuesOp(opType, tx, op, tMeta, plan, rec1, key1);
+                    objectFormattedData.addRecord(key1, rec1, plan.routeTopic(rec1));
+                }
+                forgetLastImage(tableName, op, tMeta);
+            }else if (opType.isPkUpdate()){
                 //Primary key updates are a special case of update and have
                 //optional handling.
                 if(pkHandling == PkHandling.PK_ABEND){
                     //Need to abend
                     logger.error("The Kafka Connect Formatter encountered a update including a primary key.  The behavior is configured to ABEND in this scenario.");
                     throw new RuntimeException("The Kafka Connect Formatter encountered a update including a primary key.  The behavior is configured to ABEND in this scenario.");
-                }else if(pkHandling == PkHandling.PK_UPDATE){
-                    formatAfterValuesOp(DsOperation.OpType.DO_UPDATE, tx, op, tMeta, rec1, key1);
+                }
+                //The row moves from the before key to the after key
+                RowImage lastImage = lookupLastImage(tableName, op, tMeta, true);
+                if(pkHandling == PkHandling.PK_UPDATE){
+                    formatAfterValuesOp(DsOperation.OpType.DO_UPDATE, tx, op, tMeta, plan, rec1, key1, lastImage);
+                    objectFormattedData.addRecord(key1, rec1, plan.routeTopic(rec1));
                 }else if(pkHandling == PkHandling.PK_DELETE_INSERT){
-                    formatBeforeValuesOp(DsOperation.OpType.DO_DELETE, tx, op, tMeta, rec1, key1);
-                    rec2 = new Struct(schemas.getPayloadSchema());
+                    if (tombstone){
+                        formatTombstone(tx, op, tMeta, plan, rec1, key1, objectFormattedData);
+                    }else{
+                        formatBeforeValuesOp(DsOperation.OpType.DO_DELETE, tx, op, tMeta, plan, rec1, key1);
+                        objectFormattedData.addRecord(key1, rec1, plan.routeTopic(rec1));
+                    }
+                    rec2 = newStruct(schemas.getPayloadSchema(), false);
                     if (schemas.getKeySchema() != null){
-                        key2 = new Struct(schemas.getKeySchema());
+                        key2 = newStruct(schemas.getKeySchema(), true);
                     }
-                    formatAfterValuesOp(DsOperation.OpType.DO_INSERT, tx, op, tMeta, rec2, key2);
+                    formatAfterValuesOp(DsOperation.OpType.DO_INSERT, tx, op, tMeta, plan, rec2, key2, lastImage);
+                    objectFormattedData.addRecord(key2, rec2, plan.routeTopic(rec2));
                 }
-            }else if (op.getOperationType().isUpdate()){
+                forgetLastImage(tableName, op, tMeta);
+                rememberLastImage(tableName, op, tMeta, lastImage);
+            }else if (opType.isUpdate()){
                 //Update is after values
-                formatAfterValuesOp(op.getOperationType(), tx, op, tMeta, rec1, key1);
+                RowImage lastImage = mergeImages(lookupLastImage(tableName, op, tMeta, false), priorImage);
+                formatAfterValuesOp(opType, tx, op, tMeta, plan, rec1, key1, lastImage);
+                rememberLastImage(tableName, op, tMeta, lastImage);
+                objectFormattedData.addRecord(key1, rec1, plan.routeTopic(rec1));
             }else{
                 //Unknown operation, log a warning and move on.
                 logger.error("The Formatter encounted an unknown operation [" 
-                    + op.getOperationType() + "].");
+                    + opType + "].");
                 throw new RuntimeException("The Formatter encounted an unknown operation [" 
-                    + op.getOperationType() + "].");
+                    + opType + "].");
             }
-            //Set the objects
-            objectFormattedData.setRecord(rec1);
-            objectFormattedData.setKey(key1);
-            //Only will be a second object if this is a primary key update
-            objectFormattedData.setRecord(rec2);
-            objectFormattedData.setKey(key2);
   
         }catch(Exception e){
             logger.error("The Kafka Connect Row Formatter formatOp operation failed.", e);
@@ -253,6 +620,65 @@ public class KafkaConnectFormatter implements NgFormatter {
         }
     }
 
+    /**
+     * Method to generate the schemas and field plan of a table ahead of its
+     * first operation.  May be called concurrently for different tables.
+     * @param tMeta The table metadata.
+     * @return The key and payload schemas of the table.
+     */
+    public KeyAndPayloadSchemas prewarmSchemas(TableMetaData tMeta){
+        return schemaGenerator.getSchema(tMeta.getTableName().getOriginalName(), tMeta);
+    }
+    
+    /**
+     * Method to apply an operation which is not formatted, such as one
+     * dropped by an operation filter, to the last image cache.  Without it
+     * a later compressed update of the row would be completed from the image
+     * before the skipped operation.
+     * @param op The skipped operation.
+     * @param tMeta The table metadata.
+     */
+    public void skipOperation(DsOperation op, TableMetaData tMeta){
+        if (lastImageCache == null){
+            return;
+        }
+        String tableName = tMeta.getTableName().getOriginalName();
+        DsOperation.OpType opType = op.getOperationType();
+        if (opType.isInsert()){
+            rememberLastImage(tableName, op, tMeta, null);
+        }else if (opType.isDelete()){
+            forgetLastImage(tableName, op, tMeta);
+        }else if (opType.isPkUpdate()){
+            RowImage lastImage = lookupLastImage(tableName, op, tMeta, true);
+            forgetLastImage(tableName, op, tMeta);
+            rememberLastImage(tableName, op, tMeta, lastImage);
+        }else if (opType.isUpdate()){
+            rememberLastImage(tableName, op, tMeta, lookupLastImage(tableName, op, tMeta, false));
+        }
+    }
+    
+    /**
+     * Method to format only the key of an operation.  The after key values
+     * are used, except for deletes which use the before key values.
+     * @param op The operation.
+     * @param tMeta The table metadata.
+     * @return The key struct or null if the table has no primary key.
+     */
+    public Struct formatKey(DsOperation op, TableMetaData tMeta){
+        String tableName = tMeta.getTableName().getOriginalName();
+        KeyAndPayloadSchemas schemas = schemaGenerator.getSchema(tableName, tMeta);
+        if (schemas.getKeySchema() == null){
+            return null;
+        }
+        Struct key = new PrimitiveStruct(schemas.getKeySchema());
+        if (op.getOperationType().isDelete()){
+            formatBeforeKeys(null, op, schemas.getFieldPlan(), key);
+        }else{
+            formatAfterKeys(null, op, schemas.getFieldPlan(), key);
+        }
+        return key;
+    }
+    
     @Override
     public void endTx(DsTransaction dt, DsMetaData dmd, NgFormattedData nfd) throws Exception {
         //NOOP
@@ -260,37 +686,71 @@ public class KafkaConnectFormatter implements NgFormatter {
 
     @Override
     public void ddlOperation(DsOperation.OpType opType, ObjectType objectType, String objectName, String ddlText) throws Exception {
-        // /This is where we should capture schema change for Schema Reg
-        schemaGenerator.dropSchema(objectName);
+        //Evolve the schemas from the current ones when the new metadata is seen
+        schemaGenerator.evolveSchema(objectName);
+        if (lastImageCache != null){
+            //Cached images are by column position which may have changed
+            lastImageCache.dropTable(objectName);
+        }
     }
     
     private void formatBeforeValuesOp(DsOperation.OpType type, DsTransaction tx, DsOperation op, 
-            TableMetaData tmeta, Struct rec, Struct key){
-        formatOperationMetadata(type, op, tmeta, rec);
-        formatBeforeValues(tx, op, tmeta, rec);
-        formatBeforeKeys(tx, op, tmeta, key);
+            TableMetaData tmeta, FieldPlan plan, Struct rec, Struct key){
+        formatOperationMetadata(type, op, tmeta, plan, rec);
+        formatBeforeValues(tx, op, plan, rec, key);
 
     }
     
+    /**
+     * Method to format the delete of a row as a tombstone, the before key with
+     * a null payload, optionally preceded by a delete event holding only the
+     * operation metadata and the before key values.  The topic is routed from
+     * the before values so the tombstone lands with the earlier records of
+     * the row.
+     */
+    private void formatTombstone(DsTransaction tx, DsOperation op, TableMetaData tmeta, 
+            FieldPlan plan, Struct rec, Struct key, KafkaConnectFormattedData output){
+        formatBeforeKeys(tx, op, plan, key);
+        String topic;
+        if (plan.isRouted()){
+            //The routing column may not be a key column
+            formatBeforeValues(tx, op, plan, rec, null);
+            topic = plan.routeTopic(rec);
+        }else{
+            topic = null;
+        }
+        if (tombstoneDeleteEvents){
+            Struct event = newStruct(rec.schema(), false);
+            formatOperationMetadata(DsOperation.OpType.DO_DELETE, op, tmeta, plan, event);
+            formatBeforeKeyValues(tx, op, plan, event);
+            output.addRecord(key, event, topic);
+        }
+        output.addRecord(key, null, topic);
+    }
+    
     private void formatAfterValuesOp(DsOperation.OpType type, DsTransaction tx, DsOperation op, 
-            TableMetaData tmeta, Struct rec, Struct key){
-        formatOperationMetadata(type, op, tmeta, rec);
-        formatAfterValues(tx, op, tmeta, rec);
-        formatAfterKeys(tx, op, tmeta, key);
+            TableMetaData tmeta, FieldPlan plan, Struct rec, Struct key, RowImage lastImage){
+        formatOperationMetadata(type, op, tmeta, plan, rec);
+        formatAfterValues(tx, op, plan, rec, key, lastImage);
         
     }
     
     private void formatEmptyValuesOp(DsOperation.OpType type, DsTransaction tx, DsOperation op, 
-            TableMetaData tMeta, Struct rec){
-        formatOperationMetadata(type, op, tMeta, rec);
+            TableMetaData tMeta, FieldPlan plan, Struct rec){
+        formatOperationMetadata(type, op, tMeta, plan, rec);
         //This is a truncate operation, it needs to column values
     }
     
+    /**
+     * Method to format the before values into the payload struct and, if a
+     * key struct is given, the before key values into the key struct.  The
+     * key values are taken from the payload rather than converted again.
+     */
     private void formatBeforeValues(DsTransaction tx, DsOperation op, 
-            TableMetaData tMeta, Struct rec){
+            FieldPlan plan, Struct rec, Struct key){
         int cIndex = 0;
         for(DsColumn col : op.getColumns()) {
-            ColumnMetaData cMeta = tMeta.getColumnMetaData(cIndex++);
+            ColumnPlan cPlan = plan.getColumn(cIndex++);
             DsColumn beforeCol = col.getBefore();
             //Only need to include a value if the before column object is not 
             //null and the associated value is not null, this unmasks a 
@@ -298,35 +758,57 @@ public class KafkaConnectFormatter implements NgFormatter {
             //a missing column and a null value.
             if ((beforeCol != null)&&(!beforeCol.isValueNull())){
                 //The beforeCol object is NOT null
-                formatColumnValue(cMeta, beforeCol, rec);
+                formatColumnValue(cPlan, beforeCol.getValue(), rec);
+                if ((key != null) && cPlan.isKeyCol()){
+                    formatKeyValue(cPlan, beforeCol.getValue(), rec, key);
+                }
             }
         }
     }
     
     private void formatBeforeKeys(DsTransaction tx, DsOperation op,
-            TableMetaData tmeta, Struct key){
+            FieldPlan plan, Struct key){
         if (key == null){
             //In this case nothing to do.  Simply return.
             return;
         }
         int cIndex = 0;
         for (DsColumn col : op.getColumns()){
-            ColumnMetaData cmeta = tmeta.getColumnMetaData(cIndex++);
-            if (cmeta.isKeyCol()){
+            ColumnPlan cPlan = plan.getColumn(cIndex++);
+            if (cPlan.isKeyCol()){
                 //This is a primary key column
                 DsColumn beforeCol = col.getBefore();
                 if ((beforeCol != null)&&(!beforeCol.isValueNull())){
-                    formatColumnValue(cmeta, beforeCol, key);
+                    formatKeyValue(cPlan, beforeCol.getValue(), key);
                 }
             }
         }
     }
     
+    private void formatBeforeKeyValues(DsTransaction tx, DsOperation op, 
+            FieldPlan plan, Struct rec){
+        int cIndex = 0;
+        for(DsColumn col : op.getColumns()) {
+            ColumnPlan cPlan = plan.getColumn(cIndex++);
+            DsColumn beforeCol = col.getBefore();
+            if (cPlan.isKeyCol()&&(beforeCol != null)&&(!beforeCol.isValueNull())){
+                formatColumnValue(cPlan, beforeCol.getValue(), rec);
+            }
+        }
+    }
+    
+    /**
+     * Method to format the after values into the payload struct and, if a
+     * key struct is given, the after key values into the key struct.  The
+     * key values are taken from the payload rather than converted again.
+     * Values of a compressed update are completed from the last image, the
+     * key only holds the values present in the operation.
+     */
     private void formatAfterValues(DsTransaction tx, DsOperation op, 
-            TableMetaData tMeta, Struct rec){
+            FieldPlan plan, Struct rec, Struct key, RowImage lastImage){
         int cIndex = 0;
         for(DsColumn col : op.getColumns()) {
-            ColumnMetaData cMeta = tMeta.getColumnMetaData(cIndex++);
+            ColumnPlan cPlan = plan.getColumn(cIndex);
             DsColumn afterCol = col.getAfter();
             //Only need to include a value if the after column object is not 
             //null and the associated value is not null, this unmasks a 
@@ -334,37 +816,47 @@ public class KafkaConnectFormatter implements NgFormatter {
             //a missing column and a null value.
             if ((afterCol != null)&&(!afterCol.isValueNull())){
                 //The afterCol object is NOT null
-                formatColumnValue(cMeta, afterCol, rec);
+                formatColumnValue(cPlan, afterCol.getValue(), rec);
+                if ((key != null) && cPlan.isKeyCol()){
+                    formatKeyValue(cPlan, afterCol.getValue(), rec, key);
+                }
+            }else if ((afterCol == null)&&(lastImage != null)&&(lastImage.getValue(cIndex) != null)){
+                //Column omitted from a compressed update, use the last value
+                formatColumnValue(cPlan, lastImage.getValue(cIndex), rec);
             }
+            cIndex++;
         }
     }
     
     private void formatAfterKeys(DsTransaction tx, DsOperation op,
-            TableMetaData tmeta, Struct key){
+            FieldPlan plan, Struct key){
         if (key == null){
             //In this case nothing to do.  Simply return.
             return;
         }
         int cIndex = 0;
         for (DsColumn col : op.getColumns()){
-            ColumnMetaData cmeta = tmeta.getColumnMetaData(cIndex++);
-            if (cmeta.isKeyCol()){
+            ColumnPlan cPlan = plan.getColumn(cIndex++);
+            if (cPlan.isKeyCol()){
                 //This is a primary key column
                 DsColumn afterCol = col.getAfter();
                 if ((afterCol != null)&&(!afterCol.isValueNull())){
-                    formatColumnValue(cmeta, afterCol, key);
+                    formatKeyValue(cPlan, afterCol.getValue(), key);
                 }
             }
         }
     }
     
     protected void formatOperationMetadata(DsOperation.OpType type, DsOperation op, 
-            TableMetaData tMeta, Struct rec){
-        formatTableName(tMeta, rec);
-        formatOpType(type, rec);
-        formatOperationTimestamp(op, rec);
-        formatCurrentTimestamp(rec);
-        formatPosition(op, rec);
+            TableMetaData tMeta, FieldPlan plan, Struct rec){
+        //The table, op_type, op_ts, current_ts and pos fields and any
+        //constant fields are put by the resolved fields of the plan
+        plan.putMetadata(rec, 
+                tMeta.getTableName().getOriginalName(),
+                opTypeKey(type),
+                op.getTimestampAsString(),
+                NgUniqueTimestamp.generateUniqueTimestamp(useIso8601Format),
+                op.getPosition());
         //formatPrimaryKeys(tMeta, rec);
         //formatTokens(op, rec);
     }
@@ -381,30 +873,15 @@ public class KafkaConnectFormatter implements NgFormatter {
         rec.put("primary_keys", keys);
     }
 
-    private void formatTableName(TableMetaData tMeta, Struct rec){
-        rec.put("table", tMeta.getTableName().getOriginalName());
-    }
-    
-    private void formatOpType(DsOperation.OpType type, Struct rec){ 
+    private String opTypeKey(DsOperation.OpType type){ 
         if(type.isInsert()){
-            rec.put("op_type", insertOpKey);
+            return insertOpKey;
         }else if (type.isUpdate()){
-            rec.put("op_type", updateOpKey);
+            return updateOpKey;
         }else if (type.isDelete()){
-            rec.put("op_type", deleteOpKey);
+            return deleteOpKey;
         }
-    }
-    
-    private void formatOperationTimestamp(DsOperation op, Struct rec){
-        rec.put("op_ts", op.getTimestampAsString());
-    }
-    
-    private void formatCurrentTimestamp(Struct rec){
-        rec.put("current_ts", NgUniqueTimestamp.generateUniqueTimestamp(useIso8601Format));
-    }
-    
-    private void formatPosition(DsOperation op, Struct rec){
-        rec.put("pos", op.getPosition());
+        return null;
     }
     
     /**
@@ -429,71 +906,219 @@ public class KafkaConnectFormatter implements NgFormatter {
         rec.put("tokens", tokenMap);
     }
     
-    protected void formatColumnValue(ColumnMetaData cMeta, DsColumn col, Struct rec){
-		String fieldName = cMeta.getOriginalColumnName();
-		final Object colValue;
-
-        if (treatAllColumnsAsStrings){
-            //User has selected to treat all columns as strings
-            rec.put(fieldName, col.getValue());
-        }else{
-            switch (cMeta.getDataType().getGGDataType()){
-
-                //First handle numbers
-                case GG_16BIT_S:
-                case GG_16BIT_U:
-                case GG_32BIT_S:
-                case GG_32BIT_U:
-                case GG_64BIT_S:
-                    if (cMeta.getDataType().getScale() > 0){
-                        colValue = Double.valueOf(col.getValue());
-                    }else{
-                        colValue = Long.valueOf(col.getValue());
-                    }
-                    break;
-                case GG_64BIT_U:
-                    colValue = Double.valueOf(col.getValue());
-                    break;
-                case GG_REAL:
-                case GG_IEEE_REAL:
-                    colValue = Float.valueOf(col.getValue());
-                    break;
-
-                case GG_DOUBLE:
-                case GG_IEEE_DOUBLE:
-                case GG_DOUBLE_V:
-                case GG_DOUBLE_F:
-                case GG_DEC_U:
-                case GG_DEC_LSS:
-                case GG_DEC_LSE:
-                case GG_DEC_TSS:
-                case GG_DEC_TSE:
-                case GG_DEC_PACKED:
-                    colValue = Double.valueOf(col.getValue());
-                    break;
-                case GG_ASCII_V:
-                case GG_ASCII_F:
-                    // Even though it's coming to us as character data, we need to
-                    // inspect the sub-type to see whether it is a number type.  If
-                    // this is a number type, we'll use Double.
-                    if (cMeta.getDataType().getGGDataSubType() == GG_SUBTYPE_FLOAT ||
-                        cMeta.getDataType().getGGDataSubType() == GG_SUBTYPE_FIXED_PREC) {
-                        // This is a number data, let's use Double for consistency.
-                        colValue = Double.valueOf(col.getValue());
-                    } else {
-                        colValue = col.getValue();  
-                    }
-                    break;
-
-                default:
-                    //Treat it as a string
-		    colValue = col.getValue();
+    /**
+     * Method to create the struct of a formatted record, taken from the pool
+     * of the current thread if structs are reused.
+     * @param schema The struct schema.
+     * @param key True for a key struct, false for a payload struct.
+     * @return The empty struct.
+     */
+    private Struct newStruct(Schema schema, boolean key){
+        if (lazyColumnValues){
+            return new LazyStruct(schema, key);
+        }
+        if (reuseStructs){
+            return structPools.get().acquire(schema);
+        }
+        return new PrimitiveStruct(schema);
+    }
+    
+    /**
+     * Method to put a column value into a payload struct.  Numeric values are
+     * stored unboxed if the struct supports it, lazy structs keep the text.
+     * @param cPlan The column plan.
+     * @param value The column value as text.
+     * @param rec The payload struct.
+     */
+    protected void formatColumnValue(ColumnPlan cPlan, String value, Struct rec){
+        if (rec instanceof LazyStruct){
+            ((LazyStruct)rec).putText(cPlan.getPayloadIndex(), cPlan, value);
+        }else if (cPlan.isMasked() || !putPrimitive(cPlan.getKind(), cPlan.getPayloadIndex(), value, rec)){
+            rec.putTrusted(cPlan.getPayloadIndex(), cPlan.toPayloadValue(value));
+        }
+    }
+    
+    /**
+     * Method to put a primary key column value into a key struct.  Numeric
+     * values are stored unboxed if the struct supports it, lazy structs keep
+     * the text.
+     * @param cPlan The column plan.
+     * @param value The column value as text.
+     * @param key The key struct.
+     */
+    protected void formatKeyValue(ColumnPlan cPlan, String value, Struct key){
+        if (key instanceof LazyStruct){
+            ((LazyStruct)key).putText(cPlan.getKeyIndex(), cPlan, value);
+        }else if (!putPrimitive(cPlan.getKind(), cPlan.getKeyIndex(), value, key)){
+            key.putTrusted(cPlan.getKeyIndex(), cPlan.toKeyValue(value));
+        }
+    }
+    
+    /**
+     * Method to put a primary key column value into a key struct, copied from
+     * the payload struct the column value was just put into.  Unboxed values
+     * are copied unboxed.  Masked values, columns not in the payload and lazy
+     * structs fall back to converting the text.
+     * @param cPlan The column plan.
+     * @param value The column value as text.
+     * @param rec The payload struct holding the column value.
+     * @param key The key struct.
+     */
+    private void formatKeyValue(ColumnPlan cPlan, String value, Struct rec, Struct key){
+        int payloadIndex = cPlan.getPayloadIndex();
+        if (cPlan.isMasked() || (payloadIndex < 0) || (rec instanceof LazyStruct) || (key instanceof LazyStruct)){
+            formatKeyValue(cPlan, value, key);
+            return;
+        }
+        if ((rec instanceof PrimitiveStruct) && (key instanceof PrimitiveStruct)){
+            PrimitiveStruct from = (PrimitiveStruct)rec;
+            PrimitiveStruct to = (PrimitiveStruct)key;
+            if (from.hasLong(payloadIndex)){
+                to.putLong(cPlan.getKeyIndex(), from.getLong(payloadIndex));
+                return;
+            }
+            if (from.hasDouble(payloadIndex)){
+                to.putDouble(cPlan.getKeyIndex(), from.getDouble(payloadIndex));
+                return;
+            }
+        }
+        key.putTrusted(cPlan.getKeyIndex(), rec.get(payloadIndex));
+    }
+    
+    /**
+     * Method to put an INT64 or FLOAT64 value into a struct without boxing.
+     * @param kind The value type.
+     * @param index The field index.
+     * @param value The column value as text.
+     * @param struct The struct.
+     * @return True if the value was put, false if it must be put boxed.
+     */
+    private static boolean putPrimitive(ColumnPlan.ValueKind kind, int index, String value, Struct struct){
+        if (!(struct instanceof PrimitiveStruct)){
+            return false;
+        }
+        switch (kind){
+            case INT64:
+                ((PrimitiveStruct)struct).putLong(index, Long.parseLong(value));
+                return true;
+            case FLOAT64:
+                ((PrimitiveStruct)struct).putDouble(index, Double.parseDouble(value));
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Method to get the last image of a row from the last image cache.
+     * @param tableName The fully qualified table name.
+     * @param op The operation.
+     * @param tMeta The table metadata.
+     * @param before True to look up by the before key, false for the after key.
+     * @return The last image of the row or null if not available.
+     */
+    private RowImage lookupLastImage(String tableName, DsOperation op, 
+            TableMetaData tMeta, boolean before){
+        if ((lastImageCache == null)||(tMeta.getNumKeyColumns() < 1)){
+            return null;
+        }
+        return lastImageCache.get(tableName, rowKey(op, tMeta, before), tMeta.getNumColumns());
+    }
+    
+    /**
+     * Method to store the after image of a row in the last image cache.
+     * @param tableName The fully qualified table name.
+     * @param op The operation.
+     * @param tMeta The table metadata.
+     * @param lastImage The previous image of the row, may be null.
+     */
+    private void rememberLastImage(String tableName, DsOperation op, 
+            TableMetaData tMeta, RowImage lastImage){
+        if ((lastImageCache == null)||(tMeta.getNumKeyColumns() < 1)){
+            return;
+        }
+        RowImage image = RowImage.afterImage(op, tMeta.getNumColumns());
+        if (lastImage != null){
+            lastImage.overlay(image);
+            image = lastImage;
+        }
+        lastImageCache.put(tableName, rowKey(op, tMeta, false), image);
+    }
+    
+    /**
+     * Method to remove a row from the last image cache by its before key.
+     * @param tableName The fully qualified table name.
+     * @param op The operation.
+     * @param tMeta The table metadata.
+     */
+    private void forgetLastImage(String tableName, DsOperation op, TableMetaData tMeta){
+        if ((lastImageCache == null)||(tMeta.getNumKeyColumns() < 1)){
+            return;
+        }
+        lastImageCache.remove(tableName, rowKey(op, tMeta, true));
+    }
+    
+    /**
+     * Method to overlay a newer row image on an older one.
+     * @param older The older image, may be null.
+     * @param newer The newer image, may be null.
+     * @return The merged image or null if both are null.
+     */
+    private RowImage mergeImages(RowImage older, RowImage newer){
+        if (older == null){
+            return newer;
+        }
+        if (newer != null){
+            older.overlay(newer);
+        }
+        return older;
+    }
+    
+    /**
+     * Method to build an unambiguous string from the primary key values of 
+     * an operation.  Falls back to the other image if a key column is
+     * missing from the requested one.
+     * @param op The operation.
+     * @param tMeta The table metadata.
+     * @param before True to use the before values, false for the after values.
+     * @return The row key.
+     */
+    private String rowKey(DsOperation op, TableMetaData tMeta, boolean before){
+        StringBuilder sb = new StringBuilder();
+        int cIndex = 0;
+        for (DsColumn col : op.getColumns()){
+            ColumnMetaData cMeta = tMeta.getColumnMetaData(cIndex++);
+            if (cMeta.isKeyCol()){
+                DsColumn keyCol = before ? col.getBefore() : col.getAfter();
+                if (keyCol == null){
+                    keyCol = before ? col.getAfter() : col.getBefore();
+                }
+                if ((keyCol == null)||(keyCol.isValueNull())){
+                    sb.append('~');
+                }else{
+                    String value = keyCol.getValue();
+                    sb.append(value.length()).append(':').append(value);
+                }
             }
-            rec.put(fieldName, colValue);
         }
+        return sb.toString();
     }
     
+    /**
+     * Method to handle a metadata change of a table.  The cached schemas of
+     * the table are evolved from the new metadata on next use and the cached
+     * row images are dropped.
+     * @param e The event object, the event source is the table metadata.
+     * @param meta The metadata object.
+     * @return Status.OK
+     */
     public Status metaDataChanged(DsEvent e, DsMetaData meta) {
+        TableMetaData tMeta = (TableMetaData)e.getEventSource();
+        String tableName = tMeta.getTableName().getOriginalName();
+        schemaGenerator.evolveSchema(tableName);
+        if (lastImageCache != null){
+            lastImageCache.dropTable(tableName);
+        }
         return Status.OK;
     }
 }
@@ -8,10 +8,9 @@ package oracle.goldengate.kafkaconnect.formatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import oracle.goldengate.datasource.meta.ColumnMetaData;
-import oracle.goldengate.datasource.meta.DsType;
-import static oracle.goldengate.datasource.meta.DsType.GGSubType.GG_SUBTYPE_FIXED_PREC;
-import static oracle.goldengate.datasource.meta.DsType.GGSubType.GG_SUBTYPE_FLOAT;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import oracle.goldengate.datasource.meta.TableMetaData;
 import oracle.goldengate.common.data.Field;
 import oracle.goldengate.common.data.Schema;
@@ -21,14 +20,27 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This class generates the Kafka Connect schema and caches the schemas for
- * reuse.
+ * reuse.  The cache may be shared by concurrent formatting threads.  Reads of
+ * an existing schema do not lock, and the schemas of a table are built
+ * exactly once per generation, even if several threads ask for them at the
+ * same time.  Every build is tagged with a new generation number.  Dropping a
+ * table only removes it from the cache, so records already formatted keep
+ * the schemas they were built with.  On a metadata change the schemas of a
+ * table are evolved from the previous ones: the old and new columns are
+ * diffed, unchanged columns keep their compiled field plan and, if schema
+ * versioning is enabled, the schemas get the next version number.
  * @author tbcampbe
  */
 public class KafkaConnectSchemaGenerator {
     private static final Logger logger=LoggerFactory.getLogger(KafkaConnectSchemaGenerator.class);
     
-    private Map<String, KeyAndPayloadSchemas> schemaMap = new HashMap();
+    private final ConcurrentMap<String, SchemaEntry> schemaMap = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
     private boolean treatAllColumnsAsStrings = false;
+    private boolean versionSchemas = false;
+    private TransformChain transforms = new TransformChain(null, null, null, null);
+    private SchemaStore schemaStore = null;
+    private String settings = null;
     
     /**
      * Method to set to treat all columns as strings.
@@ -38,6 +50,33 @@ public class KafkaConnectSchemaGenerator {
         treatAllColumnsAsStrings = allColumnsAsStrings;
     }
     
+    /**
+     * Method to set to record a version number in the schemas, starting at 1
+     * and incremented every time the columns of the table change.  Versions
+     * only survive a restart through the schema store, which reloads the 
+     * last schemas of each table with their version.
+     * @param version True to version schemas, else false.
+     */
+    public void setVersionSchemas(boolean version){
+        versionSchemas = version;
+    }
+    
+    /**
+     * Method to set the transforms compiled into the field plan of each table.
+     * @param chain The transforms.
+     */
+    public void setTransformChain(TransformChain chain){
+        transforms = chain;
+    }
+    
+    /**
+     * Method to set the store of previously generated schemas.
+     * @param store The schema store.
+     */
+    public void setSchemaStore(SchemaStore store){
+        schemaStore = store;
+    }
+    
     /**
      * Method to get the  schema.  If a schema is not available it will be
      * generated.
@@ -46,23 +85,128 @@ public class KafkaConnectSchemaGenerator {
      * @return An object holding the key and value schemas.
      */
     public KeyAndPayloadSchemas getSchema(String tableName, TableMetaData tmeta){
-        KeyAndPayloadSchemas schemas = schemaMap.get(tableName);
-        if (schemas == null){
-            logger.info("Building the key and payload schemas for source table [" + tableName + "]");
-            schemas = new KeyAndPayloadSchemas();
-            //Generate the Kafka key schema
-            Schema keySchema = generateKeySchema(tableName, tmeta);
-            //Log the key schema if debug logging enabled.
-            logSchema(keySchema);
-            schemas.setKeySchema(keySchema);
-            //Generate the Kafka value schema
-            Schema payloadSchema = generatePayloadSchema(tableName, tmeta);
-            //Log the payload schema if debug logging is enabled.
-            logSchema(payloadSchema);
-            schemas.setPayloadSchema(payloadSchema);
-            schemaMap.put(tableName, schemas);
+        SchemaEntry entry = schemaMap.get(tableName);
+        if (entry == null){
+            SchemaEntry created = new SchemaEntry();
+            entry = schemaMap.putIfAbsent(tableName, created);
+            if (entry == null){
+                entry = created;
+            }
+        }
+        return entry.get(tableName, tmeta);
+    }
+    
+    private KeyAndPayloadSchemas buildSchemas(String tableName, TableMetaData tmeta,
+            KeyAndPayloadSchemas previous, String[] previousColumns){
+        long generation = generations.incrementAndGet();
+        if (previous != null){
+            return evolveSchemas(tableName, tmeta, generation, previous, previousColumns);
+        }
+        long metadataHash = 0;
+        if (schemaStore != null){
+            //Reuse the schemas generated by a previous run from the same metadata
+            metadataHash = SchemaStore.metadataHash(tmeta, settingsDescription());
+            KeyAndPayloadSchemas stored = schemaStore.load(tableName, tmeta, treatAllColumnsAsStrings,
+                    metadataHash, generation);
+            if (stored != null){
+                logger.debug("Loaded the key and payload schemas for source table [" + tableName 
+                        + "] from the schema store, generation [" + generation + "].");
+                return stored;
+            }
+        }
+        logger.info("Building the key and payload schemas for source table [" + tableName 
+                + "], generation [" + generation + "].");
+        //Compile the renames, masks and column types into the field plan
+        FieldPlan plan = transforms.compile(tableName, tmeta, treatAllColumnsAsStrings);
+        KeyAndPayloadSchemas schemas = generateSchemas(tableName, tmeta, plan, 
+                generation, versionSchemas ? Integer.valueOf(1) : null);
+        if (schemaStore != null){
+            schemaStore.save(tableName, tmeta, metadataHash, schemas);
         }
-        
+        return schemas;
+    }
+    
+    /**
+     * Method to build the schemas of a table from the schemas built for its
+     * previous metadata.  The field plan is patched rather than recompiled.
+     * @param tableName The fully qualified table name.
+     * @param tmeta The new table metadata.
+     * @param generation The generation of the new schemas.
+     * @param previous The previous schemas.
+     * @param previousColumns The column names of the previous metadata.
+     * @return The new schemas.
+     */
+    private KeyAndPayloadSchemas evolveSchemas(String tableName, TableMetaData tmeta, long generation,
+            KeyAndPayloadSchemas previous, String[] previousColumns){
+        FieldPlan previousPlan = previous.getFieldPlan();
+        int[] previousIndexes = diffColumns(previousColumns, previousPlan,
+                TableColumns.of(tmeta, treatAllColumnsAsStrings));
+        if (previousIndexes == null){
+            logger.info("The columns of source table [" + tableName + "] are unchanged, keeping the key and payload schemas"
+                    + ", generation [" + generation + "].");
+            KeyAndPayloadSchemas schemas = new KeyAndPayloadSchemas(generation);
+            schemas.setKeySchema(previous.getKeySchema());
+            schemas.setPayloadSchema(previous.getPayloadSchema());
+            schemas.setFieldPlan(previousPlan);
+            return schemas;
+        }
+        Integer previousVersion = previous.getPayloadSchema().version();
+        Integer version = versionSchemas ? Integer.valueOf((previousVersion == null) ? 1 : previousVersion + 1) : null;
+        logger.info("Evolving the key and payload schemas for source table [" + tableName 
+                + "], generation [" + generation + "], version [" + version + "].");
+        FieldPlan plan = transforms.patch(tableName, tmeta, treatAllColumnsAsStrings, previousPlan, previousIndexes);
+        KeyAndPayloadSchemas schemas = generateSchemas(tableName, tmeta, plan, generation, version);
+        if (schemaStore != null){
+            schemaStore.save(tableName, tmeta, SchemaStore.metadataHash(tmeta, settingsDescription()), schemas);
+        }
+        return schemas;
+    }
+    
+    /**
+     * Method to match the columns of new table metadata with the columns of
+     * the previous field plan by their original names.  A column keeps its
+     * previous plan if its value kind and primary key flag are unchanged.
+     * @param previousColumns The column names of the previous metadata.
+     * @param previousPlan The field plan of the previous metadata.
+     * @param columns The columns of the new metadata.
+     * @return For each new column the index of the same column in the 
+     * previous plan, or -1 if it is new or changed.  Null if every column is
+     * unchanged and at the same position.
+     */
+    static int[] diffColumns(String[] previousColumns, FieldPlan previousPlan, TableColumns columns){
+        Map<String, Integer> previousIndexByName = new HashMap<>();
+        for (int col = 0; col < previousColumns.length; col++){
+            previousIndexByName.put(previousColumns[col], col);
+        }
+        int[] previousIndexes = new int[columns.size()];
+        boolean changed = previousIndexes.length != previousColumns.length;
+        for (int col = 0; col < previousIndexes.length; col++){
+            Integer index = previousIndexByName.get(columns.getName(col));
+            previousIndexes[col] = -1;
+            if ((index != null) && columns.matches(col, previousPlan.getColumn(index))){
+                previousIndexes[col] = index;
+            }
+            changed |= previousIndexes[col] != col;
+        }
+        return changed ? previousIndexes : null;
+    }
+    
+    private KeyAndPayloadSchemas generateSchemas(String tableName, TableMetaData tmeta, FieldPlan plan, 
+            long generation, Integer version){
+        KeyAndPayloadSchemas schemas = new KeyAndPayloadSchemas(generation);
+        //Generate the Kafka key schema
+        Schema keySchema = generateKeySchema(tableName, tmeta, plan, version);
+        //Log the key schema if debug logging enabled.
+        logSchema(keySchema);
+        schemas.setKeySchema(keySchema);
+        //Generate the Kafka value schema
+        Schema payloadSchema = generatePayloadSchema(tableName, tmeta, plan, version);
+        //Log the payload schema if debug logging is enabled.
+        logSchema(payloadSchema);
+        schemas.setPayloadSchema(payloadSchema);
+        //Resolve the output fields once for the formatter
+        plan.bind(keySchema, payloadSchema);
+        schemas.setFieldPlan(plan);
         return schemas;
     }
     
@@ -75,18 +219,53 @@ public class KafkaConnectSchemaGenerator {
         schemaMap.remove(tableName);
     }
     
-    private Schema generateKeySchema(String tableName, TableMetaData tmeta){
+    /**
+     * Method to evolve the schemas of a table in the event of a metadata 
+     * change.  The schemas are rebuilt from the current ones on the next 
+     * request for them, with the new metadata.
+     * @param tableName The fully qualified table name.
+     */
+    public void evolveSchema(String tableName){
+        while (true){
+            SchemaEntry entry = schemaMap.get(tableName);
+            if (entry == null){
+                return;
+            }
+            SchemaEntry evolved = entry.evolve();
+            if ((evolved == entry) || schemaMap.replace(tableName, entry, evolved)){
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Method to describe the settings that shape the generated schemas, part
+     * of the key of stored schemas.
+     * @return The settings description.
+     */
+    private String settingsDescription(){
+        if (settings == null){
+            StringBuilder sb = new StringBuilder();
+            sb.append("treatAllColumnsAsStrings=").append(treatAllColumnsAsStrings);
+            sb.append(",versionSchemas=").append(versionSchemas);
+            transforms.appendSummary(sb);
+            settings = sb.toString();
+        }
+        return settings;
+    }
+    
+    private Schema generateKeySchema(String tableName, TableMetaData tmeta, FieldPlan plan, Integer version){
         logger.info("Generating key schema for table [" + tableName +"].");
         Schema keySchema = null;
         if (tmeta.getNumKeyColumns() < 1){
             logger.info("The source table [" + tableName + "] contains no primary keys.  The key schema will be null.");
         }else{
             logger.info("The source table [" + tableName + "] contains one or more primary keys.");
-            SchemaBuilder builder = SchemaBuilder.struct().name(tableName + "_key");
-            for (int col = 0; col < tmeta.getNumColumns(); col++) {
-                ColumnMetaData cmeta = tmeta.getColumnMetaData(col);
-                if (cmeta.isKeyCol()){
-                    addFieldSchema(cmeta, builder);
+            SchemaBuilder builder = SchemaBuilder.struct().name(tableName + "_key").version(version);
+            for (int col = 0; col < plan.getNumColumns(); col++) {
+                ColumnPlan cplan = plan.getColumn(col);
+                if (cplan.isKeyCol()){
+                    builder.field(cplan.getFieldName(), cplan.getKeySchema());
                 }
             }
             //Key schema should be done
@@ -97,10 +276,9 @@ public class KafkaConnectSchemaGenerator {
         return keySchema;
     }
     
-    private Schema generatePayloadSchema(String tableName, TableMetaData tmeta) {
-        // TODO: Detect changes to metadata, which will require schema updates
+    private Schema generatePayloadSchema(String tableName, TableMetaData tmeta, FieldPlan plan, Integer version) {
         logger.info("Generating payload schema for table [" + tableName + "]");
-        SchemaBuilder builder = SchemaBuilder.struct().name(tableName);
+        SchemaBuilder builder = SchemaBuilder.struct().name(tableName).version(version);
 
         //Add a field for the table name
         builder.field("table", Schema.STRING_SCHEMA);
@@ -111,79 +289,19 @@ public class KafkaConnectSchemaGenerator {
         //An array field for primary key column names could be added here
         //A map field for token values from the source trail file could be added here.
 
-        for (int col = 0; col < tmeta.getNumColumns(); col++) {
-            ColumnMetaData cmeta = tmeta.getColumnMetaData(col);
-            addFieldSchema(cmeta, builder);
+        for (int col = 0; col < plan.getNumColumns(); col++) {
+            ColumnPlan cplan = plan.getColumn(col);
+            builder.field(cplan.getFieldName(), cplan.getPayloadSchema());
+        }
+        //Constant fields added by the transforms
+        for (int i = 0; i < plan.getNumAddedFields(); i++) {
+            builder.field(plan.getAddedFieldName(i), Schema.STRING_SCHEMA);
         }
         Schema schema = builder.build();
         
         return schema;
     }
     
-    private void addFieldSchema(ColumnMetaData cmeta, SchemaBuilder builder){    
-        String fieldName = cmeta.getColumnName();
-        
-        if (treatAllColumnsAsStrings){
-            //Treat it as a string
-            builder.field(fieldName, Schema.OPTIONAL_STRING_SCHEMA); 
-        }else{
-
-            DsType.GGType colType = cmeta.getDataType().getGGDataType();
-            //Variables are always optional
-            //if (metadata.getColumnMetaData(col).isNullable()) {
-                //Per Lego this always returns true.
-            //    optional = true;
-            //}
-            switch (colType) {
-                // Things that fit in signed short
-                case GG_16BIT_S: 
-                case GG_16BIT_U: 
-                case GG_32BIT_S: 
-                case GG_32BIT_U: 
-                case GG_64BIT_S: 
-                    if (cmeta.getDataType().getScale() > 0){
-                        builder.field(fieldName, Schema.OPTIONAL_FLOAT64_SCHEMA);
-                    }else{
-                        builder.field(fieldName, Schema.OPTIONAL_INT64_SCHEMA);
-                    }
-                    break;
-                case GG_64BIT_U:
-                    builder.field(fieldName, Schema.OPTIONAL_FLOAT64_SCHEMA);
-                    break;
-                // REAL is a single precision floating point value, i.e. a Java float
-                case GG_REAL: 
-                case GG_IEEE_REAL:
-                    builder.field(fieldName, Schema.OPTIONAL_FLOAT32_SCHEMA);
-                    break;
-                case GG_DOUBLE: 
-                case GG_IEEE_DOUBLE: 
-                case GG_DOUBLE_V:
-                case GG_DOUBLE_F:
-                case GG_DEC_U:
-                case GG_DEC_LSS:
-                case GG_DEC_LSE:
-                case GG_DEC_TSS:
-                case GG_DEC_TSE:
-                case GG_DEC_PACKED: 
-                    builder.field(fieldName, Schema.OPTIONAL_FLOAT64_SCHEMA);
-                    break;
-                case GG_ASCII_V:
-                case GG_ASCII_F:
-                    if (cmeta.getDataType().getGGDataSubType() == GG_SUBTYPE_FLOAT ||
-                            cmeta.getDataType().getGGDataSubType() == GG_SUBTYPE_FIXED_PREC) {
-                        // This is a number data, let's use Double for consistency.
-                        builder.field(fieldName, Schema.OPTIONAL_FLOAT64_SCHEMA);
-                    } else {
-                        builder.field(fieldName, Schema.OPTIONAL_STRING_SCHEMA);
-                    }
-                    break;
-                    // Default to strings for everything else
-                default: 
-                    builder.field(fieldName, Schema.OPTIONAL_STRING_SCHEMA);       
-            }
-        }
-    }
-    
     /**
      * A utility method to log the contents of a schema just for debugging.
      * @param s The schema to be logged.
@@ -208,4 +326,56 @@ public class KafkaConnectSchemaGenerator {
         }
     }
     
+    /**
+     * The cache entry of a table.  The schemas are built by the first thread
+     * to ask for them while any other thread asking at the same time waits.
+     * An entry created by a metadata change holds the previous schemas to
+     * evolve them from.
+     */
+    private class SchemaEntry {
+        private final KeyAndPayloadSchemas previous;
+        private final String[] previousColumns;
+        private volatile KeyAndPayloadSchemas schemas;
+        private String[] columns;
+        
+        SchemaEntry(){
+            this(null, null);
+        }
+        
+        SchemaEntry(KeyAndPayloadSchemas previous, String[] previousColumns){
+            this.previous = previous;
+            this.previousColumns = previousColumns;
+        }
+        
+        KeyAndPayloadSchemas get(String tableName, TableMetaData tmeta){
+            KeyAndPayloadSchemas result = schemas;
+            if (result == null){
+                synchronized (this){
+                    result = schemas;
+                    if (result == null){
+                        result = buildSchemas(tableName, tmeta, previous, previousColumns);
+                        //Snapshot the column names to diff against on the next change
+                        columns = new String[tmeta.getNumColumns()];
+                        for (int col = 0; col < columns.length; col++){
+                            columns[col] = tmeta.getColumnMetaData(col).getOriginalColumnName();
+                        }
+                        schemas = result;
+                    }
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Method to get the entry which replaces this one after a metadata
+         * change.
+         * @return The new entry, or this entry if it has not been built yet.
+         */
+        synchronized SchemaEntry evolve(){
+            if (schemas == null){
+                return this;
+            }
+            return new SchemaEntry(schemas, columns);
+        }
+    }
 }
@@ -8,13 +8,34 @@ package oracle.goldengate.kafkaconnect.formatter;
 import oracle.goldengate.common.data.Schema;
 
 /**
- * A storage class for the key and payload schemas.
+ * A storage class for the key and payload schemas and the field plan used to
+ * fill them.
  * @author tbcampbe
  */
 public class KeyAndPayloadSchemas {
     
+    final long generation;
     Schema keySchema;
     Schema payloadSchema;
+    FieldPlan fieldPlan;
+    
+    /**
+     * Constructor.
+     * @param generation The generation number of the schemas.
+     */
+    public KeyAndPayloadSchemas(long generation){
+        this.generation = generation;
+    }
+    
+    /**
+     * Method to get the generation number of the schemas.  A new generation
+     * is built every time the schemas of a table are rebuilt, for example
+     * after a metadata change.
+     * @return The generation number.
+     */
+    public long getGeneration(){
+        return generation;
+    }
     
     /**
      * Method to set the key schema.
@@ -47,4 +68,20 @@ public class KeyAndPayloadSchemas {
     public Schema getPayloadSchema(){
         return payloadSchema;
     }
+    
+    /**
+     * Method to set the field plan compiled with the schemas.
+     * @param plan The field plan.
+     */
+    public void setFieldPlan(FieldPlan plan){
+        fieldPlan = plan;
+    }
+    
+    /**
+     * Method to get the field plan compiled with the schemas.
+     * @return The field plan.
+     */
+    public FieldPlan getFieldPlan(){
+        return fieldPlan;
+    }
 }
@@ -0,0 +1,247 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded, least recently used cache of the last known after image of
+ * each row, keyed by table name and primary key.  Used by the formatter to
+ * fill in the unchanged columns of compressed updates so that full after
+ * images can be emitted without full supplemental logging on the source.
+ *
+ * Row images are held as a single compact byte array per row (UTF-8 column
+ * text with length prefixes) rather than as String objects, so the memory
+ * bound is enforced on the encoded size.
+ */
+public class LastImageCache {
+    //Length marker for a column whose value is null
+    private static final int NULL_VALUE = -1;
+    //Length marker for a column whose value is not known
+    private static final int UNKNOWN_VALUE = -2;
+    //Rough per entry overhead of the map entry, key string and array headers
+    private static final int ENTRY_OVERHEAD = 96;
+    //Separates the table name from the key values in the cache key
+    private static final char TABLE_SEPARATOR = '\u0001';
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> images;
+    private long usedBytes = 0;
+    private long numHits = 0;
+    private long numMisses = 0;
+    private long numEvictions = 0;
+
+    /**
+     * Create the cache.
+     * @param maxBytes The maximum encoded size of all cached row images.
+     */
+    public LastImageCache(long maxBytes){
+        this.maxBytes = maxBytes;
+        //Access ordered for LRU eviction
+        images = new LinkedHashMap<>(1024, 0.75f, true);
+    }
+
+    /**
+     * Method to get the last known image of a row.  Unknown column values are
+     * returned as null entries in the known array.
+     * @param tableName The fully qualified table name.
+     * @param key The primary key of the row.
+     * @param numColumns The number of columns in the table.
+     * @return The column values or null if the row is not cached.
+     */
+    public RowImage get(String tableName, String key, int numColumns){
+        byte[] encoded = images.get(cacheKey(tableName, key));
+        if (encoded == null){
+            numMisses++;
+            return null;
+        }
+        RowImage image = decode(encoded, numColumns);
+        if (image == null){
+            //The column layout changed underneath the cached image
+            remove(tableName, key);
+            numMisses++;
+            return null;
+        }
+        numHits++;
+        return image;
+    }
+
+    /**
+     * Method to store the current image of a row.
+     * @param tableName The fully qualified table name.
+     * @param key The primary key of the row.
+     * @param image The row image.
+     */
+    public void put(String tableName, String key, RowImage image){
+        String cacheKey = cacheKey(tableName, key);
+        byte[] encoded = encode(image);
+        byte[] previous = images.put(cacheKey, encoded);
+        if (previous != null){
+            usedBytes -= entrySize(cacheKey, previous);
+        }
+        usedBytes += entrySize(cacheKey, encoded);
+        evict();
+    }
+
+    /**
+     * Method to remove a row, for example when it is deleted.
+     * @param tableName The fully qualified table name.
+     * @param key The primary key of the row.
+     */
+    public void remove(String tableName, String key){
+        String cacheKey = cacheKey(tableName, key);
+        byte[] previous = images.remove(cacheKey);
+        if (previous != null){
+            usedBytes -= entrySize(cacheKey, previous);
+        }
+    }
+
+    /**
+     * Method to drop all cached rows of a table, for example when the table
+     * metadata has changed.
+     * @param tableName The fully qualified table name.
+     */
+    public void dropTable(String tableName){
+        String prefix = tableName + TABLE_SEPARATOR;
+        Iterator<Map.Entry<String, byte[]>> it = images.entrySet().iterator();
+        while (it.hasNext()){
+            Map.Entry<String, byte[]> entry = it.next();
+            if (entry.getKey().startsWith(prefix)){
+                usedBytes -= entrySize(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Method to get the number of lookups that found a cached row image.
+     * @return The number of cache hits.
+     */
+    public long getNumHits(){
+        return numHits;
+    }
+
+    /**
+     * Method to get the number of lookups that did not find a cached row image.
+     * @return The number of cache misses.
+     */
+    public long getNumMisses(){
+        return numMisses;
+    }
+
+    /**
+     * Method to get the number of row images evicted to stay within the
+     * memory bound.
+     * @return The number of evictions.
+     */
+    public long getNumEvictions(){
+        return numEvictions;
+    }
+
+    /**
+     * Method to get the number of row images currently cached.
+     * @return The number of cached rows.
+     */
+    public int getNumEntries(){
+        return images.size();
+    }
+
+    /**
+     * Method to get the approximate memory used by the cached row images.
+     * @return The memory used in bytes.
+     */
+    public long getUsedBytes(){
+        return usedBytes;
+    }
+
+    /**
+     * Method to get the memory bound of the cache.
+     * @return The maximum memory in bytes.
+     */
+    public long getMaxBytes(){
+        return maxBytes;
+    }
+
+    private void evict(){
+        Iterator<Map.Entry<String, byte[]>> it = images.entrySet().iterator();
+        while ((usedBytes > maxBytes) && it.hasNext()){
+            Map.Entry<String, byte[]> eldest = it.next();
+            usedBytes -= entrySize(eldest.getKey(), eldest.getValue());
+            it.remove();
+            numEvictions++;
+        }
+    }
+
+    private static String cacheKey(String tableName, String key){
+        return tableName + TABLE_SEPARATOR + key;
+    }
+
+    private static long entrySize(String cacheKey, byte[] encoded){
+        return ENTRY_OVERHEAD + (2L * cacheKey.length()) + encoded.length;
+    }
+
+    private static byte[] encode(RowImage image){
+        int numColumns = image.getNumColumns();
+        byte[][] columns = new byte[numColumns][];
+        int size = 4;
+        for (int i = 0; i < numColumns; i++){
+            if (image.isKnown(i) && (image.getValue(i) != null)){
+                columns[i] = image.getValue(i).getBytes(StandardCharsets.UTF_8);
+                size += columns[i].length;
+            }
+            size += 4;
+        }
+        byte[] encoded = new byte[size];
+        int pos = writeInt(encoded, 0, numColumns);
+        for (int i = 0; i < numColumns; i++){
+            if (!image.isKnown(i)){
+                pos = writeInt(encoded, pos, UNKNOWN_VALUE);
+            }else if (columns[i] == null){
+                pos = writeInt(encoded, pos, NULL_VALUE);
+            }else{
+                pos = writeInt(encoded, pos, columns[i].length);
+                System.arraycopy(columns[i], 0, encoded, pos, columns[i].length);
+                pos += columns[i].length;
+            }
+        }
+        return encoded;
+    }
+
+    private static RowImage decode(byte[] encoded, int numColumns){
+        if (readInt(encoded, 0) != numColumns){
+            return null;
+        }
+        RowImage image = new RowImage(numColumns);
+        int pos = 4;
+        for (int i = 0; i < numColumns; i++){
+            int len = readInt(encoded, pos);
+            pos += 4;
+            if (len == NULL_VALUE){
+                image.setValue(i, null);
+            }else if (len >= 0){
+                image.setValue(i, new String(encoded, pos, len, StandardCharsets.UTF_8));
+                pos += len;
+            }
+        }
+        return image;
+    }
+
+    private static int writeInt(byte[] b, int pos, int v){
+        b[pos] = (byte)(v >>> 24);
+        b[pos + 1] = (byte)(v >>> 16);
+        b[pos + 2] = (byte)(v >>> 8);
+        b[pos + 3] = (byte)v;
+        return pos + 4;
+    }
+
+    private static int readInt(byte[] b, int pos){
+        return ((b[pos] & 0xff) << 24) | ((b[pos + 1] & 0xff) << 16)
+                | ((b[pos + 2] & 0xff) << 8) | (b[pos + 3] & 0xff);
+    }
+}
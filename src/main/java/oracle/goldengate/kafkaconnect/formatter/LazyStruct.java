@@ -0,0 +1,92 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.util.Arrays;
+import java.util.List;
+
+import oracle.goldengate.common.data.Field;
+import oracle.goldengate.common.data.RawTextValues;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.Struct;
+
+/**
+ * A struct which holds column values as the text taken from the operation
+ * columns together with their column plan, and converts a value only when it
+ * is read.  String columns are never converted, converters read their text
+ * through {@link RawTextValues}.  Values put through the regular struct API
+ * are stored as usual.
+ */
+public class LazyStruct extends Struct implements RawTextValues {
+    private final List<Field> fields;
+    private final boolean key;
+    private final String[] texts;
+    private final ColumnPlan[] plans;
+
+    /**
+     * Create a lazy struct.
+     * @param schema The key or payload schema.
+     * @param key True if this is a key struct, false for a payload struct.
+     */
+    public LazyStruct(Schema schema, boolean key){
+        super(schema);
+        this.fields = schema.fields();
+        this.key = key;
+        this.texts = new String[fields.size()];
+        this.plans = new ColumnPlan[fields.size()];
+    }
+
+    /**
+     * Method to put the text of a column value, converted on first read.
+     * @param index The field index.
+     * @param cPlan The column plan.
+     * @param text The column value as text, not null.
+     */
+    public void putText(int index, ColumnPlan cPlan, String text){
+        checkLive();
+        super.setRawValue(fields.get(index), null);
+        texts[index] = text;
+        plans[index] = cPlan;
+    }
+
+    @Override
+    public String rawText(int index){
+        checkLive();
+        String text = texts[index];
+        if ((text == null) || (plans[index].getKind() != ColumnPlan.ValueKind.STRING)){
+            return null;
+        }
+        return (!key && plans[index].isMasked()) ? ColumnPlan.MASK : text;
+    }
+
+    @Override
+    public void reset(){
+        super.reset();
+        Arrays.fill(texts, null);
+        Arrays.fill(plans, null);
+    }
+
+    @Override
+    protected Object rawValue(int index){
+        String text = texts[index];
+        if (text == null){
+            return super.rawValue(index);
+        }
+        //Convert once and keep the converted value
+        Object value = key ? plans[index].toKeyValue(text) : plans[index].toPayloadValue(text);
+        super.setRawValue(fields.get(index), value);
+        texts[index] = null;
+        plans[index] = null;
+        return value;
+    }
+
+    @Override
+    protected void setRawValue(Field field, Object value){
+        texts[field.index()] = null;
+        plans[field.index()] = null;
+        super.setRawValue(field, value);
+    }
+}
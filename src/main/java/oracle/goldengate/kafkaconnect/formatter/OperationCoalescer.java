@@ -0,0 +1,170 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import oracle.goldengate.common.data.Struct;
+import oracle.goldengate.datasource.DsOperation;
+import oracle.goldengate.datasource.meta.DsMetaData;
+import oracle.goldengate.datasource.meta.TableMetaData;
+
+/**
+ * Merges consecutive operations on the same primary key before formatting so
+ * that intermediate row images are not formatted, serialized and sent.
+ * insert + update becomes an insert, update + update becomes an update, 
+ * update + delete becomes a delete and insert + delete is dropped.  Any other
+ * sequence is left as is.  Primary key updates and operations on tables
+ * without a primary key are never merged.
+ * 
+ * Only operations which directly follow each other in the transaction are
+ * merged, any operation on another row ends the run of a row.  Merging
+ * across an operation on another row would move the changes of the row
+ * before or after it, and consumers could see a child row before the parent
+ * row it references.  The surviving operations are therefore always in
+ * transaction order.
+ */
+public class OperationCoalescer {
+    //Output slot of an insert followed by a delete, which cancel each other
+    static final int DROPPED = -1;
+
+    private final KafkaConnectFormatter formatter;
+
+    /**
+     * Create the coalescer.
+     * @param formatter The formatter used to generate the key structs.
+     */
+    public OperationCoalescer(KafkaConnectFormatter formatter){
+        this.formatter = formatter;
+    }
+
+    /**
+     * Method to coalesce the operations of a transaction.
+     * @param ops The operations in transaction order.
+     * @param metaData The metadata object.
+     * @return The surviving operations in transaction order.
+     */
+    public List<CoalescedOperation> coalesce(Iterable<DsOperation> ops, DsMetaData metaData){
+        List<DsOperation> operations = new ArrayList<>();
+        List<TableMetaData> tables = new ArrayList<>();
+        List<Struct> keys = new ArrayList<>();
+        List<DsOperation.OpType> types = new ArrayList<>();
+        for (DsOperation op : ops){
+            TableMetaData tMeta = metaData.getTableMetaData(op.getTableName());
+            DsOperation.OpType type = op.getOperationType();
+            Struct key = null;
+            if ((tMeta.getNumKeyColumns() > 0) && !type.isPkUpdate()
+                    && (type.isInsert() || type.isUpdate() || type.isDelete())){
+                key = formatter.formatKey(op, tMeta);
+            }
+            operations.add(op);
+            tables.add(tMeta);
+            keys.add(key);
+            types.add(type);
+        }
+
+        int[] slots = assignSlots(keys, types);
+        List<CoalescedOperation> output = new ArrayList<>();
+        for (int i = 0; i < slots.length; i++){
+            DsOperation op = operations.get(i);
+            TableMetaData tMeta = tables.get(i);
+            if (slots[i] == DROPPED){
+                continue;
+            }
+            if (slots[i] == output.size()){
+                output.add(new CoalescedOperation(op, tMeta, types.get(i), null));
+                continue;
+            }
+            //Merge into the surviving operation of the row
+            CoalescedOperation previous = output.get(slots[i]);
+            DsOperation.OpType type = mergedType(previous.getOpType(), types.get(i));
+            RowImage priorImage = type.isDelete() ? null : imageOf(previous);
+            output.set(slots[i], new CoalescedOperation(op, tMeta, type, priorImage));
+        }
+        return output;
+    }
+
+    /**
+     * Method to assign the operations of a transaction to output slots.  An
+     * operation is merged into the slot of the operation directly before it
+     * if both change the same row and the pair can be merged, else it gets
+     * the next slot.  Slots are assigned in increasing order, so the output
+     * keeps the transaction order.
+     * @param keys The row key of each operation, null if not mergeable.
+     * @param types The type of each operation.
+     * @return The output slot of each operation, or DROPPED.
+     */
+    static int[] assignSlots(List<Struct> keys, List<DsOperation.OpType> types){
+        int[] slots = new int[keys.size()];
+        int nextSlot = 0;
+        //The row and output type of the last slot, while it can be merged into
+        Struct runKey = null;
+        DsOperation.OpType runType = null;
+        for (int i = 0; i < slots.length; i++){
+            Struct key = keys.get(i);
+            DsOperation.OpType type = types.get(i);
+            if ((key != null) && key.equals(runKey)){
+                if (runType.isInsert() && type.isDelete()){
+                    //The insert and the delete cancel each other
+                    for (int j = i - 1; (j >= 0) && (slots[j] == nextSlot - 1); j--){
+                        slots[j] = DROPPED;
+                    }
+                    slots[i] = DROPPED;
+                    nextSlot--;
+                    runKey = null;
+                    continue;
+                }
+                DsOperation.OpType merged = mergedType(runType, type);
+                if (merged != null){
+                    slots[i] = nextSlot - 1;
+                    runType = merged;
+                    continue;
+                }
+            }
+            slots[i] = nextSlot++;
+            runKey = key;
+            runType = type;
+        }
+        return slots;
+    }
+
+    /**
+     * Method to get the type of an operation merged into the surviving
+     * operation of a row.
+     * @param prevType The type of the surviving operation.
+     * @param type The type of the new operation.
+     * @return The merged type, or null if the operations cannot be merged.
+     */
+    static DsOperation.OpType mergedType(DsOperation.OpType prevType, DsOperation.OpType type){
+        if (type.isUpdate()){
+            if (prevType.isInsert()){
+                return prevType;
+            }else if (prevType.isUpdate()){
+                return type;
+            }
+        }else if (type.isDelete() && prevType.isUpdate()){
+            return type;
+        }
+        return null;
+    }
+
+    /**
+     * Method to get the after image of a pending operation including the
+     * images of the operations it replaced.
+     * @param cop The pending operation.
+     * @return The merged after image.
+     */
+    private RowImage imageOf(CoalescedOperation cop){
+        int numColumns = cop.getTableMetaData().getNumColumns();
+        RowImage image = cop.getPriorImage();
+        if (image == null){
+            image = new RowImage(numColumns);
+        }
+        image.overlay(RowImage.afterImage(cop.getOperation(), numColumns));
+        return image;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import oracle.goldengate.datasource.DsColumn;
+import oracle.goldengate.datasource.DsOperation;
+
+/**
+ * The column values of a row as the text received from the trail file, by
+ * column index.  A column may be unknown, for example an unchanged column
+ * omitted from a compressed update, which is different from a known null
+ * value.
+ */
+public class RowImage {
+    private final String[] values;
+    private final boolean[] known;
+
+    /**
+     * Create a row image with all columns unknown.
+     * @param numColumns The number of columns in the table.
+     */
+    public RowImage(int numColumns){
+        values = new String[numColumns];
+        known = new boolean[numColumns];
+    }
+
+    /**
+     * Create a row image from the after values of an operation.  Columns
+     * missing from the after image, as in compressed updates, are unknown.
+     * @param op The operation.
+     * @param numColumns The number of columns in the table.
+     * @return The after image.
+     */
+    public static RowImage afterImage(DsOperation op, int numColumns){
+        RowImage image = new RowImage(numColumns);
+        int cIndex = 0;
+        for (DsColumn col : op.getColumns()){
+            DsColumn afterCol = col.getAfter();
+            if ((afterCol != null)&&(cIndex < numColumns)){
+                image.setValue(cIndex, afterCol.isValueNull() ? null : afterCol.getValue());
+            }
+            cIndex++;
+        }
+        return image;
+    }
+    
+    /**
+     * Method to get the number of columns.
+     * @return The number of columns.
+     */
+    public int getNumColumns(){
+        return values.length;
+    }
+
+    /**
+     * Method to check if the value of a column is known.
+     * @param index The column index.
+     * @return True if the column value is known, else false.
+     */
+    public boolean isKnown(int index){
+        return known[index];
+    }
+
+    /**
+     * Method to get the value of a column.
+     * @param index The column index.
+     * @return The column value, null if the value is null or unknown.
+     */
+    public String getValue(int index){
+        return values[index];
+    }
+
+    /**
+     * Method to set the value of a column and mark it as known.
+     * @param index The column index.
+     * @param value The column value, may be null.
+     */
+    public void setValue(int index, String value){
+        values[index] = value;
+        known[index] = true;
+    }
+
+    /**
+     * Method to copy the known columns of another image over the columns of
+     * this image.
+     * @param other The newer row image.
+     */
+    public void overlay(RowImage other){
+        int numColumns = Math.min(values.length, other.values.length);
+        for (int i = 0; i < numColumns; i++){
+            if (other.known[i]){
+                values[i] = other.values[i];
+                known[i] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import oracle.goldengate.common.data.ConnectSchema;
+import oracle.goldengate.common.data.Field;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaBuilder;
+import oracle.goldengate.datasource.meta.ColumnMetaData;
+import oracle.goldengate.datasource.meta.DsType;
+import oracle.goldengate.datasource.meta.TableMetaData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local file of the generated key and payload schemas and field plans of
+ * every table, so that a restarted process does not have to rebuild them.
+ * Each entry is keyed by the table name and a hash of the table metadata and
+ * the formatter settings that shape the schemas, so an entry is only used if
+ * it was generated from the same metadata with the same settings.  The hash
+ * only selects the entry; a hash collision cannot select wrong schemas
+ * because every decoded entry is also checked against the current columns.
+ *
+ * The file is memory mapped when it is opened.  Only the small index of table
+ * names is read up front; the schemas of a table are decoded on its first
+ * use, checked against their stored fingerprints and validated against the
+ * current table metadata: the column count and, for each column, its
+ * original name, value kind and primary key flag must match the stored field
+ * plan, else the schemas are regenerated.  The file is rewritten
+ * as a whole, to a temporary file which then replaces it, when new schemas
+ * have been generated.
+ */
+public class SchemaStore {
+    private static final Logger logger=LoggerFactory.getLogger(SchemaStore.class);
+    //File format marker and version.  Version 2 writes the schema types and
+    //value kinds by name instead of by enum ordinal.  Version 3 adds the
+    //original column names to validate an entry against the table metadata.
+    private static final int MAGIC = 0x47475353;
+    private static final int FORMAT_VERSION = 3;
+
+    private final File file;
+    //The stored entries of the mapped file, by table name
+    private final Map<String, StoredEntry> stored = new HashMap<>();
+    //Entries generated since the file was opened, by table name
+    private final Map<String, StoredEntry> generated = new HashMap<>();
+    private ByteBuffer mapped;
+    private boolean dirty = false;
+    private long numLoaded = 0;
+
+    /**
+     * Create the store.
+     * @param file The store file.
+     */
+    public SchemaStore(File file){
+        this.file = file;
+    }
+
+    /**
+     * Method to open the store file and read its index.  A missing or
+     * unreadable file is treated as an empty store.
+     */
+    public synchronized void open(){
+        if (!file.exists()){
+            logger.info("The schema store file [" + file + "] does not exist yet.  Schemas will be generated on first use.");
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if ((buffer.remaining() < 12) || (buffer.getInt() != MAGIC) || (buffer.getInt() != FORMAT_VERSION)){
+                logger.warn("The schema store file [" + file + "] is not a valid schema store.  It will be rewritten.");
+                return;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++){
+                StoredEntry entry = new StoredEntry();
+                String tableName = readString(buffer);
+                entry.metadataHash = buffer.getLong();
+                entry.offset = buffer.getInt();
+                entry.length = buffer.getInt();
+                stored.put(tableName, entry);
+            }
+            mapped = buffer;
+            logger.info("Opened the schema store file [" + file + "] with the schemas of [" + count + "] tables.");
+        }catch(IOException | RuntimeException e){
+            logger.warn("Failed to read the schema store file [" + file + "].  It will be rewritten.", e);
+            stored.clear();
+            mapped = null;
+        }
+    }
+
+    /**
+     * Method to get the stored schemas of a table.
+     * @param tableName The fully qualified table name.
+     * @param tmeta The current table metadata.
+     * @param allColumnsAsStrings True if all columns are treated as strings.
+     * @param metadataHash The hash of the current metadata and settings.
+     * @param generation The generation number for the loaded schemas.
+     * @return The schemas or null if not stored for this metadata.
+     */
+    public KeyAndPayloadSchemas load(String tableName, TableMetaData tmeta, boolean allColumnsAsStrings,
+            long metadataHash, long generation){
+        return load(tableName, TableColumns.of(tmeta, allColumnsAsStrings), metadataHash, generation);
+    }
+
+    synchronized KeyAndPayloadSchemas load(String tableName, TableColumns columns, long metadataHash, long generation){
+        StoredEntry entry = generated.get(tableName);
+        if (entry == null){
+            entry = stored.get(tableName);
+        }
+        if ((entry == null) || (entry.metadataHash != metadataHash)){
+            return null;
+        }
+        try {
+            ByteBuffer buffer = entryBuffer(entry);
+            KeyAndPayloadSchemas schemas = decode(buffer, generation);
+            String mismatch = columns.mismatch(schemas.getFieldPlan(), readColumnNames(buffer));
+            if (mismatch != null){
+                logger.warn("The stored schemas of table [" + tableName + "] do not match the table metadata, "
+                        + mismatch + ".  They will be regenerated.");
+                return null;
+            }
+            numLoaded++;
+            return schemas;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load the stored schemas of table [" + tableName + "].  They will be regenerated.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Method to add newly generated schemas to the store.
+     * @param tableName The fully qualified table name.
+     * @param tmeta The table metadata the schemas were generated from.
+     * @param metadataHash The hash of the metadata and settings.
+     * @param schemas The schemas.
+     */
+    public void save(String tableName, TableMetaData tmeta, long metadataHash, KeyAndPayloadSchemas schemas){
+        String[] columnNames = new String[tmeta.getNumColumns()];
+        for (int col = 0; col < columnNames.length; col++){
+            columnNames[col] = tmeta.getColumnMetaData(col).getOriginalColumnName();
+        }
+        save(tableName, columnNames, metadataHash, schemas);
+    }
+
+    synchronized void save(String tableName, String[] columnNames, long metadataHash, KeyAndPayloadSchemas schemas){
+        byte[] encoded = encode(schemas, columnNames);
+        if (encoded == null){
+            return;
+        }
+        StoredEntry entry = new StoredEntry();
+        entry.metadataHash = metadataHash;
+        entry.data = encoded;
+        entry.length = encoded.length;
+        generated.put(tableName, entry);
+        dirty = true;
+    }
+
+    /**
+     * Method to check if schemas have been generated since the file was
+     * last written.
+     * @return True if the file needs to be written, else false.
+     */
+    public synchronized boolean isDirty(){
+        return dirty;
+    }
+
+    /**
+     * Method to get the number of tables whose schemas were loaded from the
+     * store instead of generated.
+     * @return The number of loaded tables.
+     */
+    public synchronized long getNumLoaded(){
+        return numLoaded;
+    }
+
+    /**
+     * Method to write the store file if new schemas have been generated.
+     */
+    public synchronized void write(){
+        if (!dirty){
+            return;
+        }
+        Map<String, StoredEntry> entries = new HashMap<>(stored);
+        entries.putAll(generated);
+        List<String> tableNames = new ArrayList<>(entries.keySet());
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(index);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(tableNames.size());
+            int indexSize = 12;
+            for (String tableName : tableNames){
+                indexSize += 4 + tableName.getBytes(StandardCharsets.UTF_8).length + 16;
+            }
+            int offset = indexSize;
+            for (String tableName : tableNames){
+                StoredEntry entry = entries.get(tableName);
+                writeString(out, tableName);
+                out.writeLong(entry.metadataHash);
+                out.writeInt(offset);
+                out.writeInt(entry.length);
+                offset += entry.length;
+            }
+            out.flush();
+            try (OutputStream fos = new FileOutputStream(tmp)){
+                index.writeTo(fos);
+                for (String tableName : tableNames){
+                    StoredEntry entry = entries.get(tableName);
+                    if (entry.data == null){
+                        //Copy out of the mapping, which is released below
+                        byte[] bytes = new byte[entry.length];
+                        entryBuffer(entry).get(bytes);
+                        entry.data = bytes;
+                    }
+                    fos.write(entry.data);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            stored.putAll(generated);
+            generated.clear();
+            mapped = null;
+            dirty = false;
+            logger.info("Wrote the schemas of [" + tableNames.size() + "] tables to the schema store file [" + file + "].");
+        } catch (IOException e) {
+            logger.warn("Failed to write the schema store file [" + file + "].", e);
+        }
+    }
+
+    /**
+     * Method to compute the hash of the table metadata and the settings which
+     * determine the generated schemas.
+     * @param tmeta The table metadata.
+     * @param settings A description of the settings.
+     * @return The metadata hash.
+     */
+    public static long metadataHash(TableMetaData tmeta, String settings){
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, settings);
+        h = mix(h, tmeta.getNumColumns());
+        for (int col = 0; col < tmeta.getNumColumns(); col++){
+            ColumnMetaData cmeta = tmeta.getColumnMetaData(col);
+            DsType type = cmeta.getDataType();
+            h = mix(h, cmeta.getColumnName());
+            h = mix(h, cmeta.getOriginalColumnName());
+            h = mix(h, cmeta.isKeyCol() ? 1 : 2);
+            h = mix(h, type.getGGDataType().name());
+            h = mix(h, (type.getGGDataSubType() == null) ? "" : type.getGGDataSubType().name());
+            h = mix(h, type.getScale());
+        }
+        return h;
+    }
+
+    /**
+     * Method to mix a string into a hash, byte by byte so that strings with
+     * equal hash codes such as Aa and BB still hash differently.  The length
+     * comes first so that consecutive strings cannot run into each other.
+     */
+    static long mix(long h, String value){
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        h = mix(h, bytes.length);
+        for (byte b : bytes){
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value){
+        return (h ^ value) * 0x100000001b3L;
+    }
+
+    private ByteBuffer entryBuffer(StoredEntry entry){
+        if (entry.data != null){
+            return ByteBuffer.wrap(entry.data);
+        }
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position(entry.offset);
+        buffer.limit(entry.offset + entry.length);
+        return buffer.slice();
+    }
+
+    private static byte[] encode(KeyAndPayloadSchemas schemas, String[] columnNames){
+        Schema keySchema = schemas.getKeySchema();
+        if (!isStorable(keySchema) || !isStorable(schemas.getPayloadSchema())){
+            logger.debug("The schemas cannot be stored because they have default values.");
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeBoolean(keySchema != null);
+            if (keySchema != null){
+                out.writeLong(ConnectSchema.fingerprint(keySchema));
+                writeSchema(out, keySchema);
+            }
+            out.writeLong(ConnectSchema.fingerprint(schemas.getPayloadSchema()));
+            writeSchema(out, schemas.getPayloadSchema());
+            writePlan(out, schemas.getFieldPlan());
+            out.writeInt(columnNames.length);
+            for (String columnName : columnNames){
+                writeString(out, columnName);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            logger.debug("The schemas cannot be stored.", e);
+            return null;
+        }
+    }
+
+    private static KeyAndPayloadSchemas decode(ByteBuffer in, long generation){
+        KeyAndPayloadSchemas schemas = new KeyAndPayloadSchemas(generation);
+        Schema keySchema = null;
+        if (in.get() != 0){
+            long fingerprint = in.getLong();
+            keySchema = readSchema(in);
+            checkFingerprint(keySchema, fingerprint);
+        }
+        long fingerprint = in.getLong();
+        Schema payloadSchema = readSchema(in);
+        checkFingerprint(payloadSchema, fingerprint);
+        FieldPlan plan = readPlan(in);
+        plan.bind(keySchema, payloadSchema);
+        schemas.setKeySchema(keySchema);
+        schemas.setPayloadSchema(payloadSchema);
+        schemas.setFieldPlan(plan);
+        return schemas;
+    }
+
+    private static void checkFingerprint(Schema schema, long fingerprint){
+        if (ConnectSchema.fingerprint(schema) != fingerprint){
+            throw new IllegalStateException("The stored schema [" + schema.name() + "] does not match its fingerprint.");
+        }
+    }
+
+    /**
+     * Method to check if a schema can be stored.  Default values are not
+     * stored, so schemas which have them anywhere are regenerated instead.
+     * @param schema The schema, may be null.
+     * @return True if the schema can be stored, else false.
+     */
+    private static boolean isStorable(Schema schema){
+        if (schema == null){
+            return true;
+        }
+        if (schema.defaultValue() != null){
+            return false;
+        }
+        switch (schema.type()){
+            case STRUCT:
+                for (Field field : schema.fields()){
+                    if (!isStorable(field.schema())){
+                        return false;
+                    }
+                }
+                return true;
+            case MAP:
+                return isStorable(schema.keySchema()) && isStorable(schema.valueSchema());
+            case ARRAY:
+                return isStorable(schema.valueSchema());
+            default:
+                return true;
+        }
+    }
+
+    private static void writeSchema(DataOutputStream out, Schema schema) throws IOException {
+        writeString(out, schema.type().name());
+        out.writeBoolean(schema.isOptional());
+        writeNullableString(out, schema.name());
+        out.writeInt((schema.version() == null) ? -1 : schema.version());
+        writeNullableString(out, schema.doc());
+        Map<String, String> parameters = schema.parameters();
+        out.writeInt((parameters == null) ? -1 : parameters.size());
+        if (parameters != null){
+            for (Map.Entry<String, String> parameter : parameters.entrySet()){
+                writeString(out, parameter.getKey());
+                writeNullableString(out, parameter.getValue());
+            }
+        }
+        switch (schema.type()){
+            case STRUCT:
+                out.writeInt(schema.fields().size());
+                for (Field field : schema.fields()){
+                    writeString(out, field.name());
+                    writeSchema(out, field.schema());
+                }
+                break;
+            case MAP:
+                writeSchema(out, schema.keySchema());
+                writeSchema(out, schema.valueSchema());
+                break;
+            case ARRAY:
+                writeSchema(out, schema.valueSchema());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Schema readSchema(ByteBuffer in){
+        Schema.Type type = Schema.Type.valueOf(readString(in));
+        boolean optional = in.get() != 0;
+        String name = readNullableString(in);
+        int version = in.getInt();
+        String doc = readNullableString(in);
+        Map<String, String> parameters = null;
+        int numParameters = in.getInt();
+        if (numParameters >= 0){
+            parameters = new HashMap<>();
+            for (int i = 0; i < numParameters; i++){
+                parameters.put(readString(in), readNullableString(in));
+            }
+        }
+        SchemaBuilder builder;
+        switch (type){
+            case STRUCT:
+                builder = SchemaBuilder.struct();
+                int numFields = in.getInt();
+                for (int i = 0; i < numFields; i++){
+                    String fieldName = readString(in);
+                    builder.field(fieldName, readSchema(in));
+                }
+                break;
+            case MAP:
+                Schema keySchema = readSchema(in);
+                builder = SchemaBuilder.map(keySchema, readSchema(in));
+                break;
+            case ARRAY:
+                builder = SchemaBuilder.array(readSchema(in));
+                break;
+            default:
+                builder = SchemaBuilder.type(type);
+                break;
+        }
+        if (optional){
+            builder.optional();
+        }
+        if (name != null){
+            builder.name(name);
+        }
+        if (version >= 0){
+            builder.version(version);
+        }
+        if (doc != null){
+            builder.doc(doc);
+        }
+        if (parameters != null){
+            builder.parameters(parameters);
+        }
+        return builder.build();
+    }
+
+    private static void writePlan(DataOutputStream out, FieldPlan plan) throws IOException {
+        out.writeInt(plan.getNumColumns());
+        for (int i = 0; i < plan.getNumColumns(); i++){
+            ColumnPlan column = plan.getColumn(i);
+            out.writeInt(column.getColumnIndex());
+            writeString(out, column.getFieldName());
+            writeString(out, column.getKind().name());
+            out.writeBoolean(column.isMasked());
+            out.writeBoolean(column.isKeyCol());
+        }
+        out.writeInt(plan.getNumAddedFields());
+        for (int i = 0; i < plan.getNumAddedFields(); i++){
+            writeString(out, plan.getAddedFieldName(i));
+            writeString(out, plan.getAddedFieldValue(i));
+        }
+        writeNullableString(out, plan.getRouteFieldName());
+    }
+
+    private static FieldPlan readPlan(ByteBuffer in){
+        ColumnPlan[] columns = new ColumnPlan[in.getInt()];
+        for (int i = 0; i < columns.length; i++){
+            int columnIndex = in.getInt();
+            String fieldName = readString(in);
+            ColumnPlan.ValueKind kind = ColumnPlan.ValueKind.valueOf(readString(in));
+            boolean masked = in.get() != 0;
+            boolean keyCol = in.get() != 0;
+            columns[i] = new ColumnPlan(columnIndex, fieldName, kind, masked, keyCol);
+        }
+        int numAdded = in.getInt();
+        List<String[]> addedFields = new ArrayList<>(numAdded);
+        for (int i = 0; i < numAdded; i++){
+            String fieldName = readString(in);
+            addedFields.add(new String[] {fieldName, readString(in)});
+        }
+        return new FieldPlan(columns, addedFields, readNullableString(in));
+    }
+
+    private static String[] readColumnNames(ByteBuffer in){
+        String[] columnNames = new String[in.getInt()];
+        for (int i = 0; i < columnNames.length; i++){
+            columnNames[i] = readString(in);
+        }
+        return columnNames;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        if (value == null){
+            out.writeInt(-1);
+        }else{
+            writeString(out, value);
+        }
+    }
+
+    private static String readString(ByteBuffer in){
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readNullableString(ByteBuffer in){
+        int length = in.getInt(in.position());
+        if (length < 0){
+            in.getInt();
+            return null;
+        }
+        return readString(in);
+    }
+
+    /**
+     * The location or the content of the stored schemas of a table.
+     */
+    private static class StoredEntry {
+        private long metadataHash;
+        private int offset;
+        private int length;
+        //The encoded schemas if not in the mapped file
+        private byte[] data;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import oracle.goldengate.datasource.meta.ColumnMetaData;
+import oracle.goldengate.datasource.meta.TableMetaData;
+
+/**
+ * The columns of a table as they determine its field plan: the original
+ * name, the value kind and the primary key flag of each column.  Used to
+ * check a stored field plan against the table metadata and to diff the
+ * columns of a table when its metadata changes.
+ */
+class TableColumns {
+    private final String[] names;
+    private final ColumnPlan.ValueKind[] kinds;
+    private final boolean[] keyCols;
+
+    /**
+     * Create the columns.
+     * @param names The original column names.
+     * @param kinds The value kind of each column.
+     * @param keyCols The primary key flag of each column.
+     */
+    TableColumns(String[] names, ColumnPlan.ValueKind[] kinds, boolean[] keyCols){
+        this.names = names;
+        this.kinds = kinds;
+        this.keyCols = keyCols;
+    }
+
+    /**
+     * Method to get the columns of a table.
+     * @param tmeta The table metadata.
+     * @param allColumnsAsStrings True if all columns are treated as strings.
+     * @return The columns.
+     */
+    static TableColumns of(TableMetaData tmeta, boolean allColumnsAsStrings){
+        int numColumns = tmeta.getNumColumns();
+        String[] names = new String[numColumns];
+        ColumnPlan.ValueKind[] kinds = new ColumnPlan.ValueKind[numColumns];
+        boolean[] keyCols = new boolean[numColumns];
+        for (int col = 0; col < numColumns; col++){
+            ColumnMetaData cmeta = tmeta.getColumnMetaData(col);
+            names[col] = cmeta.getOriginalColumnName();
+            kinds[col] = ColumnPlan.kindOf(cmeta, allColumnsAsStrings);
+            keyCols[col] = cmeta.isKeyCol();
+        }
+        return new TableColumns(names, kinds, keyCols);
+    }
+
+    /**
+     * Method to get the number of columns.
+     * @return The number of columns.
+     */
+    int size(){
+        return names.length;
+    }
+
+    /**
+     * Method to get the original name of a column.
+     * @param col The column index.
+     * @return The column name.
+     */
+    String getName(int col){
+        return names[col];
+    }
+
+    /**
+     * Method to check if a column is planned as a column of a field plan,
+     * with the same value kind and primary key flag.
+     * @param col The column index.
+     * @param column The column of the field plan.
+     * @return True if the plan of the column still applies, else false.
+     */
+    boolean matches(int col, ColumnPlan column){
+        return (column.getKind() == kinds[col]) && (column.isKeyCol() == keyCols[col]);
+    }
+
+    /**
+     * Method to compare these columns with a stored field plan.
+     * @param plan The stored field plan.
+     * @param storedNames The stored original column names.
+     * @return A description of the first difference, or null if the plan
+     * was generated from these columns.
+     */
+    String mismatch(FieldPlan plan, String[] storedNames){
+        if ((plan.getNumColumns() != names.length) || (storedNames.length != names.length)){
+            return "the table has [" + names.length + "] columns, the stored plan ["
+                    + plan.getNumColumns() + "]";
+        }
+        for (int col = 0; col < names.length; col++){
+            ColumnPlan column = plan.getColumn(col);
+            if (!names[col].equals(storedNames[col])){
+                return "column [" + col + "] is [" + names[col] + "], stored as [" + storedNames[col] + "]";
+            }
+            if ((column.getColumnIndex() != col) || !matches(col, column)){
+                return "column [" + names[col] + "] is of kind [" + kinds[col] + "] and key column ["
+                        + keyCols[col] + "], stored as [" + column.getKind() + "] and ["
+                        + column.isKeyCol() + "]";
+            }
+        }
+        return null;
+    }
+}
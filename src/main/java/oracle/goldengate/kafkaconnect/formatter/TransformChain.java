@@ -0,0 +1,261 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import oracle.goldengate.datasource.meta.ColumnMetaData;
+import oracle.goldengate.datasource.meta.TableMetaData;
+import oracle.goldengate.kafkaconnect.filter.OperationFilter;
+import oracle.goldengate.util.ConfigException;
+
+/**
+ * The record transforms applied by the formatter: rename fields, mask field
+ * values, add constant fields and route records to a topic named by a column
+ * value.  Each transform is a semicolon separated list of rules prefixed with
+ * a table name glob:
+ *   renameFields  GG.TCUSTMER:CUST_CODE-&gt;CUSTOMER_CODE
+ *   maskFields    GG.TCUSTMER:PHONE
+ *   addFields     GG.*:SOURCE=ORCL
+ *   routeByColumn GG.TCUSTORD:REGION
+ *
+ * Rather than transforming each record the rules are compiled into the
+ * {@link FieldPlan} of a table when its schemas are generated.  Renames apply
+ * to the key and the payload, masks apply to the payload only.  A rename or
+ * added field which collides with an operation metadata field is rejected
+ * when the rules are parsed, one which collides with a column of a table is
+ * rejected when the plan of the table is compiled.
+ */
+public class TransformChain {
+    private final List<Rule> renames = new ArrayList<>();
+    private final List<Rule> masks = new ArrayList<>();
+    private final List<Rule> adds = new ArrayList<>();
+    private final List<Rule> routes = new ArrayList<>();
+
+    /**
+     * Parse the transform rules.
+     * @param renameFields The rename rules, may be null.
+     * @param maskFields The mask rules, may be null.
+     * @param addFields The add field rules, may be null.
+     * @param routeByColumn The routing rules, may be null.
+     */
+    public TransformChain(String renameFields, String maskFields, String addFields, String routeByColumn){
+        parse(renameFields, "->", renames, "renameFields");
+        parse(maskFields, null, masks, "maskFields");
+        parse(addFields, "=", adds, "addFields");
+        parse(routeByColumn, null, routes, "routeByColumn");
+        for (Rule rename : renames){
+            checkNotMetadataField(rename.value, "renameFields", rename);
+        }
+        for (Rule add : adds){
+            checkNotMetadataField(add.column, "addFields", add);
+        }
+    }
+
+    /**
+     * Method to check if no transforms are configured.
+     * @return True if there are no transforms, else false.
+     */
+    public boolean isEmpty(){
+        return renames.isEmpty() && masks.isEmpty() && adds.isEmpty() && routes.isEmpty();
+    }
+
+    /**
+     * Method to compile the plan of a table.
+     * @param tableName The fully qualified table name.
+     * @param tmeta The table metadata.
+     * @param allColumnsAsStrings True if all columns are treated as strings.
+     * @return The plan of the table.
+     */
+    public FieldPlan compile(String tableName, TableMetaData tmeta, boolean allColumnsAsStrings){
+        ColumnPlan[] columns = new ColumnPlan[tmeta.getNumColumns()];
+        String routeFieldName = null;
+        Rule route = findRule(routes, tableName, null);
+        for (int col = 0; col < columns.length; col++){
+            columns[col] = compileColumn(tableName, tmeta.getColumnMetaData(col), col, allColumnsAsStrings);
+            if (isRouteColumn(route, tableName, tmeta.getColumnMetaData(col), columns[col])){
+                routeFieldName = columns[col].getFieldName();
+            }
+        }
+        List<String[]> addedFields = new ArrayList<>();
+        for (Rule add : adds){
+            if (add.table.matcher(tableName).matches()){
+                addedFields.add(new String[] {add.column, add.value});
+            }
+        }
+        checkFieldNames(tableName, tmeta, columns, addedFields);
+        return new FieldPlan(columns, addedFields, routeFieldName);
+    }
+
+    /**
+     * Method to patch the plan of a table after a metadata change.  Columns
+     * which still exist with the same type and key flag keep their compiled
+     * plan at their new position, only new or changed columns are compiled.
+     * The added fields do not depend on the columns and are kept.
+     * @param tableName The fully qualified table name.
+     * @param tmeta The new table metadata.
+     * @param allColumnsAsStrings True if all columns are treated as strings.
+     * @param previous The plan compiled from the previous metadata.
+     * @param previousIndexes For each column of the new metadata the index of
+     * the same column in the previous plan, or -1 if it must be compiled.
+     * @return The patched plan of the table.
+     */
+    public FieldPlan patch(String tableName, TableMetaData tmeta, boolean allColumnsAsStrings,
+            FieldPlan previous, int[] previousIndexes){
+        ColumnPlan[] columns = new ColumnPlan[tmeta.getNumColumns()];
+        String routeFieldName = null;
+        Rule route = findRule(routes, tableName, null);
+        for (int col = 0; col < columns.length; col++){
+            ColumnMetaData cmeta = tmeta.getColumnMetaData(col);
+            if (previousIndexes[col] >= 0){
+                columns[col] = previous.getColumn(previousIndexes[col]).moveTo(col);
+            }else{
+                columns[col] = compileColumn(tableName, cmeta, col, allColumnsAsStrings);
+            }
+            if (isRouteColumn(route, tableName, cmeta, columns[col])){
+                routeFieldName = columns[col].getFieldName();
+            }
+        }
+        List<String[]> addedFields = new ArrayList<>();
+        for (int i = 0; i < previous.getNumAddedFields(); i++){
+            addedFields.add(new String[] {previous.getAddedFieldName(i), previous.getAddedFieldValue(i)});
+        }
+        checkFieldNames(tableName, tmeta, columns, addedFields);
+        return new FieldPlan(columns, addedFields, routeFieldName);
+    }
+
+    /**
+     * Method to append a description of the transforms to the configuration
+     * summary.
+     * @param sb The configuration summary.
+     */
+    public void appendSummary(StringBuilder sb){
+        appendRules(sb, "Rename field", renames);
+        appendRules(sb, "Mask field", masks);
+        appendRules(sb, "Add field", adds);
+        appendRules(sb, "Route by column", routes);
+    }
+
+    private ColumnPlan compileColumn(String tableName, ColumnMetaData cmeta, int col, boolean allColumnsAsStrings){
+        String columnName = cmeta.getOriginalColumnName();
+        Rule rename = findRule(renames, tableName, columnName);
+        String fieldName = (rename == null) ? cmeta.getColumnName() : rename.value;
+        boolean masked = findRule(masks, tableName, columnName) != null;
+        return new ColumnPlan(col, fieldName,
+                ColumnPlan.kindOf(cmeta, allColumnsAsStrings), masked, cmeta.isKeyCol());
+    }
+
+    private static boolean isRouteColumn(Rule route, String tableName, ColumnMetaData cmeta, ColumnPlan column){
+        if ((route == null) || !route.column.equalsIgnoreCase(cmeta.getOriginalColumnName())){
+            return false;
+        }
+        if (column.isMasked()){
+            throw new ConfigException("The column [" + cmeta.getOriginalColumnName() + "] of table [" + tableName
+                    + "] is used to route records to topics and cannot be masked.");
+        }
+        return true;
+    }
+
+    private static void checkNotMetadataField(String fieldName, String property, Rule rule){
+        for (String metadataField : FieldPlan.METADATA_FIELDS){
+            if (metadataField.equals(fieldName)){
+                throw new ConfigException("The " + property + " rule [" + rule.text + "] is invalid.  The field name ["
+                        + fieldName + "] is used by the operation metadata.");
+            }
+        }
+    }
+
+    /**
+     * Method to check that the output field names of a table are unique, so
+     * that a colliding rename or added field fails when the plan is compiled
+     * rather than when the schema is built.
+     */
+    private void checkFieldNames(String tableName, TableMetaData tmeta, ColumnPlan[] columns, List<String[]> addedFields){
+        Map<String, String> owners = new HashMap<>();
+        for (String metadataField : FieldPlan.METADATA_FIELDS){
+            owners.put(metadataField, "the operation metadata");
+        }
+        for (int col = 0; col < columns.length; col++){
+            String columnName = tmeta.getColumnMetaData(col).getOriginalColumnName();
+            Rule rename = findRule(renames, tableName, columnName);
+            String owner = "the column [" + columnName + "]"
+                    + ((rename == null) ? "" : " renamed by the renameFields rule [" + rename.text + "]");
+            checkFieldName(tableName, columns[col].getFieldName(), owner, owners);
+        }
+        for (String[] added : addedFields){
+            Rule add = findRule(adds, tableName, added[0]);
+            String owner = (add == null) ? ("the added field [" + added[0] + "]") : ("the addFields rule [" + add.text + "]");
+            checkFieldName(tableName, added[0], owner, owners);
+        }
+    }
+
+    private static void checkFieldName(String tableName, String fieldName, String owner, Map<String, String> owners){
+        String other = owners.put(fieldName, owner);
+        if (other != null){
+            throw new ConfigException("The field [" + fieldName + "] of table [" + tableName + "] is used by both "
+                    + other + " and " + owner + ".  Rename or remove one of them.");
+        }
+    }
+
+    private static Rule findRule(List<Rule> rules, String tableName, String columnName){
+        for (Rule rule : rules){
+            if (rule.table.matcher(tableName).matches()
+                    && ((columnName == null) || rule.column.equalsIgnoreCase(columnName))){
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static void parse(String rules, String separator, List<Rule> parsed, String property){
+        if (rules == null){
+            return;
+        }
+        for (String text : rules.split(";")){
+            text = text.trim();
+            if (text.isEmpty()){
+                continue;
+            }
+            int sep = text.indexOf(':');
+            int valueSep = (separator == null) ? -1 : text.indexOf(separator, sep + 1);
+            if ((sep <= 0) || ((separator != null) && (valueSep < 0))){
+                throw new ConfigException("The " + property + " rule [" + text + "] is invalid.  Rules must be of the form TABLE:"
+                        + ((separator == null) ? "COLUMN" : ("NAME" + separator + "VALUE")) + ".");
+            }
+            Rule rule = new Rule();
+            rule.text = text;
+            rule.table = OperationFilter.compileGlob(text.substring(0, sep));
+            if (separator == null){
+                rule.column = text.substring(sep + 1).trim();
+            }else{
+                rule.column = text.substring(sep + 1, valueSep).trim();
+                rule.value = text.substring(valueSep + separator.length()).trim();
+            }
+            parsed.add(rule);
+        }
+    }
+
+    private static void appendRules(StringBuilder sb, String description, List<Rule> rules){
+        for (Rule rule : rules){
+            sb.append("    ").append(description).append(": ").append(rule.text);
+            sb.append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * A single transform rule.
+     */
+    private static class Rule {
+        private String text;
+        private Pattern table;
+        private String column;
+        private String value;
+    }
+}
@@ -0,0 +1,21 @@
+package oracle.goldengate.storage;
+
+import oracle.goldengate.common.data.Schema;
+
+/**
+ * A {@link Converter} which can convert many values of the same topic and schema in one call, so the schema lookups
+ * and the output buffer setup are done once for all of them.
+ */
+public interface BatchConverter extends Converter {
+
+    /**
+     * Convert Kafka Connect data objects sharing a topic and a schema.
+     * @param topic the topic associated with the data
+     * @param schema the schema of all the values
+     * @param values the values to convert
+     * @param offset the index of the first value to convert
+     * @param length the number of values to convert
+     * @return the serialized values in order, null for values serialized as null
+     */
+    byte[][] fromConnectData(String topic, Schema schema, Object[] values, int offset, int length);
+}
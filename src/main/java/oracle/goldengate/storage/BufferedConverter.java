@@ -0,0 +1,31 @@
+package oracle.goldengate.storage;
+
+import oracle.goldengate.common.data.Schema;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Converter} which can also write serialized values into a caller-supplied buffer, so callers can reuse
+ * their output buffers instead of receiving a newly allocated byte[] for every value.
+ */
+public interface BufferedConverter extends Converter {
+
+    /**
+     * Estimate the size of serialized values of a schema, used to presize output buffers.
+     * @param schema the schema for the values
+     * @return the estimated size in bytes
+     */
+    int estimateSize(Schema schema);
+
+    /**
+     * Convert a Kafka Connect data object into a buffer. The buffer is cleared first, if it is too small the value is
+     * written to a larger buffer instead.
+     * @param topic the topic associated with the data
+     * @param schema the schema for the value
+     * @param value the value to convert
+     * @param buffer the output buffer
+     * @return the buffer holding the serialized value, flipped for reading, either the given buffer or a larger one;
+     * or null if the value is serialized as null
+     */
+    ByteBuffer fromConnectData(String topic, Schema schema, Object value, ByteBuffer buffer);
+}
@@ -0,0 +1,189 @@
+package oracle.goldengate.binary;
+
+import oracle.goldengate.common.data.Date;
+import oracle.goldengate.common.data.Decimal;
+import oracle.goldengate.common.data.PrimitiveStruct;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaAndValue;
+import oracle.goldengate.common.data.SchemaBuilder;
+import oracle.goldengate.common.data.Struct;
+import oracle.goldengate.common.data.Time;
+import oracle.goldengate.common.data.Timestamp;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class BinaryKeyConverterTest {
+    private static final String TOPIC = "topic";
+
+    private static final Schema COMPOSITE = SchemaBuilder.struct().name("key")
+            .field("id", Schema.OPTIONAL_INT64_SCHEMA)
+            .field("code", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("price", Schema.OPTIONAL_FLOAT64_SCHEMA)
+            .field("flag", Schema.OPTIONAL_BOOLEAN_SCHEMA)
+            .field("raw", Schema.OPTIONAL_BYTES_SCHEMA)
+            .build();
+
+    private final BinaryKeyConverter converter = new BinaryKeyConverter();
+
+    @Before
+    public void setUp() {
+        converter.configure(Collections.<String, Object>emptyMap(), true);
+    }
+
+    @Test
+    public void testSingleLong() {
+        byte[] expected = {(byte) 0x80, 0, 0, 0, 0, 0, 0, 1};
+        assertArrayEquals(expected, convert(Schema.INT64_SCHEMA, Long.MIN_VALUE + 1));
+        assertArrayEquals(expected, convert(null, Long.MIN_VALUE + 1));
+        assertArrayEquals(expected, convertField(Schema.INT64_SCHEMA, Long.MIN_VALUE + 1));
+
+        PrimitiveStruct primitive = new PrimitiveStruct(singleField(Schema.INT64_SCHEMA));
+        primitive.putLong(0, Long.MIN_VALUE + 1);
+        assertArrayEquals(expected, converter.fromConnectData(TOPIC, primitive.schema(), primitive));
+
+        // Narrower integers are widened to a long
+        assertArrayEquals(new byte[]{-1, -1, -1, -1, -1, -1, -1, -2}, convert(Schema.INT32_SCHEMA, -2));
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, 0, 7}, convertField(Schema.INT8_SCHEMA, (byte) 7));
+    }
+
+    @Test
+    public void testSingleDouble() {
+        byte[] expected = ByteBuffer.allocate(8).putLong(Double.doubleToLongBits(-1.5)).array();
+        assertArrayEquals(expected, convert(Schema.FLOAT64_SCHEMA, -1.5));
+        assertArrayEquals(expected, convertField(Schema.FLOAT64_SCHEMA, -1.5));
+        // Floats are widened to the bits of a double
+        assertArrayEquals(expected, convert(Schema.FLOAT32_SCHEMA, -1.5f));
+
+        PrimitiveStruct primitive = new PrimitiveStruct(singleField(Schema.FLOAT64_SCHEMA));
+        primitive.putDouble(0, -1.5);
+        assertArrayEquals(expected, converter.fromConnectData(TOPIC, primitive.schema(), primitive));
+    }
+
+    @Test
+    public void testSingleStringBooleanAndBytes() {
+        assertArrayEquals("\u00e9t\u00e9".getBytes(StandardCharsets.UTF_8),
+                convertField(Schema.STRING_SCHEMA, "\u00e9t\u00e9"));
+        assertArrayEquals(new byte[0], convert(Schema.STRING_SCHEMA, ""));
+        assertArrayEquals(new byte[]{1}, convert(Schema.BOOLEAN_SCHEMA, true));
+        assertArrayEquals(new byte[]{0}, convertField(Schema.BOOLEAN_SCHEMA, false));
+        assertArrayEquals(new byte[]{1, 2}, convert(Schema.BYTES_SCHEMA, new byte[]{1, 2}));
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0, 1, 2});
+        buffer.position(1);
+        assertArrayEquals(new byte[]{1, 2}, convertField(Schema.BYTES_SCHEMA, buffer));
+        assertEquals(1, buffer.position());
+    }
+
+    @Test
+    public void testNullKeys() {
+        assertNull(convert(Schema.INT64_SCHEMA, null));
+        Schema empty = SchemaBuilder.struct().name("empty").build();
+        assertNull(converter.fromConnectData(TOPIC, empty, new Struct(empty)));
+        assertNull(convertField(Schema.OPTIONAL_STRING_SCHEMA, null));
+    }
+
+    @Test
+    public void testComposite() {
+        Struct key = new Struct(COMPOSITE).put("id", 258L).put("code", "A\u00e9").put("price", 0.5)
+                .put("flag", true).put("raw", new byte[]{9});
+        byte[] expected = ByteBuffer.allocate(1 + 8 + 1 + 4 + 3 + 1 + 8 + 1 + 1 + 1 + 4 + 1)
+                .put((byte) 1).putLong(258L)
+                .put((byte) 1).putInt(3).put(new byte[]{'A', (byte) 0xc3, (byte) 0xa9})
+                .put((byte) 1).putLong(Double.doubleToLongBits(0.5))
+                .put((byte) 1).put((byte) 1)
+                .put((byte) 1).putInt(1).put((byte) 9)
+                .array();
+        assertArrayEquals(expected, converter.fromConnectData(TOPIC, COMPOSITE, key));
+
+        PrimitiveStruct primitive = new PrimitiveStruct(COMPOSITE);
+        primitive.putLong(0, 258L);
+        primitive.put("code", "A\u00e9");
+        primitive.putDouble(2, 0.5);
+        primitive.put("flag", true);
+        primitive.put("raw", ByteBuffer.wrap(new byte[]{9}));
+        assertArrayEquals(expected, converter.fromConnectData(TOPIC, COMPOSITE, primitive));
+    }
+
+    @Test
+    public void testCompositeWithNulls() {
+        // A null value is the null marker alone, without a length or value
+        Struct key = new Struct(COMPOSITE).put("code", "");
+        byte[] expected = {0, 1, 0, 0, 0, 0, 0, 0, 0};
+        assertArrayEquals(expected, converter.fromConnectData(TOPIC, COMPOSITE, key));
+        PrimitiveStruct primitive = new PrimitiveStruct(COMPOSITE);
+        primitive.put("code", "");
+        assertArrayEquals(expected, converter.fromConnectData(TOPIC, COMPOSITE, primitive));
+
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0},
+                converter.fromConnectData(TOPIC, COMPOSITE, new Struct(COMPOSITE)));
+    }
+
+    @Test
+    public void testCompositeIsEncodedOnEveryCall() {
+        // A struct reused for another row must not return the bytes of the previous row
+        PrimitiveStruct key = new PrimitiveStruct(COMPOSITE);
+        key.putLong(0, 1L);
+        byte[] first = converter.fromConnectData(TOPIC, COMPOSITE, key);
+        byte[] again = converter.fromConnectData(TOPIC, COMPOSITE, key);
+        assertArrayEquals(first, again);
+        assertNotSame(first, again);
+        key.putLong(0, 2L);
+        assertArrayEquals(new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0, 0},
+                converter.fromConnectData(TOPIC, COMPOSITE, key));
+    }
+
+    @Test
+    public void testLogicalTypes() {
+        java.util.Date epochDay = new java.util.Date(86400000L);
+        assertArrayEquals(ByteBuffer.allocate(8).putLong(1476705600123L).array(),
+                convert(Timestamp.SCHEMA, new java.util.Date(1476705600123L)));
+        assertArrayEquals(ByteBuffer.allocate(8).putLong(1L).array(), convertField(Date.SCHEMA, epochDay));
+        assertArrayEquals(ByteBuffer.allocate(8).putLong(1234L).array(),
+                convert(Time.SCHEMA, new java.util.Date(1234L)));
+        // A decimal is its unscaled value as a big-endian two's complement integer
+        Schema decimal = Decimal.schema(2);
+        assertArrayEquals(new byte[]{(byte) 0xfb, 0x2e}, convert(decimal, new BigDecimal("-12.34")));
+
+        Schema schema = SchemaBuilder.struct().name("logical")
+                .field("amount", decimal)
+                .field("day", Date.SCHEMA)
+                .build();
+        Struct key = new Struct(schema).put("amount", new BigDecimal("-12.34")).put("day", epochDay);
+        byte[] expected = ByteBuffer.allocate(1 + 4 + 2 + 1 + 8)
+                .put((byte) 1).putInt(2).put(new byte[]{(byte) 0xfb, 0x2e})
+                .put((byte) 1).putLong(1L)
+                .array();
+        assertArrayEquals(expected, converter.fromConnectData(TOPIC, schema, key));
+    }
+
+    @Test
+    public void testToConnectDataReturnsTheBytes() {
+        byte[] bytes = {1, 2, 3};
+        SchemaAndValue result = converter.toConnectData(TOPIC, bytes);
+        assertEquals(Schema.BYTES_SCHEMA, result.schema());
+        assertArrayEquals(bytes, (byte[]) result.value());
+        assertEquals(SchemaAndValue.NULL, converter.toConnectData(TOPIC, null));
+    }
+
+    private byte[] convert(Schema schema, Object value) {
+        return converter.fromConnectData(TOPIC, schema, value);
+    }
+
+    private byte[] convertField(Schema fieldSchema, Object value) {
+        Schema schema = singleField(fieldSchema);
+        return converter.fromConnectData(TOPIC, schema, new Struct(schema).put("f", value));
+    }
+
+    private static Schema singleField(Schema fieldSchema) {
+        return SchemaBuilder.struct().name("single").field("f", fieldSchema).build();
+    }
+}
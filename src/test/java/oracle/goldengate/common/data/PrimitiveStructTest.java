@@ -0,0 +1,181 @@
+package oracle.goldengate.common.data;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveStructTest {
+
+    private static final Schema SCHEMA = SchemaBuilder.struct().name("primitives")
+            .field("int8", Schema.OPTIONAL_INT8_SCHEMA)
+            .field("int16", Schema.OPTIONAL_INT16_SCHEMA)
+            .field("int32", Schema.OPTIONAL_INT32_SCHEMA)
+            .field("int64", Schema.OPTIONAL_INT64_SCHEMA)
+            .field("float32", Schema.OPTIONAL_FLOAT32_SCHEMA)
+            .field("float64", Schema.OPTIONAL_FLOAT64_SCHEMA)
+            .field("boolean", Schema.OPTIONAL_BOOLEAN_SCHEMA)
+            .field("string", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("bytes", Schema.OPTIONAL_BYTES_SCHEMA)
+            .field("timestamp", Timestamp.builder().optional().build())
+            .build();
+
+    private static final Object[] VALUES = {(byte) -8, (short) 1600, 320000, -64000000000L, 3.25f, -0.1, true,
+        "text", new byte[]{1, 2}, new java.util.Date(1476705600123L)};
+
+    @Test
+    public void testPutLongAndDoubleAreReadBoxed() {
+        PrimitiveStruct struct = new PrimitiveStruct(SCHEMA);
+        struct.putLong(3, Long.MIN_VALUE);
+        struct.putDouble(5, Double.NaN);
+        assertEquals(Long.MIN_VALUE, struct.get(3));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), struct.getInt64("int64"));
+        assertEquals(Double.NaN, struct.get("float64"));
+        assertEquals(Long.MIN_VALUE, struct.getLong(3));
+        assertTrue(Double.isNaN(struct.getDouble(5)));
+    }
+
+    @Test
+    public void testBoxedPutsAreReadUnboxed() {
+        PrimitiveStruct struct = new PrimitiveStruct(SCHEMA);
+        struct.fill(VALUES);
+        for (int i = 0; i < VALUES.length; i++) {
+            if (VALUES[i] instanceof byte[])
+                assertArrayEquals((byte[]) VALUES[i], (byte[]) struct.get(i));
+            else
+                assertEquals(SCHEMA.fields().get(i).name(), VALUES[i], struct.get(i));
+        }
+        assertEquals(Byte.class, struct.get("int8").getClass());
+        assertEquals(Short.class, struct.get("int16").getClass());
+        assertEquals(Integer.class, struct.get("int32").getClass());
+        assertEquals(Float.class, struct.get("float32").getClass());
+        assertEquals(Boolean.class, struct.get("boolean").getClass());
+        assertEquals(-64000000000L, struct.getLong(3));
+        assertEquals(-0.1, struct.getDouble(5), 0.0);
+    }
+
+    @Test
+    public void testHasLongAndHasDouble() {
+        PrimitiveStruct struct = new PrimitiveStruct(SCHEMA);
+        assertFalse(struct.hasLong(3));
+        assertFalse(struct.hasDouble(5));
+        struct.putLong(3, 0L);
+        struct.put("float64", 0.0);
+        assertTrue(struct.hasLong(3));
+        assertTrue(struct.hasDouble(5));
+        // Set, but not of the tested type
+        struct.put("int32", 1);
+        assertFalse(struct.hasLong(2));
+        assertFalse(struct.hasDouble(3));
+        assertFalse(struct.hasLong(5));
+        // Logical types and objects are never stored unboxed
+        struct.put("timestamp", new java.util.Date(0L));
+        assertFalse(struct.hasLong(9));
+        // A null put clears the value
+        struct.put("int64", null);
+        assertFalse(struct.hasLong(3));
+        assertNull(struct.get("int64"));
+    }
+
+    @Test(expected = DataException.class)
+    public void testPutLongRejectsOtherTypes() {
+        new PrimitiveStruct(SCHEMA).putLong(2, 1L);
+    }
+
+    @Test(expected = DataException.class)
+    public void testPutLongRejectsLogicalTypes() {
+        Schema schema = SchemaBuilder.struct().field("ts", Timestamp.SCHEMA).build();
+        new PrimitiveStruct(schema).putLong(0, 1L);
+    }
+
+    @Test(expected = DataException.class)
+    public void testGetLongWithoutValueOrDefault() {
+        new PrimitiveStruct(SCHEMA).getLong(3);
+    }
+
+    @Test
+    public void testGetLongReturnsTheDefault() {
+        Schema schema = SchemaBuilder.struct()
+                .field("id", SchemaBuilder.int64().defaultValue(7L).build())
+                .field("price", SchemaBuilder.float64().defaultValue(1.5).build())
+                .build();
+        PrimitiveStruct struct = new PrimitiveStruct(schema);
+        assertFalse(struct.hasLong(0));
+        assertEquals(7L, struct.getLong(0));
+        assertEquals(1.5, struct.getDouble(1), 0.0);
+        assertEquals(7L, struct.get("id"));
+    }
+
+    @Test
+    public void testResetClearsEveryValue() {
+        PrimitiveStruct struct = new PrimitiveStruct(SCHEMA);
+        struct.fill(VALUES);
+        struct.reset();
+        for (int i = 0; i < VALUES.length; i++)
+            assertNull(struct.get(i));
+        assertFalse(struct.hasLong(3));
+        assertFalse(struct.hasDouble(5));
+        assertEquals(new Struct(SCHEMA), struct);
+    }
+
+    @Test
+    public void testEqualsAndHashCodeMatchStruct() {
+        PrimitiveStruct primitive = new PrimitiveStruct(SCHEMA);
+        Struct struct = new Struct(SCHEMA);
+        assertEquals(struct, primitive);
+        assertEquals(primitive, struct);
+        assertEquals(struct.hashCode(), primitive.hashCode());
+
+        // Same values, without the bytes field whose arrays compare by identity
+        Object[] values = VALUES.clone();
+        values[8] = null;
+        primitive.fill(values);
+        struct.fill(values);
+        assertEquals(struct, primitive);
+        assertEquals(primitive, struct);
+        assertEquals(struct.hashCode(), primitive.hashCode());
+
+        PrimitiveStruct unboxed = new PrimitiveStruct(SCHEMA);
+        unboxed.fill(values);
+        unboxed.putLong(3, -64000000000L);
+        unboxed.putDouble(5, -0.1);
+        assertEquals(primitive, unboxed);
+        assertEquals(primitive.hashCode(), unboxed.hashCode());
+
+        primitive.putLong(3, 1L);
+        assertNotEquals(struct, primitive);
+        assertNotEquals(primitive, struct);
+        // Positive and negative zero differ, as for boxed doubles
+        primitive.putLong(3, -64000000000L);
+        primitive.putDouble(5, 0.0);
+        struct.put("float64", -0.0);
+        assertNotEquals(primitive, struct);
+        assertNotEquals(struct, primitive);
+    }
+
+    @Test
+    public void testMoreThanSixtyFourFields() {
+        SchemaBuilder builder = SchemaBuilder.struct();
+        for (int i = 0; i < 130; i++)
+            builder.field("f" + i, Schema.OPTIONAL_INT64_SCHEMA);
+        Schema schema = builder.build();
+        PrimitiveStruct struct = new PrimitiveStruct(schema);
+        struct.putLong(64, 64L);
+        struct.putLong(129, 129L);
+        assertFalse(struct.hasLong(0));
+        assertFalse(struct.hasLong(65));
+        assertTrue(struct.hasLong(64));
+        assertTrue(struct.hasLong(129));
+        assertEquals(129L, struct.get("f129"));
+        assertNull(struct.get("f1"));
+
+        Struct boxed = new Struct(schema).put("f64", 64L).put("f129", 129L);
+        assertEquals(boxed, struct);
+        assertEquals(boxed.hashCode(), struct.hashCode());
+    }
+}
@@ -0,0 +1,103 @@
+package oracle.goldengate.common.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>
+ *     Plain benchmark harness for the precomputed {@link ConnectSchema} fingerprint. It times hashCode, equals on two
+ *     equal but distinct 500-column schemas, equals on schemas that only differ in the last column and a HashMap
+ *     lookup, against the field-by-field hash the schema used before the fingerprint.
+ * </p>
+ * <p>
+ *     Run it with {@code java oracle.goldengate.common.data.SchemaFingerprintBenchmark [columns] [iterations]}. It is
+ *     not a unit test and is not run by the build.
+ * </p>
+ */
+public class SchemaFingerprintBenchmark {
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int columns = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        ConnectSchema schema = struct("BENCH.WIDE", columns, Schema.OPTIONAL_STRING_SCHEMA);
+        ConnectSchema same = struct("BENCH.WIDE", columns, Schema.OPTIONAL_STRING_SCHEMA);
+        ConnectSchema other = struct("BENCH.WIDE", columns, Schema.OPTIONAL_INT64_SCHEMA);
+        if (schema == same || !schema.equals(same) || schema.hashCode() != same.hashCode())
+            throw new IllegalStateException("Equal schemas must be distinct instances with equal hash codes");
+        if (schema.equals(other) || schema.fingerprint() == other.fingerprint())
+            throw new IllegalStateException("A one-column difference must change the fingerprint");
+
+        Map<Schema, Object> map = new HashMap<>();
+        map.put(schema, Boolean.TRUE);
+
+        // Two rounds, the first one warms up the JIT
+        for (int round = 0; round < 2; round++) {
+            System.out.println("round " + round + ", " + columns + " columns, " + iterations + " iterations");
+            long start = System.nanoTime();
+            long acc = 0;
+            for (int i = 0; i < iterations; i++)
+                acc += fieldHash(same);
+            report("field-by-field hash", start, iterations, acc);
+
+            start = System.nanoTime();
+            acc = 0;
+            for (int i = 0; i < iterations; i++)
+                acc += same.hashCode();
+            report("fingerprint hashCode", start, iterations, acc);
+
+            start = System.nanoTime();
+            acc = 0;
+            for (int i = 0; i < iterations; i++)
+                acc += schema.equals(same) ? 1 : 0;
+            report("equals, equal schemas", start, iterations, acc);
+
+            start = System.nanoTime();
+            acc = 0;
+            for (int i = 0; i < iterations; i++)
+                acc += schema.equals(other) ? 1 : 0;
+            report("equals, last column differs", start, iterations, acc);
+
+            start = System.nanoTime();
+            acc = 0;
+            for (int i = 0; i < iterations; i++)
+                acc += map.get(same) == null ? 0 : 1;
+            report("HashMap lookup, equal schema", start, iterations, acc);
+        }
+    }
+
+    /**
+     * Build a struct schema directly rather than with {@link SchemaBuilder}, so that equal schemas are not interned
+     * to the same instance.
+     */
+    private static ConnectSchema struct(String name, int columns, Schema lastColumn) {
+        List<Field> fields = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            Schema fieldSchema = i == columns - 1 ? lastColumn : Schema.OPTIONAL_STRING_SCHEMA;
+            fields.add(new Field("COLUMN_" + i, i, fieldSchema));
+        }
+        return new ConnectSchema(Schema.Type.STRUCT, false, null, name, null, null, null, fields, null, null);
+    }
+
+    /**
+     * The hash of a schema as computed on every call before the fingerprint, walking all fields.
+     */
+    private static int fieldHash(Schema schema) {
+        int fieldsHash = 1;
+        for (Field field : schema.fields())
+            fieldsHash = 31 * fieldsHash + Objects.hash(field.name(), field.index(), field.schema().type(),
+                    field.schema().isOptional());
+        return Objects.hash(schema.type(), schema.isOptional(), schema.defaultValue(), fieldsHash, schema.name(),
+                schema.version(), schema.doc(), schema.parameters());
+    }
+
+    private static void report(String label, long start, int iterations, long acc) {
+        long elapsed = System.nanoTime() - start;
+        sink += acc;
+        System.out.println(String.format("  %-30s %10.1f ns/op", label, (double) elapsed / iterations));
+    }
+}
@@ -0,0 +1,60 @@
+package oracle.goldengate.common.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SchemaInternerTest {
+
+    private static Schema table(String name) {
+        return SchemaBuilder.struct().name(name)
+                .field("ID", Schema.INT64_SCHEMA)
+                .field("NAME", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("PRICE", Schema.OPTIONAL_FLOAT64_SCHEMA)
+                .build();
+    }
+
+    @Test
+    public void testRebuildReturnsSameInstance() {
+        assertSame(table("DB.ORDERS"), table("DB.ORDERS"));
+    }
+
+    @Test
+    public void testSameColumnsShareLayout() {
+        ConnectSchema orders = (ConnectSchema) table("DB.ORDERS");
+        ConnectSchema archive = (ConnectSchema) table("DB.ORDERS_ARCHIVE");
+        assertNotSame(orders, archive);
+        assertNotEquals(orders, archive);
+        assertEquals("DB.ORDERS", orders.name());
+        assertEquals("DB.ORDERS_ARCHIVE", archive.name());
+        assertSame(orders.layout(), archive.layout());
+        assertSame(orders.fields(), archive.fields());
+        assertSame(orders.field("NAME"), archive.field("NAME"));
+        assertSame(orders.layout().fieldValidators(), archive.layout().fieldValidators());
+    }
+
+    @Test
+    public void testDifferentColumnsDoNotShareLayout() {
+        ConnectSchema orders = (ConnectSchema) table("DB.ORDERS");
+        ConnectSchema other = (ConnectSchema) SchemaBuilder.struct().name("DB.ORDERS")
+                .field("ID", Schema.INT64_SCHEMA)
+                .field("NAME", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        assertNotEquals(orders, other);
+        assertNotSame(orders.layout(), other.layout());
+        assertSame(orders.field("ID"), other.field("ID"));
+        assertNull(other.field("PRICE"));
+    }
+
+    @Test
+    public void testStructValidationUsesSharedValidators() {
+        Schema orders = table("DB.ORDERS");
+        Struct struct = new Struct(orders).put("ID", 1L).put("NAME", "widget").put("PRICE", 2.5);
+        struct.validate();
+        assertEquals(2, orders.field("PRICE").index());
+    }
+}
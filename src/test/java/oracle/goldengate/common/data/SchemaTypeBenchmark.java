@@ -0,0 +1,114 @@
+package oracle.goldengate.common.data;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Plain multi-threaded benchmark harness for {@link ConnectSchema#schemaType(Class)}, which is backed by a
+ *     ClassValue. It runs the lookup from an increasing number of threads over the mapped classes and over subclasses
+ *     and implementations that need the assignability scan, against a synchronized HashMap cache, the usual shared
+ *     alternative.
+ * </p>
+ * <p>
+ *     Run it with {@code java oracle.goldengate.common.data.SchemaTypeBenchmark [maxThreads] [iterations]}. It is not a
+ *     unit test and is not run by the build.
+ * </p>
+ */
+public class SchemaTypeBenchmark {
+    private static final Class<?>[] CLASSES = {
+        Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, Boolean.class, String.class,
+        byte[].class, ByteBuffer.allocate(1).getClass(), ArrayList.class, LinkedHashMap.class, Struct.class,
+        BigDecimal.class
+    };
+
+    private static volatile long sink;
+
+    private interface Lookup {
+        Schema.Type schemaType(Class<?> klass);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+
+        Lookup classValue = new Lookup() {
+            @Override
+            public Schema.Type schemaType(Class<?> klass) {
+                return ConnectSchema.schemaType(klass);
+            }
+        };
+        final Map<Class<?>, Schema.Type> cache = new HashMap<>();
+        Lookup synchronizedMap = new Lookup() {
+            @Override
+            public Schema.Type schemaType(Class<?> klass) {
+                synchronized (cache) {
+                    if (cache.containsKey(klass))
+                        return cache.get(klass);
+                    Schema.Type type = ConnectSchema.schemaType(klass);
+                    cache.put(klass, type);
+                    return type;
+                }
+            }
+        };
+
+        for (Class<?> klass : CLASSES) {
+            if (classValue.schemaType(klass) != synchronizedMap.schemaType(klass))
+                throw new IllegalStateException("Lookups disagree for " + klass);
+        }
+
+        // Two rounds, the first one warms up the JIT
+        for (int round = 0; round < 2; round++) {
+            System.out.println("round " + round + ", " + iterations + " lookups per thread");
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                System.out.println(String.format("  %2d threads  ClassValue %8.1f ns/op  synchronized map %8.1f ns/op",
+                        threads, run(classValue, threads, iterations), run(synchronizedMap, threads, iterations)));
+            }
+        }
+    }
+
+    /**
+     * Run the lookups from the given number of threads.
+     * @return the wall clock time per lookup per thread in nanoseconds
+     */
+    private static double run(final Lookup lookup, int threads, final int iterations) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong acc = new AtomicLong();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        long local = 0;
+                        for (int i = 0; i < iterations; i++) {
+                            Schema.Type type = lookup.schemaType(CLASSES[(i + offset) % CLASSES.length]);
+                            local += type == null ? 0 : type.ordinal();
+                        }
+                        acc.addAndGet(local);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        sink += acc.get();
+        return (double) elapsed / iterations;
+    }
+}
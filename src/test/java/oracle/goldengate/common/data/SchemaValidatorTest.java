@@ -0,0 +1,268 @@
+package oracle.goldengate.common.data;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that the compiled {@link SchemaValidator}s accept and reject exactly the values the interpreted
+ * {@link ConnectSchema#validateValue(String, Schema, Object)} did, with the same error messages.
+ */
+public class SchemaValidatorTest {
+
+    private static final Schema INNER = SchemaBuilder.struct().name("inner")
+            .field("id", Schema.INT64_SCHEMA)
+            .field("name", Schema.OPTIONAL_STRING_SCHEMA)
+            .build();
+    private static final Schema OTHER_INNER = SchemaBuilder.struct().name("inner")
+            .field("id", Schema.INT32_SCHEMA)
+            .build();
+    private static final Schema OUTER = SchemaBuilder.struct().name("outer")
+            .field("inner", INNER)
+            .field("optionalInner", SchemaBuilder.struct().name("inner")
+                    .field("id", Schema.INT64_SCHEMA)
+                    .field("name", Schema.OPTIONAL_STRING_SCHEMA)
+                    .optional().build())
+            .field("defaulted", SchemaBuilder.int32().defaultValue(1).build())
+            .build();
+
+    private static final Schema LONG_ARRAY = SchemaBuilder.array(Schema.INT64_SCHEMA).build();
+    private static final Schema OPTIONAL_LONG_ARRAY = SchemaBuilder.array(Schema.OPTIONAL_INT64_SCHEMA).build();
+    private static final Schema STRUCT_ARRAY = SchemaBuilder.array(INNER).build();
+    private static final Schema STRING_LONG_MAP = SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.INT64_SCHEMA).build();
+    private static final Schema STRING_STRUCT_MAP = SchemaBuilder.map(Schema.STRING_SCHEMA, INNER).build();
+
+    @Test
+    public void testPrimitiveTypes() {
+        Schema[] schemas = {Schema.INT8_SCHEMA, Schema.INT16_SCHEMA, Schema.INT32_SCHEMA, Schema.INT64_SCHEMA,
+            Schema.FLOAT32_SCHEMA, Schema.FLOAT64_SCHEMA, Schema.BOOLEAN_SCHEMA, Schema.STRING_SCHEMA,
+            Schema.BYTES_SCHEMA, Schema.OPTIONAL_INT64_SCHEMA, Schema.OPTIONAL_STRING_SCHEMA};
+        Object[] values = {null, (byte) 1, (short) 1, 1, 1L, 1.0f, 1.0, true, "1", new byte[]{1},
+            ByteBuffer.wrap(new byte[]{1}), new Object(), Collections.emptyList(), Collections.emptyMap(),
+            new Struct(INNER)};
+        assertAllEquivalent(schemas, values);
+        assertRejected(Schema.INT64_SCHEMA, 1);
+        assertRejected(Schema.INT32_SCHEMA, 1L);
+        assertRejected(Schema.FLOAT64_SCHEMA, 1.0f);
+        assertRejected(Schema.STRING_SCHEMA, new Object());
+        assertRejected(Schema.INT64_SCHEMA, null);
+        assertAccepted(Schema.OPTIONAL_INT64_SCHEMA, null);
+        assertAccepted(Schema.BYTES_SCHEMA, ByteBuffer.wrap(new byte[]{1}));
+    }
+
+    @Test
+    public void testLogicalTypes() {
+        Schema[] schemas = {Decimal.schema(2), Date.SCHEMA, Time.SCHEMA, Timestamp.SCHEMA,
+            Decimal.builder(2).optional().build(), Timestamp.builder().optional().build()};
+        Object[] values = {null, new BigDecimal("1.25"), new java.util.Date(0L), new java.sql.Timestamp(0L), 0,
+            0L, new byte[]{1}, "2016-10-17"};
+        assertAllEquivalent(schemas, values);
+        // Only the representation of the logical type is valid, not the value of the underlying type
+        assertAccepted(Decimal.schema(2), new BigDecimal("1.25"));
+        assertRejected(Decimal.schema(2), new byte[]{1});
+        assertAccepted(Timestamp.SCHEMA, new java.sql.Timestamp(0L));
+        assertRejected(Timestamp.SCHEMA, 0L);
+        assertRejected(Date.SCHEMA, 0);
+        assertRejected(Time.SCHEMA, "2016-10-17");
+    }
+
+    @Test
+    public void testStructs() {
+        Struct inner = new Struct(INNER).put("id", 1L);
+        Struct innerMissingId = new Struct(INNER).put("name", "a");
+        Struct otherInner = new Struct(OTHER_INNER).put("id", 1);
+        Struct outer = new Struct(OUTER).put("inner", inner);
+        Struct outerWithInvalidInner = new Struct(OUTER).put("inner", inner);
+        outerWithInvalidInner.putTrusted(0, innerMissingId);
+        Struct outerWithWrongClass = new Struct(OUTER).put("inner", inner);
+        outerWithWrongClass.putTrusted(2, 1L);
+        Struct outerMissingInner = new Struct(OUTER);
+        Struct outerWithOptional = new Struct(OUTER).put("inner", inner)
+                .put("optionalInner", new Struct(OUTER.field("optionalInner").schema()).put("id", 2L));
+
+        // A builder with the same fields as INNER, whose validator is compiled on every use
+        SchemaBuilder innerBuilder = SchemaBuilder.struct().name("inner")
+                .field("id", Schema.INT64_SCHEMA).field("name", Schema.OPTIONAL_STRING_SCHEMA);
+        Schema[] schemas = {INNER, OTHER_INNER, OUTER, innerBuilder};
+        Object[] values = {null, inner, innerMissingId, otherInner, outer, outerWithInvalidInner,
+            outerWithWrongClass, outerMissingInner, outerWithOptional, "inner"};
+        assertAllEquivalent(schemas, values);
+        assertAccepted(OUTER, outer);
+        assertAccepted(OUTER, outerWithOptional);
+        // A built schema never equals a builder, so the struct schemas do not match
+        assertRejected(innerBuilder, inner);
+        assertRejected(INNER, innerMissingId);
+        assertRejected(INNER, otherInner);
+        assertRejected(OUTER, outerWithInvalidInner);
+        assertRejected(OUTER, outerWithWrongClass);
+        assertRejected(OUTER, outerMissingInner);
+    }
+
+    @Test
+    public void testArraysAndMaps() {
+        Map<String, Long> longs = new HashMap<>();
+        longs.put("a", 1L);
+        Map<String, Object> wrongValue = new HashMap<>();
+        wrongValue.put("a", 1);
+        Map<Object, Long> wrongKey = new HashMap<>();
+        wrongKey.put(1, 1L);
+        Map<String, Long> nullValue = new LinkedHashMap<>();
+        nullValue.put("a", 1L);
+        nullValue.put("b", null);
+        Map<String, Struct> structs = new HashMap<>();
+        structs.put("a", new Struct(INNER).put("id", 1L));
+        Map<String, Struct> invalidStructs = new HashMap<>();
+        invalidStructs.put("a", new Struct(INNER));
+
+        Schema[] schemas = {LONG_ARRAY, OPTIONAL_LONG_ARRAY, STRUCT_ARRAY, STRING_LONG_MAP, STRING_STRUCT_MAP};
+        Object[] values = {null, Collections.emptyList(), Arrays.asList(1L, 2L), Arrays.asList(1L, 2),
+            Arrays.asList(1L, null), Arrays.asList(new Struct(INNER).put("id", 1L)), Arrays.asList(new Struct(INNER)),
+            Arrays.asList(new Struct(OTHER_INNER).put("id", 1)), Collections.emptyMap(), longs, wrongValue, wrongKey,
+            nullValue, structs, invalidStructs, new Object[]{1L}};
+        assertAllEquivalent(schemas, values);
+        assertAccepted(LONG_ARRAY, Arrays.asList(1L, 2L));
+        assertRejected(LONG_ARRAY, Arrays.asList(1L, 2));
+        assertRejected(LONG_ARRAY, Arrays.asList(1L, null));
+        assertAccepted(OPTIONAL_LONG_ARRAY, Arrays.asList(1L, null));
+        assertRejected(STRUCT_ARRAY, Arrays.asList(new Struct(INNER)));
+        assertAccepted(STRING_LONG_MAP, longs);
+        assertRejected(STRING_LONG_MAP, wrongValue);
+        assertRejected(STRING_LONG_MAP, wrongKey);
+        assertRejected(STRING_LONG_MAP, nullValue);
+        assertRejected(STRING_STRUCT_MAP, invalidStructs);
+        assertRejected(LONG_ARRAY, new Object[]{1L});
+    }
+
+    @Test
+    public void testStructFieldValidation() {
+        // The field validators used by put, fill and validate against the interpreted validation of each field
+        Object[] values = {null, new Struct(INNER).put("id", 1L), new Struct(INNER), new Struct(OTHER_INNER),
+            1, 1L, "1"};
+        List<Field> fields = OUTER.fields();
+        for (Field field : fields) {
+            for (Object value : values) {
+                String expected = referenceError(field.name(), field.schema(), value);
+                String actual;
+                try {
+                    new Struct(OUTER).put(field.name(), value);
+                    actual = null;
+                } catch (DataException e) {
+                    actual = e.getMessage();
+                }
+                assertEquals(field.name() + " = " + value, expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Validate every value against every schema with both validators, expecting the same outcome.
+     */
+    private static void assertAllEquivalent(Schema[] schemas, Object[] values) {
+        for (Schema schema : schemas) {
+            for (Object value : values) {
+                String expected = referenceError("field", schema, value);
+                String actual = error("field", schema, value);
+                assertEquals(schema + " = " + value, expected, actual);
+                // A second time, with the validator cached on the schema
+                assertEquals(schema + " = " + value, expected, error("field", schema, value));
+            }
+        }
+    }
+
+    private static void assertAccepted(Schema schema, Object value) {
+        assertNull(schema + " = " + value, error("field", schema, value));
+    }
+
+    private static void assertRejected(Schema schema, Object value) {
+        assertNotNull(schema + " = " + value, error("field", schema, value));
+    }
+
+    private static String error(String name, Schema schema, Object value) {
+        try {
+            ConnectSchema.validateValue(name, schema, value);
+            return null;
+        } catch (DataException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static String referenceError(String name, Schema schema, Object value) {
+        try {
+            referenceValidate(name, schema, value);
+            return null;
+        } catch (DataException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * The interpreted validation which the compiled validators replaced, looking up the classes of the schema for
+     * every value and recursing through the schemas of nested values.
+     */
+    private static void referenceValidate(String name, Schema schema, Object value) {
+        if (value == null) {
+            if (!schema.isOptional())
+                throw new DataException("Invalid value: null used for required field: \"" + name
+                        + "\", schema type: " + schema.type());
+            else
+                return;
+        }
+
+        List<Class> expectedClasses = ConnectSchema.expectedClasses(schema);
+        if (expectedClasses == null)
+            throw new DataException("Invalid Java object for schema type " + schema.type()
+                    + ": " + value.getClass()
+                    + " for field: \"" + name + "\"");
+
+        boolean foundMatch = false;
+        for (Class<?> expectedClass : expectedClasses) {
+            if (expectedClass.isInstance(value)) {
+                foundMatch = true;
+                break;
+            }
+        }
+        if (!foundMatch)
+            throw new DataException("Invalid Java object for schema type " + schema.type()
+                    + ": " + value.getClass()
+                    + " for field: \"" + name + "\"");
+
+        switch (schema.type()) {
+            case STRUCT:
+                Struct struct = (Struct) value;
+                if (!struct.schema().equals(schema))
+                    throw new DataException("Struct schemas do not match.");
+                for (Field field : struct.schema().fields()) {
+                    Schema fieldSchema = field.schema();
+                    Object fieldValue = struct.getWithoutDefault(field.name());
+                    if (fieldValue == null && (fieldSchema.isOptional() || fieldSchema.defaultValue() != null))
+                        continue;
+                    referenceValidate(field.name(), fieldSchema, fieldValue);
+                }
+                break;
+            case ARRAY:
+                List<?> array = (List<?>) value;
+                for (Object entry : array)
+                    referenceValidate(null, schema.valueSchema(), entry);
+                break;
+            case MAP:
+                Map<?, ?> map = (Map<?, ?>) value;
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    referenceValidate(null, schema.keySchema(), entry.getKey());
+                    referenceValidate(null, schema.valueSchema(), entry.getValue());
+                }
+                break;
+        }
+    }
+}
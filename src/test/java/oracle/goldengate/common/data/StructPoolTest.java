@@ -0,0 +1,90 @@
+package oracle.goldengate.common.data;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class StructPoolTest {
+
+    private static final Schema SCHEMA = SchemaBuilder.struct().name("row")
+            .field("id", Schema.OPTIONAL_INT64_SCHEMA)
+            .field("name", Schema.OPTIONAL_STRING_SCHEMA)
+            .build();
+
+    @Test
+    public void testReleasedStructIsReusedEmpty() {
+        StructPool pool = new StructPool(4);
+        PrimitiveStruct struct = pool.acquire(SCHEMA);
+        struct.putLong(0, 1L);
+        struct.put("name", "a");
+        pool.releaseAll();
+
+        PrimitiveStruct reused = pool.acquire(SCHEMA);
+        assertSame(struct, reused);
+        assertNull(reused.get("id"));
+        assertNull(reused.get("name"));
+        assertEquals(1, pool.numAllocated());
+        assertEquals(1, pool.numReused());
+    }
+
+    @Test
+    public void testGenerationCheckFailsOnceReused() {
+        StructPool pool = new StructPool(4);
+        PrimitiveStruct struct = pool.acquire(SCHEMA);
+        struct.putLong(0, 1L);
+        // A holder records the generation when it receives the struct
+        int generation = struct.generation();
+        struct.checkGeneration(generation);
+        pool.releaseAll();
+
+        // The struct now holds the values of another record
+        PrimitiveStruct reused = pool.acquire(SCHEMA);
+        reused.putLong(0, 2L);
+        assertSame(struct, reused);
+        try {
+            struct.checkGeneration(generation);
+            fail("A reused struct passed the generation check");
+        } catch (DataException e) {
+            // expected
+        }
+        reused.checkGeneration(reused.generation());
+    }
+
+    @Test
+    public void testGenerationCheckFailsWhileReleased() {
+        StructPool pool = new StructPool(4);
+        PrimitiveStruct struct = pool.acquire(SCHEMA);
+        int generation = struct.generation();
+        pool.releaseAll();
+        try {
+            struct.checkGeneration(generation);
+            fail("A released struct passed the generation check");
+        } catch (DataException e) {
+            // expected
+        }
+        try {
+            struct.get("id");
+            fail("A released struct was read");
+        } catch (DataException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testKeepsAtMostTheFreeStructsOfASchema() {
+        StructPool pool = new StructPool(2);
+        PrimitiveStruct[] structs = new PrimitiveStruct[3];
+        for (int i = 0; i < structs.length; i++)
+            structs[i] = pool.acquire(SCHEMA);
+        pool.releaseAll();
+
+        for (int i = 0; i < structs.length; i++)
+            pool.acquire(SCHEMA);
+        assertEquals(4, pool.numAllocated());
+        assertEquals(2, pool.numReused());
+    }
+}
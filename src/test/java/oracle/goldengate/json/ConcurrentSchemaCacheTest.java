@@ -0,0 +1,81 @@
+package oracle.goldengate.json;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentSchemaCacheTest {
+    private static final int SIZE = 16;
+
+    @Test
+    public void testGetPutRemove() {
+        ConcurrentSchemaCache<String, Integer> cache = new ConcurrentSchemaCache<>(SIZE);
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        // An equal key that is not the same instance misses the identity table but is found by equality
+        assertEquals(Integer.valueOf(1), cache.get(new String("a")));
+        cache.put("a", 2);
+        assertEquals(Integer.valueOf(2), cache.get("a"));
+        assertEquals(1, cache.size());
+        assertTrue(cache.remove("a"));
+        assertFalse(cache.remove("a"));
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testOneOffEntriesDoNotEvictBusyEntries() {
+        ConcurrentSchemaCache<String, Integer> cache = busyCache();
+        for (int i = 0; i < 20; i++)
+            use(cache, "once" + i);
+        assertTrue(cache.size() <= SIZE);
+        for (int i = 0; i < SIZE; i++)
+            assertNotNull("busy" + i + " was evicted", cache.get("busy" + i));
+    }
+
+    @Test
+    public void testRepeatedlyUsedEntryIsAdmitted() {
+        ConcurrentSchemaCache<String, Integer> cache = busyCache();
+        int uses = 0;
+        while (!use(cache, "new")) {
+            uses++;
+            assertTrue("new entry was not admitted after " + uses + " uses", uses < 20);
+        }
+        assertTrue(cache.size() <= SIZE);
+    }
+
+    @Test
+    public void testEntryUsedAsOftenAsCachedEntriesIsAdmitted() {
+        ConcurrentSchemaCache<String, Integer> cache = new ConcurrentSchemaCache<>(SIZE);
+        for (int i = 0; i < SIZE; i++)
+            use(cache, "cached" + i);
+        // Each cached entry was requested once and put once, the new entry just as often
+        use(cache, "new");
+        assertNotNull(cache.get("new"));
+        assertEquals(SIZE, cache.size());
+    }
+
+    private static ConcurrentSchemaCache<String, Integer> busyCache() {
+        ConcurrentSchemaCache<String, Integer> cache = new ConcurrentSchemaCache<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < 10; j++)
+                use(cache, "busy" + i);
+        }
+        return cache;
+    }
+
+    /**
+     * Look up a key and put it on a miss, as the converter does.
+     * @return true if the key was found
+     */
+    private static boolean use(ConcurrentSchemaCache<String, Integer> cache, String key) {
+        if (cache.get(key) != null)
+            return true;
+        cache.put(key, key.length());
+        return false;
+    }
+}
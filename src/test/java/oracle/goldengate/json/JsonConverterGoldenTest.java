@@ -0,0 +1,237 @@
+package oracle.goldengate.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import oracle.goldengate.common.data.Date;
+import oracle.goldengate.common.data.Decimal;
+import oracle.goldengate.common.data.PrimitiveStruct;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaBuilder;
+import oracle.goldengate.common.data.Struct;
+import oracle.goldengate.common.data.Time;
+import oracle.goldengate.common.data.Timestamp;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the streamed output of {@link JsonConverter} byte for byte with the previous serialization, the JsonNode
+ * tree built by {@link JsonConverter#convertToJson(Schema, Object)}, wrapped in the envelope when schemas are enabled,
+ * written by {@link JsonSerializer}.
+ */
+public class JsonConverterGoldenTest {
+    private static final String TOPIC = "topic";
+
+    private static final String[] STRINGS = {
+        "",
+        "plain ascii",
+        "quote \" and backslash \\ and slash /",
+        "tab\tnewline\ncarriage return\rbackspace\bform feed\f",
+        "controls \u0000 \u0001 \u001f \u007f",
+        "non-ascii \u00e9\u00fc\u00f1 \u4e2d\u6587 \u0416",
+        "surrogate pair \ud83d\ude00 end",
+        "separators \u2028 \u2029",
+        "html </script> & <b>",
+        repeat('a', 5000),
+        repeat('\u00e9', 5000)
+    };
+
+    @Test
+    public void testPrimitivesMatch() {
+        assertGolden(Schema.INT8_SCHEMA, Byte.MIN_VALUE);
+        assertGolden(Schema.INT16_SCHEMA, Short.MAX_VALUE);
+        assertGolden(Schema.INT32_SCHEMA, Integer.MIN_VALUE);
+        assertGolden(Schema.INT64_SCHEMA, Long.MAX_VALUE);
+        assertGolden(Schema.BOOLEAN_SCHEMA, true);
+        assertGolden(Schema.BOOLEAN_SCHEMA, false);
+    }
+
+    @Test
+    public void testFloatsMatch() {
+        for (float value : new float[]{0f, -0f, 1.1f, Float.MIN_VALUE, Float.MAX_VALUE, Float.NaN,
+                Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY})
+            assertGolden(Schema.FLOAT32_SCHEMA, value);
+        for (double value : new double[]{0d, -0d, 0.1, 1e300, Double.MIN_VALUE, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY})
+            assertGolden(Schema.FLOAT64_SCHEMA, value);
+    }
+
+    @Test
+    public void testStringsMatch() {
+        for (String value : STRINGS) {
+            assertGolden(Schema.STRING_SCHEMA, value);
+            assertGolden(null, value);
+        }
+    }
+
+    @Test
+    public void testBytesMatch() {
+        byte[] bytes = {0, 1, 2, (byte) 0x7f, (byte) 0x80, (byte) 0xff};
+        assertGolden(Schema.BYTES_SCHEMA, bytes);
+        assertGolden(Schema.BYTES_SCHEMA, new byte[0]);
+        assertGolden(Schema.BYTES_SCHEMA, ByteBuffer.wrap(bytes));
+        assertGolden(null, bytes);
+    }
+
+    @Test
+    public void testLogicalTypesMatch() {
+        assertGolden(Decimal.schema(2), new BigDecimal("12345.67"));
+        assertGolden(Decimal.schema(0), new BigDecimal("-9"));
+        assertGolden(Date.SCHEMA, new java.util.Date(0L));
+        assertGolden(Time.SCHEMA, new java.util.Date(3723000L));
+        assertGolden(Timestamp.SCHEMA, new java.util.Date(1476705600123L));
+    }
+
+    @Test
+    public void testNullsAndDefaultsMatch() {
+        assertGolden(Schema.OPTIONAL_STRING_SCHEMA, null);
+        assertGolden(Schema.OPTIONAL_INT64_SCHEMA, null);
+        assertGolden(SchemaBuilder.string().optional().defaultValue("default \u00e9").build(), null);
+        assertGolden(SchemaBuilder.int32().defaultValue(42).build(), null);
+
+        Schema schema = SchemaBuilder.struct().name("defaults")
+                .field("optional", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("defaulted", SchemaBuilder.string().optional().defaultValue("none").build())
+                .field("number", SchemaBuilder.int64().optional().defaultValue(7L).build())
+                .build();
+        assertGolden(schema, new Struct(schema));
+        assertGolden(schema, new Struct(schema).put("optional", "set").put("defaulted", "set").put("number", 1L));
+    }
+
+    @Test
+    public void testArraysAndMapsMatch() {
+        Schema array = SchemaBuilder.array(Schema.OPTIONAL_INT32_SCHEMA).build();
+        assertGolden(array, Arrays.asList(1, null, 3));
+        assertGolden(array, Collections.emptyList());
+
+        Map<String, String> stringKeys = new LinkedHashMap<>();
+        stringKeys.put("a", "1");
+        stringKeys.put("quote\"d", "\u00e9");
+        stringKeys.put("nothing", null);
+        assertGolden(SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.OPTIONAL_STRING_SCHEMA).build(), stringKeys);
+
+        Map<Integer, Double> intKeys = new LinkedHashMap<>();
+        intKeys.put(1, 1.5);
+        intKeys.put(2, -2.5);
+        assertGolden(SchemaBuilder.map(Schema.INT32_SCHEMA, Schema.FLOAT64_SCHEMA).build(), intKeys);
+
+        Map<Object, Object> schemaless = new LinkedHashMap<>();
+        schemaless.put("name", "value");
+        schemaless.put("list", Arrays.<Object>asList(1L, "two", true));
+        assertGolden(null, schemaless);
+        Map<Object, Object> mixedKeys = new LinkedHashMap<>();
+        mixedKeys.put(1, "one");
+        mixedKeys.put("two", 2);
+        assertGolden(null, mixedKeys);
+        assertGolden(null, Arrays.<Object>asList(1, 2.5, "three", null));
+    }
+
+    @Test
+    public void testStructsMatch() {
+        Schema inner = SchemaBuilder.struct().name("inner")
+                .field("id", Schema.INT32_SCHEMA)
+                .field("label", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        Schema outer = SchemaBuilder.struct().name("outer")
+                .field("int8", Schema.INT8_SCHEMA)
+                .field("int16", Schema.INT16_SCHEMA)
+                .field("int32", Schema.INT32_SCHEMA)
+                .field("int64", Schema.INT64_SCHEMA)
+                .field("float32", Schema.FLOAT32_SCHEMA)
+                .field("float64", Schema.FLOAT64_SCHEMA)
+                .field("boolean", Schema.BOOLEAN_SCHEMA)
+                .field("string", Schema.STRING_SCHEMA)
+                .field("bytes", Schema.BYTES_SCHEMA)
+                .field("decimal", Decimal.schema(3))
+                .field("timestamp", Timestamp.SCHEMA)
+                .field("optional", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("inner", inner)
+                .field("inners", SchemaBuilder.array(inner).build())
+                .field("map", SchemaBuilder.map(Schema.STRING_SCHEMA, Schema.INT64_SCHEMA).build())
+                .build();
+        Map<String, Long> map = new HashMap<>();
+        map.put("k", 1L);
+        List<Struct> inners = new ArrayList<>();
+        inners.add(new Struct(inner).put("id", 1).put("label", "first"));
+        inners.add(new Struct(inner).put("id", 2));
+        for (String text : STRINGS) {
+            Struct struct = new Struct(outer)
+                    .put("int8", (byte) -1)
+                    .put("int16", (short) 300)
+                    .put("int32", 70000)
+                    .put("int64", -5000000000L)
+                    .put("float32", 1.25f)
+                    .put("float64", -0.001)
+                    .put("boolean", true)
+                    .put("string", text)
+                    .put("bytes", text.getBytes(StandardCharsets.UTF_8))
+                    .put("decimal", new BigDecimal("3.141"))
+                    .put("timestamp", new java.util.Date(1476705600123L))
+                    .put("inner", new Struct(inner).put("id", 0).put("label", text))
+                    .put("inners", inners)
+                    .put("map", map);
+            assertGolden(outer, struct);
+        }
+    }
+
+    @Test
+    public void testPrimitiveStructsMatch() {
+        Schema schema = SchemaBuilder.struct().name("primitive")
+                .field("id", Schema.INT64_SCHEMA)
+                .field("price", Schema.OPTIONAL_FLOAT64_SCHEMA)
+                .field("qty", Schema.OPTIONAL_INT64_SCHEMA)
+                .field("name", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        PrimitiveStruct struct = new PrimitiveStruct(schema);
+        struct.putLong(0, 12345L);
+        struct.putDouble(1, 99.95);
+        struct.put("name", "widget \u00e9");
+        assertGolden(schema, struct);
+    }
+
+    /**
+     * Check every output path of the converter, with and without the envelope, against the tree serialization.
+     */
+    private static void assertGolden(Schema schema, Object value) {
+        for (boolean enableSchemas : new boolean[]{true, false}) {
+            JsonConverter converter = new JsonConverter();
+            converter.configure(Collections.singletonMap("schemas.enable", String.valueOf(enableSchemas)), false);
+            JsonNode tree = JsonConverter.convertToJson(schema, value);
+            if (enableSchemas)
+                tree = JsonSchema.envelope(converter.asJsonSchema(schema), tree);
+            String expected = new String(new JsonSerializer().serialize(TOPIC, tree), StandardCharsets.UTF_8);
+            String message = "schemas.enable=" + enableSchemas + ", schema " + schema;
+
+            assertEquals(message, expected, utf8(converter.fromConnectData(TOPIC, schema, value)));
+
+            ByteBuffer buffer = converter.fromConnectData(TOPIC, schema, value, ByteBuffer.allocate(1 << 16));
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            assertEquals(message, expected, utf8(bytes));
+
+            byte[][] batch = converter.fromConnectData(TOPIC, schema, new Object[]{value, value}, 0, 2);
+            assertEquals(message, expected, utf8(batch[0]));
+            assertEquals(message, expected, utf8(batch[1]));
+        }
+    }
+
+    private static String utf8(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
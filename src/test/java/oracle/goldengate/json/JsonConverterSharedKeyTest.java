@@ -0,0 +1,147 @@
+package oracle.goldengate.json;
+
+import oracle.goldengate.common.data.PrimitiveStruct;
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaBuilder;
+import oracle.goldengate.common.data.Struct;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the key assembled from the key fields serialized with the value is identical to the output of the key
+ * converter, and the value to the output of the value converter, for every envelope configuration.
+ */
+public class JsonConverterSharedKeyTest {
+    private static final String TOPIC = "topic";
+
+    private static final Schema KEY_SCHEMA = SchemaBuilder.struct().name("GG.TCUSTORD")
+            .field("CUST_CODE", Schema.STRING_SCHEMA)
+            .field("ORDER_ID", Schema.INT64_SCHEMA)
+            .build();
+    private static final Schema VALUE_SCHEMA = SchemaBuilder.struct().name("GG.TCUSTORD")
+            .field("ORDER_DATE", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("ORDER_ID", Schema.INT64_SCHEMA)
+            .field("CUST_CODE", Schema.STRING_SCHEMA)
+            .field("PRICE", Schema.OPTIONAL_FLOAT64_SCHEMA)
+            .build();
+    // A key field the value does not hold
+    private static final Schema WIDER_KEY_SCHEMA = SchemaBuilder.struct().name("GG.TCUSTORD")
+            .field("CUST_CODE", Schema.STRING_SCHEMA)
+            .field("PRODUCT_CODE", Schema.STRING_SCHEMA)
+            .build();
+
+    @Test
+    public void testKeyMatchesKeyConverter() {
+        for (Converters converters : allConfigurations()) {
+            Struct value = new Struct(VALUE_SCHEMA).put("ORDER_DATE", "2016-10-17").put("ORDER_ID", 42L)
+                    .put("CUST_CODE", "WILL \"\u00e9\"").put("PRICE", 12.5);
+            Struct key = new Struct(KEY_SCHEMA).put("CUST_CODE", "WILL \"\u00e9\"").put("ORDER_ID", 42L);
+            converters.assertShared(KEY_SCHEMA, key, VALUE_SCHEMA, value);
+        }
+    }
+
+    @Test
+    public void testPrimitiveKeyMatchesKeyConverter() {
+        for (Converters converters : allConfigurations()) {
+            PrimitiveStruct value = new PrimitiveStruct(VALUE_SCHEMA);
+            value.putLong(1, -7L);
+            value.putDouble(3, 0.1);
+            value.put("CUST_CODE", "JANE");
+            PrimitiveStruct key = new PrimitiveStruct(KEY_SCHEMA);
+            key.put("CUST_CODE", "JANE");
+            key.putLong(1, -7L);
+            converters.assertShared(KEY_SCHEMA, key, VALUE_SCHEMA, value);
+        }
+    }
+
+    @Test
+    public void testMaskedKeyFallsBackToKeyConverter() {
+        for (Converters converters : allConfigurations()) {
+            // The value column is masked, the key holds the original
+            Struct value = new Struct(VALUE_SCHEMA).put("ORDER_ID", 42L).put("CUST_CODE", "****");
+            Struct key = new Struct(KEY_SCHEMA).put("CUST_CODE", "WILL").put("ORDER_ID", 42L);
+            converters.assertShared(KEY_SCHEMA, key, VALUE_SCHEMA, value);
+
+            PrimitiveStruct primitiveValue = new PrimitiveStruct(VALUE_SCHEMA);
+            primitiveValue.putLong(1, 0L);
+            primitiveValue.put("CUST_CODE", "WILL");
+            PrimitiveStruct primitiveKey = new PrimitiveStruct(KEY_SCHEMA);
+            primitiveKey.put("CUST_CODE", "WILL");
+            primitiveKey.putLong(1, 42L);
+            converters.assertShared(KEY_SCHEMA, primitiveKey, VALUE_SCHEMA, primitiveValue);
+        }
+    }
+
+    @Test
+    public void testKeyFieldMissingFromValueFallsBackToKeyConverter() {
+        for (Converters converters : allConfigurations()) {
+            Struct value = new Struct(VALUE_SCHEMA).put("ORDER_ID", 42L).put("CUST_CODE", "WILL");
+            Struct key = new Struct(WIDER_KEY_SCHEMA).put("CUST_CODE", "WILL").put("PRODUCT_CODE", "CAR");
+            converters.assertShared(WIDER_KEY_SCHEMA, key, VALUE_SCHEMA, value);
+            converters.assertShared(Schema.STRING_SCHEMA, "WILL", VALUE_SCHEMA, value);
+        }
+    }
+
+    /**
+     * Every combination of schemas.enable for the key and the value converter, with and without schema references.
+     */
+    private static List<Converters> allConfigurations() {
+        List<Converters> configurations = new ArrayList<>();
+        for (boolean reference : new boolean[]{false, true}) {
+            for (boolean keySchemas : new boolean[]{true, false}) {
+                for (boolean valueSchemas : new boolean[]{true, false})
+                    configurations.add(new Converters(keySchemas, valueSchemas, reference));
+            }
+        }
+        return configurations;
+    }
+
+    private static JsonConverter converter(boolean enableSchemas, boolean reference, boolean isKey) {
+        Map<String, String> config = new HashMap<>();
+        config.put("schemas.enable", String.valueOf(enableSchemas));
+        config.put("schemas.reference.enable", String.valueOf(reference));
+        JsonConverter converter = new JsonConverter();
+        converter.configure(config, isKey);
+        if (reference) {
+            converter.setSchemaPublisher(new SchemaPublisher() {
+                @Override
+                public void publish(String topic, String fingerprint, byte[] jsonSchema) {
+                }
+            });
+        }
+        return converter;
+    }
+
+    private static final class Converters {
+        private final JsonConverter keyConverter;
+        private final JsonConverter valueConverter;
+        private final String description;
+
+        Converters(boolean keySchemas, boolean valueSchemas, boolean reference) {
+            keyConverter = converter(keySchemas, reference, true);
+            valueConverter = converter(valueSchemas, reference, false);
+            description = "key schemas.enable=" + keySchemas + ", value schemas.enable=" + valueSchemas
+                    + ", schemas.reference.enable=" + reference;
+        }
+
+        void assertShared(Schema keySchema, Object key, Schema valueSchema, Object value) {
+            // Twice, so that the second conversion uses the cached key field indexes and envelope prefixes
+            for (int i = 0; i < 2; i++) {
+                byte[][] shared = valueConverter.fromConnectData(TOPIC, keyConverter, keySchema, key, valueSchema, value);
+                assertEquals(description, utf8(keyConverter.fromConnectData(TOPIC, keySchema, key)), utf8(shared[0]));
+                assertEquals(description, utf8(valueConverter.fromConnectData(TOPIC, valueSchema, value)), utf8(shared[1]));
+            }
+        }
+    }
+
+    private static String utf8(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,164 @@
+package oracle.goldengate.json;
+
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaAndValue;
+import oracle.goldengate.common.data.SchemaBuilder;
+import oracle.goldengate.common.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class JsonConverterTest {
+    private static final String TOPIC = "topic";
+
+    private static final Schema SCHEMA = SchemaBuilder.struct().name("GG.TCUSTMER")
+            .field("CUST_CODE", Schema.STRING_SCHEMA)
+            .field("NAME", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("BALANCE", Schema.OPTIONAL_FLOAT64_SCHEMA)
+            .build();
+
+    private static JsonConverter converter(boolean enableSchemas) {
+        JsonConverter converter = new JsonConverter();
+        converter.configure(Collections.singletonMap("schemas.enable", String.valueOf(enableSchemas)), false);
+        return converter;
+    }
+
+    @Test
+    public void testEnvelopeRoundTrip() {
+        JsonConverter converter = converter(true);
+        Struct struct = new Struct(SCHEMA).put("CUST_CODE", "WILL").put("NAME", "BG SOFTWARE \u00e9").put("BALANCE", 1.5);
+        SchemaAndValue first = converter.toConnectData(TOPIC, converter.fromConnectData(TOPIC, SCHEMA, struct));
+        assertEquals(SCHEMA, first.schema());
+        assertEquals(struct, first.value());
+
+        Struct other = new Struct(SCHEMA).put("CUST_CODE", "JANE");
+        SchemaAndValue second = converter.toConnectData(TOPIC, converter.fromConnectData(TOPIC, SCHEMA, other));
+        assertSame(first.schema(), second.schema());
+        assertEquals(other, second.value());
+    }
+
+    @Test
+    public void testEnvelopeFieldOrderAndNullSchema() {
+        JsonConverter converter = converter(true);
+        SchemaAndValue reordered = converter.toConnectData(TOPIC,
+                bytes("{\"payload\":\"text\",\"schema\":{\"type\":\"string\",\"optional\":false}}"));
+        assertEquals(Schema.STRING_SCHEMA, reordered.schema());
+        assertEquals("text", reordered.value());
+
+        SchemaAndValue spaced = converter.toConnectData(TOPIC,
+                bytes(" { \"schema\" :\n {\"type\": \"string\", \"optional\": false} , \"payload\" : \"text\" } "));
+        assertSame(reordered.schema(), spaced.schema());
+
+        SchemaAndValue schemaless = converter.toConnectData(TOPIC, bytes("{\"schema\":null,\"payload\":12}"));
+        assertNull(schemaless.schema());
+        assertEquals(12L, schemaless.value());
+
+        assertSame(SchemaAndValue.NULL, converter.toConnectData(TOPIC, null));
+    }
+
+    @Test
+    public void testPlainJsonWithoutSchemas() {
+        SchemaAndValue value = converter(false).toConnectData(TOPIC, bytes("\"text\""));
+        assertNull(value.schema());
+        assertEquals("text", value.value());
+    }
+
+    @Test(expected = DataException.class)
+    public void testMissingPayloadIsRejected() {
+        converter(true).toConnectData(TOPIC, bytes("{\"schema\":null}"));
+    }
+
+    @Test(expected = DataException.class)
+    public void testAdditionalFieldIsRejected() {
+        converter(true).toConnectData(TOPIC, bytes("{\"schema\":null,\"payload\":1,\"extra\":2}"));
+    }
+
+    @Test(expected = DataException.class)
+    public void testPlainJsonIsRejectedWithSchemas() {
+        converter(true).toConnectData(TOPIC, bytes("\"text\""));
+    }
+
+    @Test
+    public void testTombstoneRoundTrip() {
+        for (boolean enableSchemas : new boolean[]{true, false}) {
+            JsonConverter converter = converter(enableSchemas);
+            // A null schema with a null value is a tombstone, written as a null Kafka value on every path
+            byte[] bytes = converter.fromConnectData(TOPIC, null, null);
+            assertNull(bytes);
+            assertNull(converter.fromConnectData(TOPIC, null, null, ByteBuffer.allocate(64)));
+            byte[][] batch = converter.fromConnectData(TOPIC, null, new Object[]{null, "text", null}, 0, 3);
+            assertNull(batch[0]);
+            assertEquals("text", converter.toConnectData(TOPIC, batch[1]).value());
+            assertNull(batch[2]);
+            assertSame(SchemaAndValue.NULL, converter.toConnectData(TOPIC, bytes));
+        }
+    }
+
+    @Test
+    public void testNullValueWithSchemaIsNotATombstone() {
+        JsonConverter converter = converter(true);
+        byte[] bytes = converter.fromConnectData(TOPIC, Schema.OPTIONAL_STRING_SCHEMA, null);
+        assertEquals("{\"schema\":{\"type\":\"string\",\"optional\":true},\"payload\":null}",
+                new String(bytes, StandardCharsets.UTF_8));
+        SchemaAndValue value = converter.toConnectData(TOPIC, bytes);
+        assertEquals(Schema.OPTIONAL_STRING_SCHEMA, value.schema());
+        assertNull(value.value());
+    }
+
+    @Test
+    public void testSchemaReferencesArePublishedOnce() {
+        final List<String> published = new ArrayList<>();
+        // The compacted schema topic, the last schema record of each fingerprint
+        final Map<String, byte[]> schemaTopic = new LinkedHashMap<>();
+        JsonConverter converter = new JsonConverter();
+        Map<String, String> config = new HashMap<>();
+        config.put("schemas.reference.enable", "true");
+        // A single cache entry, so the envelope prefixes of the two schemas keep evicting each other
+        config.put("schemas.cache.size", "1");
+        converter.configure(config, false);
+        converter.setSchemaPublisher(new SchemaPublisher() {
+            @Override
+            public void publish(String topic, String fingerprint, byte[] jsonSchema) {
+                assertEquals("gg_schemas", topic);
+                published.add(fingerprint);
+                schemaTopic.put(fingerprint, jsonSchema);
+            }
+        });
+        Schema other = SchemaBuilder.struct().name("GG.TCUSTORD").field("ORDER_ID", Schema.INT64_SCHEMA).build();
+
+        List<byte[]> records = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Struct customer = new Struct(SCHEMA).put("CUST_CODE", "C" + i);
+            Struct order = new Struct(other).put("ORDER_ID", (long) i);
+            records.add(converter.fromConnectData(TOPIC, SCHEMA, customer));
+            records.add(converter.fromConnectData(TOPIC, other, order));
+            values.add(customer);
+            values.add(order);
+        }
+        assertEquals(2, published.size());
+        assertEquals(2, new HashMap<>(schemaTopic).size());
+
+        SchemaReferenceDecoder decoder = new SchemaReferenceDecoder();
+        for (Map.Entry<String, byte[]> schemaRecord : schemaTopic.entrySet())
+            decoder.addSchema(schemaRecord.getKey().getBytes(StandardCharsets.UTF_8), schemaRecord.getValue());
+        for (int i = 0; i < records.size(); i++)
+            assertEquals(values.get(i), decoder.toConnectData(TOPIC, records.get(i)).value());
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import kafka.server.KafkaConfig;
+import kafka.server.KafkaServerStartable;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+/**
+ * A single Kafka broker and its ZooKeeper server running in the test
+ * process, on free local ports and temporary directories.
+ */
+public class EmbeddedKafka {
+    private File dir;
+    private NIOServerCnxnFactory zookeeperFactory;
+    private KafkaServerStartable broker;
+    private String bootstrapServers;
+
+    /**
+     * Method to start ZooKeeper and the broker.
+     * @param brokerProps Broker settings added to or overriding the defaults.
+     * @throws IOException If the servers cannot be started.
+     * @throws InterruptedException If interrupted while starting.
+     */
+    public void start(Properties brokerProps) throws IOException, InterruptedException{
+        dir = Files.createTempDirectory("embedded-kafka").toFile();
+        File zookeeperDir = new File(dir, "zookeeper");
+        ZooKeeperServer zookeeper = new ZooKeeperServer(zookeeperDir, zookeeperDir, 500);
+        zookeeperFactory = new NIOServerCnxnFactory();
+        zookeeperFactory.configure(new InetSocketAddress("localhost", 0), 100);
+        zookeeperFactory.startup(zookeeper);
+
+        int port = freePort();
+        Properties props = new Properties();
+        props.put("broker.id", "0");
+        props.put("host.name", "localhost");
+        props.put("port", String.valueOf(port));
+        props.put("zookeeper.connect", "localhost:" + zookeeperFactory.getLocalPort());
+        props.put("log.dirs", new File(dir, "kafka").getPath());
+        props.put("num.partitions", "1");
+        props.put("auto.create.topics.enable", "true");
+        props.put("offsets.topic.replication.factor", "1");
+        props.putAll(brokerProps);
+        broker = new KafkaServerStartable(KafkaConfig.fromProps(props));
+        broker.startup();
+        bootstrapServers = "localhost:" + port;
+    }
+
+    /**
+     * Method to stop the broker and ZooKeeper and delete their files.
+     */
+    public void stop(){
+        if (broker != null){
+            broker.shutdown();
+            broker.awaitShutdown();
+            broker = null;
+        }
+        if (zookeeperFactory != null){
+            zookeeperFactory.shutdown();
+            zookeeperFactory = null;
+        }
+        if (dir != null){
+            delete(dir);
+            dir = null;
+        }
+    }
+
+    /**
+     * Method to get the bootstrap servers of the broker.
+     * @return The host and port of the broker.
+     */
+    public String getBootstrapServers(){
+        return bootstrapServers;
+    }
+
+    /**
+     * Method to read a topic of one partition from the beginning.  Polls
+     * until the expected number of records has been read and then once more,
+     * so that unexpected additional records are returned as well.
+     * @param topic The topic name.
+     * @param expected The number of records expected.
+     * @param timeoutMs The maximum time to wait for the records.
+     * @return The records in offset order.
+     */
+    public List<ConsumerRecord<byte[], byte[]>> readAll(String topic, int expected, long timeoutMs){
+        Properties props = new Properties();
+        props.put("bootstrap.servers", bootstrapServers);
+        props.put("group.id", "embedded-kafka-reader");
+        props.put("enable.auto.commit", "false");
+        props.put("key.deserializer", ByteArrayDeserializer.class.getName());
+        props.put("value.deserializer", ByteArrayDeserializer.class.getName());
+        List<ConsumerRecord<byte[], byte[]>> records = new ArrayList<>();
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props)){
+            TopicPartition partition = new TopicPartition(topic, 0);
+            consumer.assign(Collections.singletonList(partition));
+            consumer.seekToBeginning(partition);
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while ((records.size() < expected) && (System.currentTimeMillis() < deadline)){
+                for (ConsumerRecord<byte[], byte[]> record : consumer.poll(200)){
+                    records.add(record);
+                }
+            }
+            for (ConsumerRecord<byte[], byte[]> record : consumer.poll(500)){
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static int freePort() throws IOException{
+        try (ServerSocket socket = new ServerSocket(0)){
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void delete(File file){
+        File[] children = file.listFiles();
+        if (children != null){
+            for (File child : children){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
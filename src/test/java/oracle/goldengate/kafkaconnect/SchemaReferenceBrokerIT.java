@@ -0,0 +1,140 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaAndValue;
+import oracle.goldengate.common.data.SchemaBuilder;
+import oracle.goldengate.common.data.Struct;
+import oracle.goldengate.datasource.GGDataSource.Status;
+import oracle.goldengate.json.JsonConverter;
+import oracle.goldengate.json.SchemaReferenceDecoder;
+import oracle.goldengate.source.SourceRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Publishes records in schema reference mode through GGProducer to an
+ * in-process broker, reads the schema topic as a consumer would after
+ * compaction and decodes the data records with a SchemaReferenceDecoder.
+ * Starts a broker, so it only runs in the integration profile:
+ * mvn verify -Pintegration
+ */
+public class SchemaReferenceBrokerIT {
+    private static final String SCHEMA_TOPIC = "gg_schemas";
+    private static final String DATA_TOPIC = "GG_TCUSTMER";
+    private static final long TIMEOUT_MS = 30000;
+
+    private static final Schema KEY_SCHEMA = SchemaBuilder.struct().name("GG.TCUSTMER")
+            .field("CUST_CODE", Schema.STRING_SCHEMA).build();
+    private static final Schema VALUE_SCHEMA = SchemaBuilder.struct().name("GG.TCUSTMER")
+            .field("CUST_CODE", Schema.STRING_SCHEMA)
+            .field("NAME", Schema.OPTIONAL_STRING_SCHEMA).build();
+    //The table after a column was added
+    private static final Schema ALTERED_VALUE_SCHEMA = SchemaBuilder.struct().name("GG.TCUSTMER")
+            .field("CUST_CODE", Schema.STRING_SCHEMA)
+            .field("NAME", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("CITY", Schema.OPTIONAL_STRING_SCHEMA).build();
+
+    private final EmbeddedKafka kafka = new EmbeddedKafka();
+    private final List<SourceRecord> sent = new ArrayList<>();
+
+    @Before
+    public void startKafka() throws Exception{
+        kafka.start(new Properties());
+    }
+
+    @After
+    public void stopKafka(){
+        kafka.stop();
+    }
+
+    @Test
+    public void publishesEachSchemaOncePerProducerAndDecodes() throws Exception{
+        //Two producer sessions, as with a restart of the process
+        for (int session = 0; session < 2; session++){
+            GGProducer producer = new GGProducer();
+            producer.init(producerProps());
+            try {
+                for (int i = 0; i < 20; i++){
+                    send(producer, VALUE_SCHEMA, new Struct(VALUE_SCHEMA)
+                            .put("CUST_CODE", "C" + i).put("NAME", "NAME" + i));
+                    send(producer, ALTERED_VALUE_SCHEMA, new Struct(ALTERED_VALUE_SCHEMA)
+                            .put("CUST_CODE", "C" + i).put("CITY", "CITY" + session));
+                }
+                assertEquals(Status.OK, producer.flush());
+            } finally {
+                producer.close();
+            }
+        }
+
+        //Each schema once per producer session, never once per record
+        List<ConsumerRecord<byte[], byte[]>> schemaRecords = kafka.readAll(SCHEMA_TOPIC, 4, TIMEOUT_MS);
+        assertEquals(4, schemaRecords.size());
+        Map<String, Integer> publications = new HashMap<>();
+        //The view of the topic after compaction, the last record of each fingerprint
+        Map<String, byte[]> compacted = new LinkedHashMap<>();
+        for (ConsumerRecord<byte[], byte[]> record : schemaRecords){
+            String fingerprint = new String(record.key(), "UTF-8");
+            Integer count = publications.get(fingerprint);
+            publications.put(fingerprint, (count == null) ? 1 : count + 1);
+            compacted.put(fingerprint, record.value());
+        }
+        assertEquals(2, publications.size());
+        for (Integer count : publications.values()){
+            assertEquals(Integer.valueOf(2), count);
+        }
+
+        SchemaReferenceDecoder decoder = new SchemaReferenceDecoder();
+        for (Map.Entry<String, byte[]> schema : compacted.entrySet()){
+            decoder.addSchema(schema.getKey().getBytes("UTF-8"), schema.getValue());
+        }
+        JsonConverter keyConverter = new JsonConverter();
+        keyConverter.configure(new HashMap<String, Object>(), true);
+        List<ConsumerRecord<byte[], byte[]>> dataRecords = kafka.readAll(DATA_TOPIC, sent.size(), TIMEOUT_MS);
+        assertEquals(sent.size(), dataRecords.size());
+        for (int i = 0; i < sent.size(); i++){
+            SchemaAndValue key = keyConverter.toConnectData(DATA_TOPIC, dataRecords.get(i).key());
+            SchemaAndValue value = decoder.toConnectData(DATA_TOPIC, dataRecords.get(i).value());
+            assertEquals(sent.get(i).key(), key.value());
+            assertEquals(sent.get(i).valueSchema(), value.schema());
+            assertEquals(sent.get(i).value(), value.value());
+        }
+    }
+
+    private void send(GGProducer producer, Schema valueSchema, Struct value){
+        Struct key = new Struct(KEY_SCHEMA).put("CUST_CODE", value.getString("CUST_CODE"));
+        SourceRecord record = new SourceRecord(null, null, DATA_TOPIC, 0, KEY_SCHEMA, key, valueSchema, value);
+        assertEquals(Status.OK, producer.send(record));
+        sent.add(record);
+    }
+
+    private Properties producerProps(){
+        Properties props = new Properties();
+        props.put("bootstrap.servers", kafka.getBootstrapServers());
+        props.put("key.serializer", ByteArraySerializer.class.getName());
+        props.put("value.serializer", ByteArraySerializer.class.getName());
+        props.put("key.converter", JsonConverter.class.getName());
+        props.put("value.converter", JsonConverter.class.getName());
+        props.put("internal.key.converter", JsonConverter.class.getName());
+        props.put("internal.value.converter", JsonConverter.class.getName());
+        props.put("value.converter.schemas.reference.enable", "true");
+        props.put("value.converter.schemas.reference.topic", SCHEMA_TOPIC);
+        return props;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.filter;
+
+import oracle.goldengate.util.ConfigException;
+import org.junit.Test;
+
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_DELETE;
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_INSERT;
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_TRUNCATE;
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_UNIFIED_PK_UPDATE_VAL;
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_UPDATE;
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_UPDATE_AC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OperationFilterTest {
+
+    @Test
+    public void includesTablesMatchingAGlob(){
+        OperationFilter filter = new OperationFilter("GG.TCUST*, GG.ORDER?", null, null);
+        assertTrue(filter.acceptTableName("GG.TCUSTMER"));
+        assertTrue(filter.acceptTableName("GG.TCUSTORD"));
+        assertTrue(filter.acceptTableName("gg.tcustmer"));
+        assertTrue(filter.acceptTableName("GG.ORDERS"));
+        assertFalse(filter.acceptTableName("GG.ORDER"));
+        assertFalse(filter.acceptTableName("GG.ORDERS2"));
+        assertFalse(filter.acceptTableName("HR.TCUSTMER"));
+    }
+
+    @Test
+    public void excludesTables(){
+        OperationFilter filter = new OperationFilter("GG.*, !GG.AUDIT*", null, null);
+        assertTrue(filter.acceptTableName("GG.TCUSTMER"));
+        assertFalse(filter.acceptTableName("GG.AUDIT_LOG"));
+        assertFalse(filter.acceptTableName("HR.EMP"));
+
+        //Only exclusions, so every other table is included
+        OperationFilter excludesOnly = new OperationFilter("!GG.AUDIT*", null, null);
+        assertTrue(excludesOnly.acceptTableName("GG.TCUSTMER"));
+        assertTrue(excludesOnly.acceptTableName("HR.EMP"));
+        assertFalse(excludesOnly.acceptTableName("GG.AUDIT_LOG"));
+
+        OperationFilter all = new OperationFilter(null, null, null);
+        assertTrue(all.acceptTableName("GG.TCUSTMER"));
+    }
+
+    @Test
+    public void quotesRegularExpressionCharacters(){
+        OperationFilter filter = new OperationFilter("GG.T$1", null, null);
+        assertTrue(filter.acceptTableName("GG.T$1"));
+        assertFalse(filter.acceptTableName("GGXT$1"));
+        assertTrue(OperationFilter.compileGlob(" A+B* ").matcher("a+b_c").matches());
+        assertFalse(OperationFilter.compileGlob("A+B").matcher("AAB").matches());
+    }
+
+    @Test
+    public void selectsOperationTypes(){
+        OperationFilter filter = new OperationFilter(null, "insert, DELETE", null);
+        assertTrue(filter.acceptOpType(DO_INSERT));
+        assertTrue(filter.acceptOpType(DO_DELETE));
+        assertFalse(filter.acceptOpType(DO_UPDATE));
+        assertFalse(filter.acceptOpType(DO_UPDATE_AC));
+        assertFalse(filter.acceptOpType(DO_UNIFIED_PK_UPDATE_VAL));
+        assertFalse(filter.acceptOpType(DO_TRUNCATE));
+    }
+
+    @Test
+    public void separatesUpdatesAndPrimaryKeyUpdates(){
+        OperationFilter updates = new OperationFilter(null, "UPDATE", null);
+        assertTrue(updates.acceptOpType(DO_UPDATE));
+        assertTrue(updates.acceptOpType(DO_UPDATE_AC));
+        assertFalse(updates.acceptOpType(DO_UNIFIED_PK_UPDATE_VAL));
+
+        OperationFilter pkUpdates = new OperationFilter(null, "PKUPDATE,TRUNCATE", null);
+        assertTrue(pkUpdates.acceptOpType(DO_UNIFIED_PK_UPDATE_VAL));
+        assertTrue(pkUpdates.acceptOpType(DO_TRUNCATE));
+        assertFalse(pkUpdates.acceptOpType(DO_UPDATE));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void rejectsAnUnknownOperationType(){
+        new OperationFilter(null, "INSERT,UPSERT", null);
+    }
+
+    @Test
+    public void compilesRowPredicates(){
+        OperationFilter filter = new OperationFilter(null, null, "GG.T:ID = 1; ;GG.U:NAME = NULL;");
+        StringBuilder sb = new StringBuilder();
+        filter.appendStatus(sb);
+        assertEquals(", filtered operations=0 (tables=0, operation types=0, [GG.T:ID = 1]=0, [GG.U:NAME = NULL]=0)",
+                sb.toString());
+    }
+}
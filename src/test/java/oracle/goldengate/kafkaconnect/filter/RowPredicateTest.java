@@ -0,0 +1,109 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.filter;
+
+import oracle.goldengate.util.ConfigException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RowPredicateTest {
+
+    @Test
+    public void comparesLongsAboveTwoToTheFiftyThreeExactly(){
+        RowPredicate eq = new RowPredicate("GG.T:ID = 9007199254740993");
+        assertTrue(eq.matches(false, "9007199254740993"));
+        assertFalse(eq.matches(false, "9007199254740992"));
+        assertFalse(eq.matches(false, "9007199254740994"));
+
+        RowPredicate gt = new RowPredicate("GG.T:ID > 9007199254740992");
+        assertTrue(gt.matches(false, "9007199254740993"));
+        assertFalse(gt.matches(false, "9007199254740992"));
+    }
+
+    @Test
+    public void comparesNumbersBeyondTheRangeOfALong(){
+        RowPredicate eq = new RowPredicate("GG.T:ID = 123456789012345678901234567890");
+        assertTrue(eq.matches(false, "123456789012345678901234567890"));
+        assertFalse(eq.matches(false, "123456789012345678901234567891"));
+
+        //An integral literal against a column value too large for a long
+        RowPredicate lt = new RowPredicate("GG.T:ID < 9223372036854775807");
+        assertFalse(lt.matches(false, "9223372036854775808"));
+        assertTrue(lt.matches(false, "-9223372036854775809"));
+    }
+
+    @Test
+    public void comparesDecimalsExactly(){
+        RowPredicate ge = new RowPredicate("GG.T:AMOUNT >= 1000");
+        assertTrue(ge.matches(false, "1000"));
+        assertTrue(ge.matches(false, "1000.00"));
+        assertTrue(ge.matches(false, " 1e3 "));
+        assertFalse(ge.matches(false, "999.999999999999999999"));
+
+        RowPredicate eq = new RowPredicate("GG.T:AMOUNT = 0.1");
+        assertTrue(eq.matches(false, "0.10"));
+        assertFalse(eq.matches(false, "0.1000000000000000055511151231257827"));
+        assertFalse(eq.matches(false, "0"));
+    }
+
+    @Test
+    public void comparesStrings(){
+        RowPredicate quoted = new RowPredicate("GG.T:CODE = '100'");
+        assertTrue(quoted.matches(false, "100"));
+        assertFalse(quoted.matches(false, "100.0"));
+
+        RowPredicate text = new RowPredicate("GG.T:CODE <> WILL");
+        assertTrue(text.matches(false, "JANE"));
+        assertFalse(text.matches(false, "WILL"));
+
+        //A column value that is not a number is compared as a string
+        RowPredicate number = new RowPredicate("GG.T:CODE > 5");
+        assertTrue(number.matches(false, "A"));
+    }
+
+    @Test
+    public void comparesNulls(){
+        RowPredicate isNull = new RowPredicate("GG.T:NAME = NULL");
+        assertTrue(isNull.matches(true, null));
+        assertFalse(isNull.matches(false, "x"));
+        RowPredicate notNull = new RowPredicate("GG.T:NAME != null");
+        assertTrue(notNull.matches(false, "x"));
+        assertFalse(notNull.matches(true, null));
+
+        //A null value satisfies no comparison
+        assertFalse(new RowPredicate("GG.T:ID = 1").matches(true, null));
+        assertFalse(new RowPredicate("GG.T:ID != 1").matches(true, null));
+    }
+
+    @Test
+    public void parsesTheTableColumnAndOperator(){
+        RowPredicate predicate = new RowPredicate("  GG.TCUST*:ORDER_AMOUNT<=10  ");
+        assertEquals("ORDER_AMOUNT", predicate.getColumnName());
+        assertTrue(predicate.appliesTo("gg.tcustord"));
+        assertFalse(predicate.appliesTo("GG.ORDERS"));
+        assertTrue(predicate.matches(false, "10"));
+        assertFalse(predicate.matches(false, "11"));
+        assertEquals("GG.TCUST*:ORDER_AMOUNT<=10", predicate.toString());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void rejectsAMissingTable(){
+        new RowPredicate("ID = 1");
+    }
+
+    @Test(expected = ConfigException.class)
+    public void rejectsAMissingOperator(){
+        new RowPredicate("GG.T:ID 1");
+    }
+
+    @Test(expected = ConfigException.class)
+    public void rejectsOrderingAgainstNull(){
+        new RowPredicate("GG.T:ID < NULL");
+    }
+}
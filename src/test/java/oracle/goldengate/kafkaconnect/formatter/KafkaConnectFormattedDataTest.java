@@ -0,0 +1,65 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaBuilder;
+import oracle.goldengate.common.data.Struct;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class KafkaConnectFormattedDataTest {
+    private static final Schema KEY_SCHEMA = SchemaBuilder.struct().name("GG.T")
+            .field("ID", Schema.INT64_SCHEMA).build();
+    private static final Schema PAYLOAD_SCHEMA = SchemaBuilder.struct().name("GG.T")
+            .field("op_type", Schema.STRING_SCHEMA)
+            .field("ID", Schema.INT64_SCHEMA)
+            .field("NAME", Schema.OPTIONAL_STRING_SCHEMA).build();
+
+    @Test
+    public void keepsTheDeleteEventBeforeTheTombstone(){
+        Struct key = new Struct(KEY_SCHEMA).put("ID", 1L);
+        Struct event = new Struct(PAYLOAD_SCHEMA).put("op_type", "D").put("ID", 1L);
+        KafkaConnectFormattedData data = new KafkaConnectFormattedData(true);
+        data.addRecord(key, event, "routed");
+        data.addRecord(key, null, "routed");
+
+        assertEquals(2, data.size());
+        assertSame(key, data.getKey(0));
+        assertSame(event, data.getRecord(0));
+        assertEquals("routed", data.getTopic(0));
+        //The tombstone has the same key and topic and a null payload
+        assertSame(key, data.getKey(1));
+        assertNull(data.getRecord(1));
+        assertEquals("routed", data.getTopic(1));
+    }
+
+    @Test
+    public void holdsAPrimaryKeyUpdateAsEventTombstoneAndInsert(){
+        Struct beforeKey = new Struct(KEY_SCHEMA).put("ID", 1L);
+        Struct afterKey = new Struct(KEY_SCHEMA).put("ID", 2L);
+        Struct event = new Struct(PAYLOAD_SCHEMA).put("op_type", "D").put("ID", 1L);
+        Struct insert = new Struct(PAYLOAD_SCHEMA).put("op_type", "I").put("ID", 2L).put("NAME", "WILL");
+        KafkaConnectFormattedData data = new KafkaConnectFormattedData();
+        data.addRecord(beforeKey, event, null);
+        data.addRecord(beforeKey, null, null);
+        data.addRecord(afterKey, insert, null);
+
+        assertEquals(3, data.size());
+        assertSame(event, data.getRecord(0));
+        assertSame(beforeKey, data.getKey(1));
+        assertNull(data.getRecord(1));
+        assertSame(afterKey, data.getKey(2));
+        assertSame(insert, data.getRecord(2));
+        assertNull(data.getTopic(2));
+        //Nothing beyond the three records
+        assertNull(data.getKey(3));
+        assertNull(data.getRecord(3));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.util.ArrayList;
+
+import oracle.goldengate.kafkaconnect.formatter.ColumnPlan.ValueKind;
+import org.junit.Test;
+
+import static oracle.goldengate.kafkaconnect.formatter.ColumnPlan.ValueKind.FLOAT64;
+import static oracle.goldengate.kafkaconnect.formatter.ColumnPlan.ValueKind.INT64;
+import static oracle.goldengate.kafkaconnect.formatter.ColumnPlan.ValueKind.STRING;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class KafkaConnectSchemaGeneratorTest {
+    private static final String[] PREVIOUS_COLUMNS = {"ID", "NAME", "BALANCE"};
+    private static final FieldPlan PREVIOUS_PLAN = new FieldPlan(new ColumnPlan[] {
+            new ColumnPlan(0, "ID", INT64, false, true),
+            new ColumnPlan(1, "NAME", STRING, false, false),
+            new ColumnPlan(2, "BALANCE", FLOAT64, false, false)}, new ArrayList<String[]>(), null);
+
+    @Test
+    public void keepsUnchangedColumns(){
+        assertNull(diff(new String[] {"ID", "NAME", "BALANCE"},
+                new ValueKind[] {INT64, STRING, FLOAT64},
+                new boolean[] {true, false, false}));
+    }
+
+    @Test
+    public void movesReorderedColumns(){
+        assertArrayEquals(new int[] {2, 0, 1}, diff(new String[] {"BALANCE", "ID", "NAME"},
+                new ValueKind[] {FLOAT64, INT64, STRING},
+                new boolean[] {false, true, false}));
+    }
+
+    @Test
+    public void compilesAddedColumns(){
+        assertArrayEquals(new int[] {0, -1, 1, 2}, diff(new String[] {"ID", "CITY", "NAME", "BALANCE"},
+                new ValueKind[] {INT64, STRING, STRING, FLOAT64},
+                new boolean[] {true, false, false, false}));
+        //A column added at the end leaves the others in place
+        assertArrayEquals(new int[] {0, 1, 2, -1}, diff(new String[] {"ID", "NAME", "BALANCE", "CITY"},
+                new ValueKind[] {INT64, STRING, FLOAT64, STRING},
+                new boolean[] {true, false, false, false}));
+    }
+
+    @Test
+    public void dropsRemovedColumns(){
+        assertArrayEquals(new int[] {0, 2}, diff(new String[] {"ID", "BALANCE"},
+                new ValueKind[] {INT64, FLOAT64},
+                new boolean[] {true, false}));
+        //Removed from the end, the remaining columns are unchanged but the plan is not
+        assertArrayEquals(new int[] {0, 1}, diff(new String[] {"ID", "NAME"},
+                new ValueKind[] {INT64, STRING},
+                new boolean[] {true, false}));
+    }
+
+    @Test
+    public void recompilesRetypedColumns(){
+        assertArrayEquals(new int[] {0, 1, -1}, diff(new String[] {"ID", "NAME", "BALANCE"},
+                new ValueKind[] {INT64, STRING, STRING},
+                new boolean[] {true, false, false}));
+    }
+
+    @Test
+    public void recompilesRekeyedColumns(){
+        assertArrayEquals(new int[] {-1, -1, 2}, diff(new String[] {"ID", "NAME", "BALANCE"},
+                new ValueKind[] {INT64, STRING, FLOAT64},
+                new boolean[] {false, true, false}));
+    }
+
+    @Test
+    public void recompilesRenamedColumns(){
+        assertArrayEquals(new int[] {0, -1, 2}, diff(new String[] {"ID", "FULL_NAME", "BALANCE"},
+                new ValueKind[] {INT64, STRING, FLOAT64},
+                new boolean[] {true, false, false}));
+    }
+
+    private static int[] diff(String[] names, ValueKind[] kinds, boolean[] keyCols){
+        return KafkaConnectSchemaGenerator.diffColumns(PREVIOUS_COLUMNS, PREVIOUS_PLAN,
+                new TableColumns(names, kinds, keyCols));
+    }
+}
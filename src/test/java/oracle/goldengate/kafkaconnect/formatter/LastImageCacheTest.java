@@ -0,0 +1,128 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LastImageCacheTest {
+    //Map entry overhead, two bytes per cache key character, then the encoded image
+    private static final long ENTRY_SIZE = 96 + (2 * "T\u00011".length()) + (4 + 4 + 1);
+
+    @Test
+    public void returnsTheLastImageOfARow(){
+        LastImageCache cache = new LastImageCache(1 << 20);
+        RowImage image = new RowImage(3);
+        image.setValue(0, "1");
+        image.setValue(1, null);
+        image.setValue(2, "\u00e9t\u00e9");
+        cache.put("T", "1", image);
+
+        RowImage cached = cache.get("T", "1", 3);
+        assertNotNull(cached);
+        assertTrue(cached.isKnown(0));
+        assertEquals("1", cached.getValue(0));
+        assertTrue(cached.isKnown(1));
+        assertNull(cached.getValue(1));
+        assertEquals("\u00e9t\u00e9", cached.getValue(2));
+
+        RowImage newer = new RowImage(3);
+        newer.setValue(0, "2");
+        cache.put("T", "1", newer);
+        cached = cache.get("T", "1", 3);
+        assertEquals("2", cached.getValue(0));
+        assertFalse(cached.isKnown(1));
+        assertFalse(cached.isKnown(2));
+        assertEquals(1, cache.getNumEntries());
+    }
+
+    @Test
+    public void countsHitsAndMisses(){
+        LastImageCache cache = new LastImageCache(1 << 20);
+        assertNull(cache.get("T", "1", 1));
+        cache.put("T", "1", image("x"));
+        assertNotNull(cache.get("T", "1", 1));
+        assertNotNull(cache.get("T", "1", 1));
+        //The same key in another table
+        assertNull(cache.get("U", "1", 1));
+        assertEquals(2, cache.getNumHits());
+        assertEquals(2, cache.getNumMisses());
+        assertEquals(0, cache.getNumEvictions());
+    }
+
+    @Test
+    public void dropsAnImageWithAnotherColumnCount(){
+        LastImageCache cache = new LastImageCache(1 << 20);
+        cache.put("T", "1", image("x"));
+        assertNull(cache.get("T", "1", 2));
+        assertEquals(1, cache.getNumMisses());
+        assertEquals(0, cache.getNumEntries());
+        assertEquals(0, cache.getUsedBytes());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedRowAtTheByteBound(){
+        LastImageCache cache = new LastImageCache(3 * ENTRY_SIZE);
+        cache.put("T", "1", image("x"));
+        cache.put("T", "2", image("x"));
+        cache.put("T", "3", image("x"));
+        assertEquals(3 * ENTRY_SIZE, cache.getUsedBytes());
+        assertEquals(0, cache.getNumEvictions());
+
+        //Row 1 becomes the most recently used, so row 2 is evicted
+        assertNotNull(cache.get("T", "1", 1));
+        cache.put("T", "4", image("x"));
+        assertEquals(1, cache.getNumEvictions());
+        assertEquals(3, cache.getNumEntries());
+        assertEquals(3 * ENTRY_SIZE, cache.getUsedBytes());
+        assertNull(cache.get("T", "2", 1));
+        assertNotNull(cache.get("T", "1", 1));
+        assertNotNull(cache.get("T", "3", 1));
+        assertNotNull(cache.get("T", "4", 1));
+
+        //A larger image makes room by evicting more than one row
+        cache.put("T", "5", image(new String(new char[(int) ENTRY_SIZE])));
+        assertEquals(3, cache.getNumEvictions());
+        assertTrue(cache.getUsedBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    public void removesRowsAndTables(){
+        LastImageCache cache = new LastImageCache(1 << 20);
+        cache.put("T", "1", image("x"));
+        cache.put("T", "2", image("x"));
+        cache.put("TT", "1", image("x"));
+        cache.put("U", "1", image("x"));
+
+        cache.remove("T", "2");
+        cache.remove("T", "missing");
+        assertEquals(3, cache.getNumEntries());
+
+        cache.dropTable("T");
+        assertNull(cache.get("T", "1", 1));
+        //A table whose name starts with the dropped name is kept
+        assertNotNull(cache.get("TT", "1", 1));
+        assertNotNull(cache.get("U", "1", 1));
+        assertEquals(2, cache.getNumEntries());
+
+        cache.dropTable("TT");
+        cache.dropTable("U");
+        assertEquals(0, cache.getNumEntries());
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(0, cache.getNumEvictions());
+    }
+
+    private static RowImage image(String value){
+        RowImage image = new RowImage(1);
+        image.setValue(0, value);
+        return image;
+    }
+}
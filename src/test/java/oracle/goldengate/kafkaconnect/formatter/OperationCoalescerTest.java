@@ -0,0 +1,144 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaBuilder;
+import oracle.goldengate.common.data.Struct;
+import oracle.goldengate.datasource.DsOperation.OpType;
+import org.junit.Test;
+
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_DELETE;
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_INSERT;
+import static oracle.goldengate.datasource.DsOperation.OpType.DO_UPDATE;
+import static oracle.goldengate.kafkaconnect.formatter.OperationCoalescer.DROPPED;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OperationCoalescerTest {
+    private static final Schema KEY_SCHEMA = SchemaBuilder.struct().name("GG.T")
+            .field("ID", Schema.OPTIONAL_INT64_SCHEMA).build();
+
+    private final List<Struct> keys = new ArrayList<>();
+    private final List<OpType> types = new ArrayList<>();
+
+    @Test
+    public void mergesConsecutiveOperationsOnTheSameRow(){
+        op("A", DO_INSERT);
+        op("A", DO_UPDATE);
+        op("A", DO_UPDATE);
+        op("B", DO_UPDATE);
+        op("B", DO_DELETE);
+        assertSlots(0, 0, 0, 1, 1);
+    }
+
+    @Test
+    public void doesNotMergeAcrossAnotherRow(){
+        //I(A), I(B), U(A) must not become I(B), I(A') nor I(A'), I(B)
+        op("A", DO_INSERT);
+        op("B", DO_INSERT);
+        op("A", DO_UPDATE);
+        assertSlots(0, 1, 2);
+    }
+
+    @Test
+    public void doesNotMergeAcrossUnkeyedOperations(){
+        op("A", DO_UPDATE);
+        op(null, DO_INSERT);
+        op("A", DO_UPDATE);
+        assertSlots(0, 1, 2);
+    }
+
+    @Test
+    public void dropsAnInsertFollowedByADelete(){
+        op("B", DO_UPDATE);
+        op("A", DO_INSERT);
+        op("A", DO_UPDATE);
+        op("A", DO_DELETE);
+        op("A", DO_UPDATE);
+        op("C", DO_INSERT);
+        assertSlots(0, DROPPED, DROPPED, DROPPED, 1, 2);
+    }
+
+    @Test
+    public void leavesUnmergeableSequences(){
+        op("A", DO_DELETE);
+        op("A", DO_INSERT);
+        op("A", DO_UPDATE);
+        assertSlots(0, 1, 1);
+    }
+
+    @Test
+    public void mergedTypes(){
+        assertEquals(DO_INSERT, OperationCoalescer.mergedType(DO_INSERT, DO_UPDATE));
+        assertEquals(DO_UPDATE, OperationCoalescer.mergedType(DO_UPDATE, DO_UPDATE));
+        assertEquals(DO_DELETE, OperationCoalescer.mergedType(DO_UPDATE, DO_DELETE));
+        assertEquals(null, OperationCoalescer.mergedType(DO_DELETE, DO_INSERT));
+        assertEquals(null, OperationCoalescer.mergedType(DO_INSERT, DO_INSERT));
+    }
+
+    /**
+     * The surviving operations keep the transaction order: slots never
+     * decrease, and every operation is either in the slot of the operation
+     * directly before it on the same row or starts a new slot.
+     */
+    @Test
+    public void preservesTransactionOrder(){
+        Random random = new Random(42);
+        OpType[] allTypes = {DO_INSERT, DO_UPDATE, DO_DELETE};
+        for (int run = 0; run < 1000; run++){
+            keys.clear();
+            types.clear();
+            int length = 1 + random.nextInt(20);
+            for (int i = 0; i < length; i++){
+                String row = random.nextInt(5) == 0 ? null : String.valueOf((char)('A' + random.nextInt(3)));
+                op(row, allTypes[random.nextInt(allTypes.length)]);
+            }
+            int[] slots = OperationCoalescer.assignSlots(keys, types);
+            int last = -1;
+            for (int i = 0; i < slots.length; i++){
+                if (slots[i] == DROPPED){
+                    continue;
+                }
+                assertTrue("Slots out of order " + Arrays.toString(slots), slots[i] >= last);
+                if (slots[i] == last){
+                    //Merged, the previous surviving operation is on the same row
+                    int previous = i - 1;
+                    while (slots[previous] == DROPPED){
+                        previous--;
+                    }
+                    assertEquals(keys.get(previous), keys.get(i));
+                }else{
+                    assertEquals("Slots skipped " + Arrays.toString(slots), last + 1, slots[i]);
+                }
+                last = slots[i];
+            }
+        }
+    }
+
+    private void op(String row, OpType type){
+        keys.add(row == null ? null : new Struct(KEY_SCHEMA).put("ID", (long)row.charAt(0)));
+        types.add(type);
+    }
+
+    private void assertSlots(int... expected){
+        assertArrayEquals(toObjects(expected), toObjects(OperationCoalescer.assignSlots(keys, types)));
+    }
+
+    private static Integer[] toObjects(int[] values){
+        Integer[] objects = new Integer[values.length];
+        for (int i = 0; i < values.length; i++){
+            objects[i] = values[i];
+        }
+        return objects;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import oracle.goldengate.common.data.Schema;
+import oracle.goldengate.common.data.SchemaBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaStoreTest {
+    private static final String[] NAMES = {"CUST_CODE", "BALANCE"};
+    private static final TableColumns COLUMNS = columns(NAMES,
+            new ColumnPlan.ValueKind[] {ColumnPlan.ValueKind.STRING, ColumnPlan.ValueKind.FLOAT64},
+            new boolean[] {true, false});
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException{
+        file = File.createTempFile("schemastore", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile(){
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void roundTripsThroughTheFile(){
+        SchemaStore store = new SchemaStore(file);
+        store.open();
+        store.save("GG.TCUSTMER", NAMES, 42L, schemas(null));
+        assertTrue(store.isDirty());
+        store.write();
+        assertFalse(store.isDirty());
+
+        SchemaStore reopened = new SchemaStore(file);
+        reopened.open();
+        assertNull(reopened.load("GG.TCUSTMER", COLUMNS, 43L, 1L));
+        KeyAndPayloadSchemas loaded = reopened.load("GG.TCUSTMER", COLUMNS, 42L, 1L);
+        assertNotNull(loaded);
+        KeyAndPayloadSchemas expected = schemas(null);
+        assertEquals(expected.getKeySchema(), loaded.getKeySchema());
+        assertEquals(expected.getPayloadSchema(), loaded.getPayloadSchema());
+        FieldPlan plan = loaded.getFieldPlan();
+        assertEquals(2, plan.getNumColumns());
+        assertEquals("CUST_CODE", plan.getColumn(0).getFieldName());
+        assertEquals(ColumnPlan.ValueKind.STRING, plan.getColumn(0).getKind());
+        assertEquals(ColumnPlan.ValueKind.FLOAT64, plan.getColumn(1).getKind());
+        assertTrue(plan.getColumn(0).isKeyCol());
+        assertEquals("SOURCE", plan.getAddedFieldName(0));
+        assertEquals("ORCL", plan.getAddedFieldValue(0));
+        assertEquals(1L, reopened.getNumLoaded());
+    }
+
+    @Test
+    public void doesNotStoreSchemasWithDefaultValues(){
+        SchemaStore store = new SchemaStore(file);
+        store.open();
+        store.save("GG.TCUSTMER", NAMES, 42L, schemas("none"));
+        assertFalse(store.isDirty());
+        assertNull(store.load("GG.TCUSTMER", COLUMNS, 42L, 1L));
+    }
+
+    @Test
+    public void rejectsSchemasOfOtherColumnsWithTheSameHash(){
+        SchemaStore store = new SchemaStore(file);
+        store.open();
+        store.save("GG.TCUSTMER", NAMES, 42L, schemas(null));
+        store.write();
+        SchemaStore reopened = new SchemaStore(file);
+        reopened.open();
+
+        //A column renamed at the source
+        assertNull(reopened.load("GG.TCUSTMER", columns(new String[] {"CUST_CODE", "BALANCE_AMT"},
+                new ColumnPlan.ValueKind[] {ColumnPlan.ValueKind.STRING, ColumnPlan.ValueKind.FLOAT64},
+                new boolean[] {true, false}), 42L, 1L));
+        //A column type that maps to another value kind
+        assertNull(reopened.load("GG.TCUSTMER", columns(NAMES,
+                new ColumnPlan.ValueKind[] {ColumnPlan.ValueKind.STRING, ColumnPlan.ValueKind.INT64},
+                new boolean[] {true, false}), 42L, 1L));
+        //A changed primary key
+        assertNull(reopened.load("GG.TCUSTMER", columns(NAMES,
+                new ColumnPlan.ValueKind[] {ColumnPlan.ValueKind.STRING, ColumnPlan.ValueKind.FLOAT64},
+                new boolean[] {true, true}), 42L, 1L));
+        //An added column
+        assertNull(reopened.load("GG.TCUSTMER", columns(new String[] {"CUST_CODE", "BALANCE", "CITY"},
+                new ColumnPlan.ValueKind[] {ColumnPlan.ValueKind.STRING, ColumnPlan.ValueKind.FLOAT64,
+                    ColumnPlan.ValueKind.STRING},
+                new boolean[] {true, false, false}), 42L, 1L));
+        assertEquals(0L, reopened.getNumLoaded());
+
+        assertNotNull(reopened.load("GG.TCUSTMER", COLUMNS, 42L, 1L));
+        assertEquals(1L, reopened.getNumLoaded());
+    }
+
+    @Test
+    public void hashesStringsByTheirBytes(){
+        //Equal String hash codes
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertTrue(SchemaStore.mix(0L, "Aa") != SchemaStore.mix(0L, "BB"));
+        //The length separates consecutive strings
+        assertTrue(SchemaStore.mix(SchemaStore.mix(0L, "AB"), "C")
+                != SchemaStore.mix(SchemaStore.mix(0L, "A"), "BC"));
+    }
+
+    private static TableColumns columns(String[] names, ColumnPlan.ValueKind[] kinds, boolean[] keyCols){
+        return new TableColumns(names, kinds, keyCols);
+    }
+
+    private static KeyAndPayloadSchemas schemas(String defaultCity){
+        Schema key = SchemaBuilder.struct().name("GG.TCUSTMER")
+                .field("CUST_CODE", Schema.STRING_SCHEMA)
+                .build();
+        SchemaBuilder city = SchemaBuilder.string().optional();
+        if (defaultCity != null){
+            city.defaultValue(defaultCity);
+        }
+        Schema payload = SchemaBuilder.struct().name("GG.TCUSTMER")
+                .field("table", Schema.STRING_SCHEMA)
+                .field("CUST_CODE", Schema.STRING_SCHEMA)
+                .field("BALANCE", Schema.OPTIONAL_FLOAT64_SCHEMA)
+                .field("CITY", city.build())
+                .field("SOURCE", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+        List<String[]> added = new ArrayList<>();
+        added.add(new String[] {"SOURCE", "ORCL"});
+        FieldPlan plan = new FieldPlan(new ColumnPlan[] {
+                new ColumnPlan(0, "CUST_CODE", ColumnPlan.ValueKind.STRING, false, true),
+                new ColumnPlan(1, "BALANCE", ColumnPlan.ValueKind.FLOAT64, false, false)}, added, null);
+        KeyAndPayloadSchemas schemas = new KeyAndPayloadSchemas(0L);
+        schemas.setKeySchema(key);
+        schemas.setPayloadSchema(payload);
+        schemas.setFieldPlan(plan);
+        return schemas;
+    }
+}
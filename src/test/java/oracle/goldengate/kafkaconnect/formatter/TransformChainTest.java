@@ -0,0 +1,48 @@
+/*
+ *
+ * Copyright (c) 2016, Oracle and/or its affiliates. All rights reserved.
+ *
+ */
+package oracle.goldengate.kafkaconnect.formatter;
+
+import oracle.goldengate.util.ConfigException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransformChainTest {
+
+    @Test
+    public void parsesRules(){
+        TransformChain chain = new TransformChain("GG.TCUSTMER:CUST_CODE->CUSTOMER_CODE", "GG.TCUSTMER:PHONE",
+                "GG.*:SOURCE=ORCL", "GG.TCUSTORD:REGION");
+        assertFalse(chain.isEmpty());
+        assertTrue(new TransformChain(null, null, null, null).isEmpty());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void rejectsInvalidRules(){
+        new TransformChain("GG.TCUSTMER:CUST_CODE", null, null, null);
+    }
+
+    @Test
+    public void rejectsRenamesToMetadataFields(){
+        assertRejected("GG.TCUSTMER:CUST_CODE->op_type", null, "GG.TCUSTMER:CUST_CODE->op_type");
+    }
+
+    @Test
+    public void rejectsAddedMetadataFields(){
+        assertRejected(null, "GG.*:table=ORCL", "GG.*:table=ORCL");
+    }
+
+    private static void assertRejected(String renameFields, String addFields, String rule){
+        try{
+            new TransformChain(renameFields, null, addFields, null);
+            fail("The rule [" + rule + "] was accepted.");
+        }catch(ConfigException e){
+            assertTrue(e.getMessage(), e.getMessage().contains(rule));
+        }
+    }
+}